@@ -0,0 +1,58 @@
+package com.thonbecker.endurance.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+/**
+ * Settings for how accepted answers are written to the database.
+ *
+ * @param mode durability mode for accepted answers
+ * @param queueCapacity maximum number of answers waiting to be written
+ * @param batchSize maximum number of answers written in one batch
+ * @param flushInterval maximum time an answer waits before its batch is written
+ * @param awaitTimeout how long closing a question waits for its answers to be written
+ * @param retryAttempts how often a failed batch is written again before the callers waiting for
+ *     it write it themselves; the batch is still retried in the background after that
+ * @param retryBackoff wait before the first retry of a failed batch, doubled for every further one
+ * @param journal where {@link DurabilityMode#JOURNAL} keeps its journal
+ */
+@ConfigurationProperties(prefix = "endurance.answers")
+public record AnswerPersistenceProperties(
+        @DefaultValue("BATCHED") DurabilityMode mode,
+        @DefaultValue("10000") int queueCapacity,
+        @DefaultValue("500") int batchSize,
+        @DefaultValue("50ms") Duration flushInterval,
+        @DefaultValue("2s") Duration awaitTimeout,
+        @DefaultValue("3") int retryAttempts,
+        @DefaultValue("100ms") Duration retryBackoff,
+        @DefaultValue Journal journal) {
+
+    public enum DurabilityMode {
+        /** Answers are written in the submitting thread before the submit returns. */
+        SYNC,
+        /** Answers are written behind in batches; closing a question waits for its batch. */
+        BATCHED,
+        /** Answers are written behind in batches; nothing waits for them. */
+        ASYNC,
+        /**
+         * Answers are appended to a journal on local disk, which is synced before they are
+         * broadcast, and written behind from there in batches; nothing waits for the database.
+         */
+        JOURNAL
+    }
+
+    /**
+     * Settings for the answer journal.
+     *
+     * @param directory directory of the segment files, on a disk that survives restarts
+     * @param segmentSize size of each segment file
+     * @param retention how long a segment is kept once all its answers are in the database
+     */
+    public record Journal(
+            @DefaultValue("data/answer-journal") String directory,
+            @DefaultValue("64MB") DataSize segmentSize,
+            @DefaultValue("1h") Duration retention) {}
+}
@@ -0,0 +1,15 @@
+package com.thonbecker.endurance.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Settings for broadcasting quiz state.
+ *
+ * @param coalesceWindow how long changes of a quiz are collected before they go out as one delta;
+ *     zero sends every change on its own
+ */
+@ConfigurationProperties(prefix = "endurance.broadcast")
+public record BroadcastProperties(@DefaultValue("50ms") Duration coalesceWindow) {}
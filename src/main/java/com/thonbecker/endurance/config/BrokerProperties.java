@@ -0,0 +1,46 @@
+package com.thonbecker.endurance.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Settings for the STOMP message broker.
+ *
+ * @param mode which broker delivers messages to subscribers
+ * @param relayHost host of the external broker
+ * @param relayPort STOMP port of the external broker
+ * @param virtualHost virtual host to connect to, if the broker needs one
+ * @param clientLogin login used for the connections of WebSocket clients
+ * @param clientPasscode passcode used for the connections of WebSocket clients
+ * @param systemLogin login used for the shared connection that publishes from the server
+ * @param systemPasscode passcode used for the shared connection
+ * @param heartbeat heartbeat interval of the shared connection
+ */
+@ConfigurationProperties(prefix = "endurance.broker")
+public record BrokerProperties(
+        @DefaultValue("SIMPLE") BrokerMode mode,
+        @DefaultValue("localhost") String relayHost,
+        @DefaultValue("61613") int relayPort,
+        String virtualHost,
+        @DefaultValue("guest") String clientLogin,
+        @DefaultValue("guest") String clientPasscode,
+        @DefaultValue("guest") String systemLogin,
+        @DefaultValue("guest") String systemPasscode,
+        @DefaultValue("10s") Duration heartbeat) {
+
+    public enum BrokerMode {
+        /** In-memory broker; subscribers must be connected to the node that publishes. */
+        SIMPLE,
+        /** Relay to an external STOMP broker shared by all nodes. */
+        RELAY,
+        /** Relay to an Artemis broker started inside this node, for local runs and tests. */
+        EMBEDDED,
+        /**
+         * In-memory broker on every node, with broadcasts shared between nodes over Postgres
+         * {@code LISTEN/NOTIFY}.
+         */
+        POSTGRES
+    }
+}
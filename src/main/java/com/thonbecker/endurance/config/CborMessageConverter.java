@@ -0,0 +1,20 @@
+package com.thonbecker.endurance.config;
+
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.util.MimeType;
+
+/**
+ * Reads and writes STOMP payloads as CBOR, for frames whose {@code content-type} is {@code
+ * application/cbor}. Frames without a content type are left to the JSON converter.
+ */
+public class CborMessageConverter extends MappingJackson2MessageConverter {
+    public static final MimeType APPLICATION_CBOR = new MimeType("application", "cbor");
+
+    public CborMessageConverter() {
+        super(APPLICATION_CBOR);
+        setObjectMapper(new CBORMapper());
+        setStrictContentTypeMatch(true);
+    }
+}
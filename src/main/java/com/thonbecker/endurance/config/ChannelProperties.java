@@ -0,0 +1,26 @@
+package com.thonbecker.endurance.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Settings for the threads that run STOMP message handling.
+ *
+ * @param threads which threads the inbound, outbound and broker channels run on
+ * @param pinnedThreshold with virtual threads, how long a virtual thread may hold on to its carrier
+ *     before it is reported as pinned
+ */
+@ConfigurationProperties(prefix = "endurance.channels")
+public record ChannelProperties(
+        @DefaultValue("PLATFORM") ThreadMode threads,
+        @DefaultValue("20ms") Duration pinnedThreshold) {
+
+    public enum ThreadMode {
+        /** The application's bounded task executor pool ({@code spring.task.execution.pool}). */
+        PLATFORM,
+        /** A new virtual thread per message; handlers blocked on JDBC or Bedrock hold no thread. */
+        VIRTUAL
+    }
+}
@@ -0,0 +1,40 @@
+package com.thonbecker.endurance.config;
+
+import lombok.extern.slf4j.Slf4j;
+
+import org.apache.activemq.artemis.core.config.Configuration;
+import org.apache.activemq.artemis.core.config.impl.ConfigurationImpl;
+import org.apache.activemq.artemis.core.server.embedded.EmbeddedActiveMQ;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+
+/**
+ * Starts an in-process Artemis broker with a STOMP acceptor when {@code endurance.broker.mode} is
+ * {@code EMBEDDED}, so the broker relay can be used without an external broker.
+ */
+@Slf4j
+@org.springframework.context.annotation.Configuration
+@ConditionalOnProperty(prefix = "endurance.broker", name = "mode", havingValue = "EMBEDDED")
+public class EmbeddedBrokerConfig {
+
+    @Bean(destroyMethod = "stop")
+    public EmbeddedActiveMQ embeddedBroker(BrokerProperties properties) throws Exception {
+        Configuration configuration = new ConfigurationImpl()
+                .setPersistenceEnabled(false)
+                .setSecurityEnabled(false)
+                .setJMXManagementEnabled(false)
+                // Destinations under /topic/ are publish-subscribe, like on the simple broker
+                .addAcceptorConfiguration(
+                        "stomp",
+                        "tcp://" + properties.relayHost() + ":" + properties.relayPort()
+                                + "?protocols=STOMP;multicastPrefix=/topic/");
+
+        EmbeddedActiveMQ broker = new EmbeddedActiveMQ().setConfiguration(configuration);
+        broker.start();
+        log.info(
+                "Embedded STOMP broker listening on {}:{}",
+                properties.relayHost(),
+                properties.relayPort());
+        return broker;
+    }
+}
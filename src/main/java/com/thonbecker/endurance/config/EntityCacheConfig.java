@@ -0,0 +1,67 @@
+package com.thonbecker.endurance.config;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import com.thonbecker.endurance.entity.QuestionEntity;
+import com.thonbecker.endurance.entity.QuestionOptionEntity;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.JCacheMetrics;
+
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.List;
+import java.util.OptionalLong;
+
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import javax.cache.spi.CachingProvider;
+
+/**
+ * Second-level cache for questions and options, which never change once a quiz is created.
+ *
+ * <p>Every region is a bounded Caffeine cache created up front, and Hibernate refuses to start if
+ * an entity asks for a region that is not listed here. Hits and misses are published as {@code
+ * cache.gets} per region.
+ */
+@Configuration
+public class EntityCacheConfig {
+    static final List<String> REGIONS = List.of(
+            QuestionEntity.class.getName(),
+            QuestionEntity.class.getName() + ".options",
+            QuestionOptionEntity.class.getName());
+
+    @Bean(destroyMethod = "close")
+    public CacheManager entityCacheManager(
+            EntityCacheProperties properties, MeterRegistry meterRegistry) {
+        CachingProvider provider =
+                Caching.getCachingProvider(CaffeineCachingProvider.class.getName());
+        CacheManager cacheManager = provider.getCacheManager();
+        for (String region : REGIONS) {
+            Cache<Object, Object> cache = cacheManager.getCache(region);
+            if (cache == null) {
+                CaffeineConfiguration<Object, Object> configuration = new CaffeineConfiguration<>();
+                configuration.setMaximumSize(OptionalLong.of(properties.maximumSize()));
+                configuration.setStatisticsEnabled(true);
+                cache = cacheManager.createCache(region, configuration);
+            }
+            JCacheMetrics.monitor(meterRegistry, cache);
+        }
+        return cacheManager;
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer entityCacheCustomizer(CacheManager entityCacheManager) {
+        return hibernateProperties -> {
+            hibernateProperties.put(AvailableSettings.USE_SECOND_LEVEL_CACHE, true);
+            hibernateProperties.put(AvailableSettings.CACHE_REGION_FACTORY, "jcache");
+            hibernateProperties.put(ConfigSettings.CACHE_MANAGER, entityCacheManager);
+            hibernateProperties.put(ConfigSettings.MISSING_CACHE_STRATEGY, "fail");
+        };
+    }
+}
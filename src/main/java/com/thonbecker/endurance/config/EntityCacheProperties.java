@@ -0,0 +1,12 @@
+package com.thonbecker.endurance.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Settings for the Hibernate second-level cache of questions and options.
+ *
+ * @param maximumSize entries kept per cache region before the least valuable are evicted
+ */
+@ConfigurationProperties(prefix = "endurance.entity-cache")
+public record EntityCacheProperties(@DefaultValue("10000") long maximumSize) {}
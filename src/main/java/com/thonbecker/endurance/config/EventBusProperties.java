@@ -0,0 +1,24 @@
+package com.thonbecker.endurance.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Settings for sharing broadcasts between instances over Postgres {@code LISTEN/NOTIFY}, used when
+ * {@code endurance.broker.mode} is {@code POSTGRES}.
+ *
+ * @param channel notification channel all instances listen on
+ * @param batchWindow how long a broadcast may wait for others to share its notification
+ * @param queueCapacity broadcasts waiting to be sent before new ones are dropped
+ * @param retention how long sent broadcasts are kept for instances that lost their connection
+ * @param reconnectDelay wait between attempts to reach the database again
+ */
+@ConfigurationProperties(prefix = "endurance.bus")
+public record EventBusProperties(
+        @DefaultValue("endurance_quiz_events") String channel,
+        @DefaultValue("5ms") Duration batchWindow,
+        @DefaultValue("10000") int queueCapacity,
+        @DefaultValue("1m") Duration retention,
+        @DefaultValue("1s") Duration reconnectDelay) {}
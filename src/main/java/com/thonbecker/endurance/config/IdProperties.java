@@ -0,0 +1,13 @@
+package com.thonbecker.endurance.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Settings for generating quiz IDs.
+ *
+ * @param nodeId ID of this instance, from 0 to 31; instances running side by side need distinct
+ *     node IDs
+ */
+@ConfigurationProperties(prefix = "endurance.ids")
+public record IdProperties(@DefaultValue("0") int nodeId) {}
@@ -0,0 +1,64 @@
+package com.thonbecker.endurance.config;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+/**
+ * Lets only the other instances use the {@code /internal/quiz} endpoints: a request has to carry
+ * the secret the instances share in the {@value OwnershipProperties#SECRET_HEADER} header.
+ */
+@Slf4j
+@Configuration
+@ConditionalOnProperty(prefix = "endurance.ownership", name = "enabled", havingValue = "true")
+public class InternalApiConfig implements WebMvcConfigurer {
+    private final byte[] secret;
+
+    public InternalApiConfig(OwnershipProperties properties) {
+        if (properties.secret().isBlank()) {
+            throw new IllegalStateException(
+                    "endurance.ownership.secret must be set when quiz ownership is enabled");
+        }
+        this.secret = properties.secret().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(secretInterceptor()).addPathPatterns("/internal/**");
+    }
+
+    HandlerInterceptor secretInterceptor() {
+        return new SecretInterceptor();
+    }
+
+    private class SecretInterceptor implements HandlerInterceptor {
+        @Override
+        public boolean preHandle(
+                HttpServletRequest request, HttpServletResponse response, Object handler)
+                throws Exception {
+            String presented = request.getHeader(OwnershipProperties.SECRET_HEADER);
+            // Compared in constant time, so the secret cannot be guessed byte by byte
+            if (presented != null
+                    && MessageDigest.isEqual(secret, presented.getBytes(StandardCharsets.UTF_8))) {
+                return true;
+            }
+            log.warn(
+                    "Refused {} {} from {}",
+                    request.getMethod(),
+                    request.getRequestURI(),
+                    request.getRemoteAddr());
+            response.sendError(HttpServletResponse.SC_FORBIDDEN);
+            return false;
+        }
+    }
+}
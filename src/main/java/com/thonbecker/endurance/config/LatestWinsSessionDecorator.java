@@ -0,0 +1,204 @@
+package com.thonbecker.endurance.config;
+
+import com.thonbecker.endurance.service.BroadcastSender;
+
+import io.micrometer.core.instrument.Counter;
+
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.SessionLimitExceededException;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Queues the frames of one session and sends them from a drain task, so a slow client only ever
+ * holds up its own queue.
+ *
+ * <p>A {@code MESSAGE} frame carrying the {@link BroadcastSender#LATEST_WINS_HEADER} header
+ * replaces everything still queued for the same subscription: a lagging client gets the newest
+ * state snapshot instead of a backlog. A session whose frame takes longer than the send time limit,
+ * or whose queue stays above the buffer size limit, is closed.
+ */
+@Slf4j
+class LatestWinsSessionDecorator extends WebSocketSessionDecorator {
+
+    private record Pending(WebSocketMessage<?> message, String subscription, int size) {}
+
+    private final long sendTimeLimitMillis;
+    private final int bufferSizeLimit;
+    private final Executor drainExecutor;
+    private final Counter evictedCounter;
+    private final Counter droppedCounter;
+
+    // Guarded by itself
+    private final Deque<Pending> buffer = new ArrayDeque<>();
+    private int bufferSize;
+
+    private final AtomicBoolean draining = new AtomicBoolean();
+    private volatile long sendStartTime;
+    private volatile boolean limitExceeded;
+
+    LatestWinsSessionDecorator(
+            WebSocketSession delegate,
+            long sendTimeLimitMillis,
+            int bufferSizeLimit,
+            Executor drainExecutor,
+            Counter evictedCounter,
+            Counter droppedCounter) {
+        super(delegate);
+        this.sendTimeLimitMillis = sendTimeLimitMillis;
+        this.bufferSizeLimit = bufferSizeLimit;
+        this.drainExecutor = drainExecutor;
+        this.evictedCounter = evictedCounter;
+        this.droppedCounter = droppedCounter;
+    }
+
+    @Override
+    public void sendMessage(WebSocketMessage<?> message) throws IOException {
+        if (limitExceeded) {
+            return;
+        }
+
+        String head = frameHead(message);
+        String subscription = head != null ? header(head, "subscription") : null;
+        boolean latestWins = subscription != null
+                && "true".equals(header(head, BroadcastSender.LATEST_WINS_HEADER));
+
+        synchronized (buffer) {
+            if (latestWins) {
+                // Nothing queued for this subscription matters once the newest snapshot is in
+                Iterator<Pending> queued = buffer.iterator();
+                while (queued.hasNext()) {
+                    Pending pending = queued.next();
+                    if (subscription.equals(pending.subscription())) {
+                        queued.remove();
+                        bufferSize -= pending.size();
+                        evictedCounter.increment();
+                    }
+                }
+            }
+            buffer.add(new Pending(message, subscription, message.getPayloadLength()));
+            bufferSize += message.getPayloadLength();
+        }
+
+        checkLimits();
+        if (draining.compareAndSet(false, true)) {
+            drainExecutor.execute(this::drain);
+        }
+    }
+
+    private void drain() {
+        try {
+            while (!limitExceeded) {
+                Pending pending;
+                synchronized (buffer) {
+                    pending = buffer.poll();
+                    if (pending == null) {
+                        return;
+                    }
+                    bufferSize -= pending.size();
+                }
+                sendStartTime = System.currentTimeMillis();
+                getDelegate().sendMessage(pending.message());
+                sendStartTime = 0;
+            }
+        } catch (IOException | RuntimeException e) {
+            log.debug("Failed to send to session {}: {}", getId(), e.getMessage());
+            clear();
+        } finally {
+            sendStartTime = 0;
+            draining.set(false);
+        }
+        // A frame queued after the last poll but before the flag was cleared
+        if (!isEmpty() && !limitExceeded && draining.compareAndSet(false, true)) {
+            drainExecutor.execute(this::drain);
+        }
+    }
+
+    private void checkLimits() throws SessionLimitExceededException {
+        long start = sendStartTime;
+        if (start > 0 && System.currentTimeMillis() - start > sendTimeLimitMillis) {
+            exceeded("Sending a frame took more than " + sendTimeLimitMillis + " ms");
+        }
+        int size;
+        synchronized (buffer) {
+            size = bufferSize;
+        }
+        if (size > bufferSizeLimit) {
+            exceeded(size + " bytes waiting exceed the limit of " + bufferSizeLimit);
+        }
+    }
+
+    private void exceeded(String reason) throws SessionLimitExceededException {
+        if (!limitExceeded) {
+            limitExceeded = true;
+            droppedCounter.increment();
+            clear();
+            log.warn("Dropping slow session {}: {}", getId(), reason);
+        }
+        // The STOMP handler closes the session with this status
+        throw new SessionLimitExceededException(reason, CloseStatus.SESSION_NOT_RELIABLE);
+    }
+
+    /** Discards everything still queued, once the session is gone. */
+    void clear() {
+        synchronized (buffer) {
+            buffer.clear();
+            bufferSize = 0;
+        }
+    }
+
+    private boolean isEmpty() {
+        synchronized (buffer) {
+            return buffer.isEmpty();
+        }
+    }
+
+    // Command and headers of a STOMP frame, without its body
+    static String frameHead(WebSocketMessage<?> message) {
+        if (message instanceof TextMessage text) {
+            String payload = text.getPayload();
+            int end = payload.indexOf("\n\n");
+            return end > 0 ? payload.substring(0, end) : null;
+        }
+        if (message instanceof BinaryMessage binary) {
+            ByteBuffer payload = binary.getPayload().duplicate();
+            int start = payload.position();
+            for (int i = start; i + 1 < payload.limit(); i++) {
+                if (payload.get(i) == '\n' && payload.get(i + 1) == '\n') {
+                    byte[] head = new byte[i - start];
+                    payload.get(head);
+                    return new String(head, StandardCharsets.ISO_8859_1);
+                }
+            }
+        }
+        return null;
+    }
+
+    static String header(String head, String name) {
+        if (!head.startsWith("MESSAGE\n")) {
+            return null;
+        }
+        String prefix = "\n" + name + ":";
+        int start = head.indexOf(prefix);
+        if (start < 0) {
+            return null;
+        }
+        start += prefix.length();
+        int end = head.indexOf('\n', start);
+        return head.substring(start, end < 0 ? head.length() : end);
+    }
+}
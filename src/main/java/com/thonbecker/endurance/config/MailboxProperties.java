@@ -0,0 +1,12 @@
+package com.thonbecker.endurance.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Settings for the per-quiz command mailboxes.
+ *
+ * @param capacity maximum number of commands waiting for a single quiz
+ */
+@ConfigurationProperties(prefix = "endurance.mailbox")
+public record MailboxProperties(@DefaultValue("1000") int capacity) {}
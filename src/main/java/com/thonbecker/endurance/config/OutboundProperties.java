@@ -0,0 +1,22 @@
+package com.thonbecker.endurance.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+/**
+ * Limits on what a WebSocket session may have waiting to be sent.
+ *
+ * <p>A session that exceeds either limit is closed, so one client on a bad network cannot hold up
+ * delivery to the rest.
+ *
+ * @param sendTimeLimit how long sending a single frame to a session may take
+ * @param sendBufferSizeLimit how much may be waiting for a session, after superseded state
+ *     messages were dropped
+ */
+@ConfigurationProperties(prefix = "endurance.outbound")
+public record OutboundProperties(
+        @DefaultValue("10s") Duration sendTimeLimit,
+        @DefaultValue("512KB") DataSize sendBufferSizeLimit) {}
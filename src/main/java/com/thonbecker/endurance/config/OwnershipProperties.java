@@ -0,0 +1,31 @@
+package com.thonbecker.endurance.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Settings for sharing quizzes between instances that run against the same database.
+ *
+ * <p>Every running quiz is owned by exactly one instance, which holds a Postgres advisory lock on
+ * the quiz ID for as long as it owns it. Commands that reach another instance are forwarded to the
+ * owner over HTTP, with a secret the instances share in the {@value #SECRET_HEADER} header.
+ *
+ * @param enabled whether quizzes are owned at all; a single instance does not need it
+ * @param address base URL under which the other instances reach this one
+ * @param heartbeatInterval how often the lock connection is checked, quizzes that are done are
+ *     released and quizzes of instances that went away are taken over
+ * @param forwardTimeout how long forwarding a command to the owner may take
+ * @param secret shared by all instances; the {@code /internal/quiz} endpoints refuse requests
+ *     without it
+ */
+@ConfigurationProperties(prefix = "endurance.ownership")
+public record OwnershipProperties(
+        @DefaultValue("false") boolean enabled,
+        @DefaultValue("http://localhost:8080") String address,
+        @DefaultValue("5s") Duration heartbeatInterval,
+        @DefaultValue("5s") Duration forwardTimeout,
+        @DefaultValue("") String secret) {
+    public static final String SECRET_HEADER = "X-Endurance-Secret";
+}
@@ -0,0 +1,17 @@
+package com.thonbecker.endurance.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Settings for rebuilding running quizzes after a restart.
+ *
+ * @param checkpointInterval how often the position of every running quiz that moved is written
+ * @param parallelism how many quizzes are rebuilt at the same time on startup; each holds a
+ *     database connection while it loads, so keep this well below the connection pool size
+ */
+@ConfigurationProperties(prefix = "endurance.recovery")
+public record RecoveryProperties(
+        @DefaultValue("5s") Duration checkpointInterval, @DefaultValue("4") int parallelism) {}
@@ -0,0 +1,21 @@
+package com.thonbecker.endurance.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Bounds on the quiz sessions kept in memory. A session that is dropped is rebuilt from the
+ * database the next time it is needed.
+ *
+ * @param maximumWeight how much the paused and finished sessions in memory may weigh together,
+ *     counted as the questions plus the players of each session; running sessions weigh nothing
+ * @param finishedTtl how long a finished quiz stays in memory after it was last used
+ * @param idleTtl how long a running or paused quiz stays in memory after it was last used
+ */
+@ConfigurationProperties(prefix = "endurance.sessions")
+public record SessionStoreProperties(
+        @DefaultValue("1000000") long maximumWeight,
+        @DefaultValue("5m") Duration finishedTtl,
+        @DefaultValue("2h") Duration idleTtl) {}
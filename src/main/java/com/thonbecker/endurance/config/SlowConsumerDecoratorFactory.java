@@ -0,0 +1,101 @@
+package com.thonbecker.endurance.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import jakarta.annotation.PreDestroy;
+
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+import org.springframework.web.socket.handler.WebSocketHandlerDecoratorFactory;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Gives every WebSocket session its own {@link LatestWinsSessionDecorator}, so frames for slow
+ * clients queue up per session and superseded state snapshots are dropped.
+ */
+@Component
+public class SlowConsumerDecoratorFactory implements WebSocketHandlerDecoratorFactory {
+
+    private final OutboundProperties properties;
+    private final ExecutorService drainExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Counter evictedCounter;
+    private final Counter droppedCounter;
+
+    public SlowConsumerDecoratorFactory(
+            OutboundProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.evictedCounter = Counter.builder("endurance.outbound.evicted")
+                .description("Queued frames dropped because a newer snapshot superseded them")
+                .register(meterRegistry);
+        this.droppedCounter = Counter.builder("endurance.outbound.dropped")
+                .description("Sessions closed for falling too far behind")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public WebSocketHandler decorate(WebSocketHandler handler) {
+        return new SlowConsumerHandler(handler);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        drainExecutor.shutdownNow();
+    }
+
+    private final class SlowConsumerHandler extends WebSocketHandlerDecorator {
+        private final Map<String, LatestWinsSessionDecorator> sessions = new ConcurrentHashMap<>();
+
+        private SlowConsumerHandler(WebSocketHandler delegate) {
+            super(delegate);
+        }
+
+        @Override
+        public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+            LatestWinsSessionDecorator decorated = new LatestWinsSessionDecorator(
+                    session,
+                    properties.sendTimeLimit().toMillis(),
+                    (int) properties.sendBufferSizeLimit().toBytes(),
+                    drainExecutor,
+                    evictedCounter,
+                    droppedCounter);
+            sessions.put(session.getId(), decorated);
+            super.afterConnectionEstablished(decorated);
+        }
+
+        @Override
+        public void handleMessage(WebSocketSession session, WebSocketMessage<?> message)
+                throws Exception {
+            super.handleMessage(decorated(session), message);
+        }
+
+        @Override
+        public void handleTransportError(WebSocketSession session, Throwable exception)
+                throws Exception {
+            super.handleTransportError(decorated(session), exception);
+        }
+
+        @Override
+        public void afterConnectionClosed(WebSocketSession session, CloseStatus closeStatus)
+                throws Exception {
+            LatestWinsSessionDecorator decorated = sessions.remove(session.getId());
+            if (decorated != null) {
+                decorated.clear();
+            }
+            super.afterConnectionClosed(decorated != null ? decorated : session, closeStatus);
+        }
+
+        private WebSocketSession decorated(WebSocketSession session) {
+            WebSocketSession decorated = sessions.get(session.getId());
+            return decorated != null ? decorated : session;
+        }
+    }
+}
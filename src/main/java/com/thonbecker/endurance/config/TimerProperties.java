@@ -0,0 +1,16 @@
+package com.thonbecker.endurance.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Settings for the question timer wheel.
+ *
+ * @param tickDuration resolution of the wheel; deadlines fire at most one tick late
+ * @param wheelSize number of buckets, rounded up to a power of two
+ */
+@ConfigurationProperties(prefix = "endurance.timer")
+public record TimerProperties(
+        @DefaultValue("10ms") Duration tickDuration, @DefaultValue("512") int wheelSize) {}
@@ -0,0 +1,103 @@
+package com.thonbecker.endurance.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingStream;
+
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Reports virtual threads that pin their carrier thread, from JFR's {@code
+ * jdk.VirtualThreadPinned} events.
+ *
+ * <p>A pinned virtual thread blocks its carrier, so enough of them stall every other virtual
+ * thread. Pinning inside JDBC, Hikari, Hibernate or Spring's JPA and JDBC support is counted as
+ * {@code source=jpa}, everything else as {@code source=other}.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "endurance.channels.threads", havingValue = "VIRTUAL")
+public class VirtualThreadPinningMonitor {
+    static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+
+    private static final List<String> JPA_PACKAGES = List.of(
+            "org.postgresql.",
+            "com.zaxxer.hikari.",
+            "org.hibernate.",
+            "jakarta.persistence.",
+            "org.springframework.orm.",
+            "org.springframework.jdbc.");
+
+    private final ChannelProperties properties;
+    private final Counter jpaCounter;
+    private final Counter otherCounter;
+    private final Timer pinnedTimer;
+    private RecordingStream stream;
+
+    public VirtualThreadPinningMonitor(ChannelProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.jpaCounter = Counter.builder("endurance.virtual.pinned")
+                .description("Virtual threads that pinned their carrier")
+                .tag("source", "jpa")
+                .register(meterRegistry);
+        this.otherCounter = Counter.builder("endurance.virtual.pinned")
+                .description("Virtual threads that pinned their carrier")
+                .tag("source", "other")
+                .register(meterRegistry);
+        this.pinnedTimer = Timer.builder("endurance.virtual.pinned.duration")
+                .description("How long virtual threads pinned their carrier")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        stream = new RecordingStream();
+        stream.enable(PINNED_EVENT).withThreshold(properties.pinnedThreshold()).withStackTrace();
+        stream.onEvent(PINNED_EVENT, this::onPinned);
+        stream.startAsync();
+        log.info(
+                "Reporting virtual threads pinned for longer than {}",
+                properties.pinnedThreshold());
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (stream != null) {
+            stream.close();
+        }
+    }
+
+    private void onPinned(RecordedEvent event) {
+        List<String> frames = event.getStackTrace() == null
+                ? List.of()
+                : event.getStackTrace().getFrames().stream()
+                        .map(RecordedFrame::getMethod)
+                        .map(method -> method.getType().getName() + "." + method.getName())
+                        .toList();
+
+        boolean jpa = isJpa(frames);
+        (jpa ? jpaCounter : otherCounter).increment();
+        pinnedTimer.record(event.getDuration());
+        log.warn(
+                "Virtual thread pinned its carrier for {} ms{}: {}",
+                event.getDuration().toMillis(),
+                jpa ? " in the JPA path" : "",
+                frames.stream().limit(8).toList());
+    }
+
+    static boolean isJpa(List<String> frames) {
+        return frames.stream().anyMatch(frame -> JPA_PACKAGES.stream().anyMatch(frame::startsWith));
+    }
+}
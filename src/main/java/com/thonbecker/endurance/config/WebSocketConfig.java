@@ -1,23 +1,141 @@
 package com.thonbecker.endurance.config;
 
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.messaging.converter.MessageConverter;
+import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
+import org.springframework.web.socket.WebSocketHandler;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
+import org.springframework.web.socket.server.HandshakeInterceptor;
+
+import java.util.List;
+import java.util.Map;
 
+@Slf4j
 @Configuration
 @EnableWebSocketMessageBroker
+@RequiredArgsConstructor
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
+    private final BrokerProperties brokerProperties;
+    private final WireFormatInterceptor wireFormatInterceptor;
+    private final ChannelProperties channelProperties;
+    private final OutboundProperties outboundProperties;
+    private final SlowConsumerDecoratorFactory slowConsumerDecoratorFactory;
 
     @Override
     public void configureMessageBroker(MessageBrokerRegistry config) {
-        config.enableSimpleBroker("/topic");
+        switch (brokerProperties.mode()) {
+            // With POSTGRES, each node also re-sends what other nodes broadcast to its own broker
+            case SIMPLE, POSTGRES -> config.enableSimpleBroker("/topic");
+            case RELAY, EMBEDDED -> {
+                // Every node relays to the same broker, so a message published on any node
+                // reaches the subscribers of all nodes
+                long heartbeat = brokerProperties.heartbeat().toMillis();
+                config.enableStompBrokerRelay("/topic")
+                        .setRelayHost(brokerProperties.relayHost())
+                        .setRelayPort(brokerProperties.relayPort())
+                        .setVirtualHost(brokerProperties.virtualHost())
+                        .setClientLogin(brokerProperties.clientLogin())
+                        .setClientPasscode(brokerProperties.clientPasscode())
+                        .setSystemLogin(brokerProperties.systemLogin())
+                        .setSystemPasscode(brokerProperties.systemPasscode())
+                        .setSystemHeartbeatSendInterval(heartbeat)
+                        .setSystemHeartbeatReceiveInterval(heartbeat);
+                log.info(
+                        "Relaying /topic to STOMP broker at {}:{}",
+                        brokerProperties.relayHost(),
+                        brokerProperties.relayPort());
+            }
+        }
         config.setApplicationDestinationPrefixes("/app");
+
+        if (virtualThreads()) {
+            config.configureBrokerChannel().executor(new VirtualThreadTaskExecutor("ws-broker-"));
+            // With a thread per message, messages to one session would otherwise overtake
+            // each other
+            config.setPreservePublishOrder(true);
+        }
     }
 
     @Override
     public void registerStompEndpoints(StompEndpointRegistry registry) {
         registry.addEndpoint("/quiz-websocket").setAllowedOriginPatterns("*").withSockJS();
+        // Plain WebSocket endpoint; only here can clients receive binary (CBOR) frames
+        registry.addEndpoint("/quiz-ws")
+                .setAllowedOriginPatterns("*")
+                .addInterceptors(new BinaryCapableHandshakeInterceptor());
+
+        if (virtualThreads()) {
+            // Likewise for a session's frames on their way in, so that joining a quiz is handled
+            // before the answers sent right after it
+            registry.setPreserveReceiveOrder(true);
+        }
+    }
+
+    @Override
+    public void configureWebSocketTransport(WebSocketTransportRegistration registration) {
+        // Frames queue per session below these limits; past them, the session is closed
+        registration
+                .setSendTimeLimit((int) outboundProperties.sendTimeLimit().toMillis())
+                .setSendBufferSizeLimit(
+                        (int) outboundProperties.sendBufferSizeLimit().toBytes())
+                .addDecoratorFactory(slowConsumerDecoratorFactory);
+    }
+
+    @Override
+    public boolean configureMessageConverters(List<MessageConverter> messageConverters) {
+        // CBOR for frames that declare it; the default converters follow for the rest, in
+        // Spring's order: String, then byte array, then Jackson for JSON
+        messageConverters.add(new CborMessageConverter());
+        return true;
+    }
+
+    @Override
+    public void configureClientInboundChannel(ChannelRegistration registration) {
+        registration.interceptors(wireFormatInterceptor.inbound());
+        if (virtualThreads()) {
+            registration.executor(new VirtualThreadTaskExecutor("ws-inbound-"));
+        }
+    }
+
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        registration.interceptors(wireFormatInterceptor);
+        if (virtualThreads()) {
+            registration.executor(new VirtualThreadTaskExecutor("ws-outbound-"));
+        }
+    }
+
+    // Otherwise Spring Boot puts both client channels on the application task executor
+    private boolean virtualThreads() {
+        return channelProperties.threads() == ChannelProperties.ThreadMode.VIRTUAL;
+    }
+
+    private static final class BinaryCapableHandshakeInterceptor implements HandshakeInterceptor {
+        @Override
+        public boolean beforeHandshake(
+                ServerHttpRequest request,
+                ServerHttpResponse response,
+                WebSocketHandler wsHandler,
+                Map<String, Object> attributes) {
+            attributes.put(WireFormatInterceptor.BINARY_CAPABLE, true);
+            return true;
+        }
+
+        @Override
+        public void afterHandshake(
+                ServerHttpRequest request,
+                ServerHttpResponse response,
+                WebSocketHandler wsHandler,
+                Exception exception) {}
     }
 }
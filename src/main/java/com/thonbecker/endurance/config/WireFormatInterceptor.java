@@ -0,0 +1,136 @@
+package com.thonbecker.endurance.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Negotiates the wire format of outgoing messages per client session.
+ *
+ * <p>A client connected to the plain WebSocket endpoint can send {@code accept:application/cbor}
+ * in its CONNECT frame; messages to that session are then transcoded from JSON to CBOR. Spring
+ * only writes binary WebSocket frames for {@code application/octet-stream}, so CBOR messages carry
+ * that content type plus a {@code payload-format:cbor} header. Broadcasts share one payload across
+ * all sessions, so each is transcoded once no matter how many sessions asked for CBOR.
+ */
+@Slf4j
+@Component
+public class WireFormatInterceptor implements ChannelInterceptor {
+    /** Handshake attribute marking sessions that can receive binary frames. */
+    public static final String BINARY_CAPABLE = "endurance.binaryCapable";
+
+    public static final String ACCEPT_HEADER = "accept";
+    public static final String PAYLOAD_FORMAT_HEADER = "payload-format";
+
+    private static final int TRANSCODED_CACHE_SIZE = 256;
+
+    private final ObjectMapper jsonMapper;
+    private final CBORMapper cborMapper = new CBORMapper();
+    private final Set<String> cborSessions = ConcurrentHashMap.newKeySet();
+    // byte[] keys compare by identity, which is exactly what a shared broadcast payload needs
+    private final Map<byte[], byte[]> transcoded =
+            Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<byte[], byte[]> eldest) {
+                    return size() > TRANSCODED_CACHE_SIZE;
+                }
+            });
+    private final Counter transcodedCounter;
+
+    public WireFormatInterceptor(ObjectMapper jsonMapper, MeterRegistry meterRegistry) {
+        this.jsonMapper = jsonMapper;
+        this.transcodedCounter = meterRegistry.counter("endurance.broadcast.cbor.transcoded");
+    }
+
+    /** Tracks the format each session asked for; installed on the client inbound channel. */
+    public ChannelInterceptor inbound() {
+        return new ChannelInterceptor() {
+            @Override
+            public Message<?> preSend(Message<?> message, MessageChannel channel) {
+                StompHeaderAccessor accessor =
+                        MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+                if (accessor != null
+                        && accessor.getCommand() == StompCommand.CONNECT
+                        && wantsCbor(accessor)) {
+                    cborSessions.add(accessor.getSessionId());
+                }
+                return message;
+            }
+        };
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        cborSessions.remove(event.getSessionId());
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(message);
+        if (accessor.getMessageType() != SimpMessageType.MESSAGE
+                || !cborSessions.contains(accessor.getSessionId())
+                || !(message.getPayload() instanceof byte[] json)
+                || !MimeTypeUtils.APPLICATION_JSON.isCompatibleWith(accessor.getContentType())) {
+            return message;
+        }
+
+        byte[] cbor = transcoded.computeIfAbsent(json, this::toCbor);
+        if (cbor == null) {
+            return message;
+        }
+        accessor.setContentType(MimeTypeUtils.APPLICATION_OCTET_STREAM);
+        accessor.setNativeHeader(PAYLOAD_FORMAT_HEADER, "cbor");
+        return MessageBuilder.createMessage(cbor, accessor.getMessageHeaders());
+    }
+
+    private boolean wantsCbor(StompHeaderAccessor accessor) {
+        String accept = accessor.getFirstNativeHeader(ACCEPT_HEADER);
+        if (accept == null || !accept.contains(CborMessageConverter.APPLICATION_CBOR.toString())) {
+            return false;
+        }
+        Map<String, Object> attributes = accessor.getSessionAttributes();
+        if (attributes == null || !Boolean.TRUE.equals(attributes.get(BINARY_CAPABLE))) {
+            log.debug(
+                    "Session {} asked for CBOR on an endpoint without binary frames",
+                    accessor.getSessionId());
+            return false;
+        }
+        return true;
+    }
+
+    private byte[] toCbor(byte[] json) {
+        try {
+            byte[] cbor = cborMapper.writeValueAsBytes(jsonMapper.readTree(json));
+            transcodedCounter.increment();
+            return cbor;
+        } catch (IOException e) {
+            log.warn("Could not transcode message to CBOR: {}", e.getMessage());
+            return null;
+        }
+    }
+}
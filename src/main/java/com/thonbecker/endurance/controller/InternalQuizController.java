@@ -0,0 +1,67 @@
+package com.thonbecker.endurance.controller;
+
+import com.thonbecker.endurance.type.AnswerSubmission;
+import com.thonbecker.endurance.type.JoinQuizRequest;
+import com.thonbecker.endurance.type.LeaveQuizRequest;
+import com.thonbecker.endurance.type.QuizStateSnapshot;
+
+import lombok.RequiredArgsConstructor;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.*;
+
+/**
+ * Commands forwarded by other instances for the quizzes this instance owns. They take the same
+ * path as the STOMP commands, so a quiz that moved on again is forwarded once more. Only there
+ * when quizzes are owned, and only for callers with the shared secret, see {@code
+ * InternalApiConfig}.
+ */
+@RestController
+@ConditionalOnProperty(prefix = "endurance.ownership", name = "enabled", havingValue = "true")
+@RequestMapping("/internal/quiz")
+@RequiredArgsConstructor
+public class InternalQuizController {
+    private final QuizController quizController;
+
+    @PostMapping("/join")
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    public void joinQuiz(@RequestBody JoinQuizRequest request) {
+        quizController.joinQuiz(request);
+    }
+
+    @PostMapping("/leave")
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    public void leaveQuiz(@RequestBody LeaveQuizRequest request) {
+        quizController.leaveQuiz(request);
+    }
+
+    @PostMapping("/start")
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    public void startQuiz(@RequestBody Long quizId) {
+        quizController.startQuiz(quizId);
+    }
+
+    @PostMapping("/submit")
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    public void submitAnswer(@RequestBody AnswerSubmission submission) {
+        quizController.submitAnswer(submission);
+    }
+
+    @PostMapping("/pause")
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    public void pauseQuiz(@RequestBody Long quizId) {
+        quizController.pauseQuiz(quizId);
+    }
+
+    @PostMapping("/end")
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    public void endQuiz(@RequestBody Long quizId) {
+        quizController.endQuiz(quizId);
+    }
+
+    @GetMapping("/state/{quizId}")
+    public QuizStateSnapshot getQuizState(@PathVariable Long quizId) {
+        return quizController.getQuizState(quizId);
+    }
+}
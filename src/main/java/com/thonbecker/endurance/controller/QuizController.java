@@ -1,14 +1,27 @@
 package com.thonbecker.endurance.controller;
 
+import com.thonbecker.endurance.exception.MailboxFullException;
+import com.thonbecker.endurance.exception.OwnerUnavailableException;
+import com.thonbecker.endurance.exception.QuizOwnedElsewhereException;
+import com.thonbecker.endurance.service.BroadcastSender;
+import com.thonbecker.endurance.service.QuestionTimeoutEvent;
+import com.thonbecker.endurance.service.QuizForwarder;
+import com.thonbecker.endurance.service.QuizListProjection;
+import com.thonbecker.endurance.service.QuizMailboxExecutor;
+import com.thonbecker.endurance.service.QuizOwnership;
 import com.thonbecker.endurance.service.QuizService;
+import com.thonbecker.endurance.service.QuizStateBroadcaster;
 import com.thonbecker.endurance.type.*;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.handler.annotation.DestinationVariable;
+import org.springframework.messaging.handler.annotation.Header;
 import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.messaging.handler.annotation.SendTo;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.annotation.SubscribeMapping;
 import org.springframework.stereotype.Controller;
 
 import java.util.List;
@@ -18,68 +31,171 @@ import java.util.List;
 @RequiredArgsConstructor
 public class QuizController {
     private final QuizService quizService;
-    private final SimpMessagingTemplate messagingTemplate;
+    private final QuizMailboxExecutor quizExecutor;
+    private final QuizStateBroadcaster stateBroadcaster;
+    private final BroadcastSender broadcastSender;
+    private final QuizListProjection quizListProjection;
+    private final QuizOwnership quizOwnership;
+    private final QuizForwarder quizForwarder;
 
-    // WebSocket endpoint to get available quizzes
-    @MessageMapping("/quiz/list")
-    @SendTo("/topic/quiz/list")
-    public List<Quiz> getAvailableQuizzes() {
-        return quizService.getAvailableQuizzes();
+    // Open quizzes for clients that (re)subscribe; /topic/quiz/list carries changes to the list
+    @SubscribeMapping("/quiz/list")
+    public List<QuizSummary> getAvailableQuizzes() {
+        return quizListProjection.getOpenQuizzes();
+    }
+
+    // One page per subscription; "after" (the nextCursor of the previous page) and "size" are
+    // headers of the SUBSCRIBE frame
+    @SubscribeMapping("/quiz/browse/{status}")
+    public QuizPage browseQuizzes(
+            @DestinationVariable QuizStatus status,
+            @Header(name = "after", required = false) String after,
+            @Header(name = "size", defaultValue = "20") int size) {
+        return quizService.browseQuizzes(status, after, size);
+    }
+
+    @SubscribeMapping("/quiz/search")
+    public QuizPage searchQuizzes(
+            @Header("title") String title,
+            @Header(name = "after", required = false) String after,
+            @Header(name = "size", defaultValue = "20") int size) {
+        return quizService.searchQuizzes(title, after, size);
     }
 
     @MessageMapping("/quiz/create")
     @SendTo("/topic/quiz/created")
     public Quiz createQuiz(Quiz quiz) {
-        Quiz createdQuiz = quizService.createQuiz(quiz);
-        // Broadcast updated quiz list
-        messagingTemplate.convertAndSend("/topic/quiz/list", quizService.getAvailableQuizzes());
-        return createdQuiz;
+        return quizService.createQuiz(quiz);
     }
 
     @MessageMapping("/quiz/create/trivia")
     @SendTo("/topic/quiz/created")
     public Quiz createTriviaQuiz(TriviaQuizRequest request) {
         log.info("Received request to create a trivia quiz: {}", request);
-        Quiz createdQuiz = quizService.createQuizWithGeneratedQuestions(
+        return quizService.createQuizWithGeneratedQuestions(
                 request.title(), request.questionCount(), request.difficulty());
-        // Broadcast updated quiz list
-        messagingTemplate.convertAndSend("/topic/quiz/list", quizService.getAvailableQuizzes());
-        return createdQuiz;
     }
 
+    // Snapshot for clients that (re)subscribe; deltas on /topic/quiz/state/{quizId} build on it
+    @SubscribeMapping("/quiz/state/{quizId}")
+    public QuizStateSnapshot getQuizState(@DestinationVariable Long quizId) {
+        if (!quizOwnership.isLocal(quizId)) {
+            return quizForwarder.fetchSnapshot(quizId);
+        }
+        return quizService.getSnapshot(quizId);
+    }
+
+    // Full roster for clients that (re)subscribe; /topic/quiz/{quizId}/players carries changes
+    @SubscribeMapping("/quiz/{quizId}/players")
+    public List<Player> getRoster(@DestinationVariable Long quizId) {
+        return quizService.getRoster(quizId);
+    }
+
+    // Commands that change a quiz run in that quiz's mailbox, one at a time and in order, on the
+    // instance that owns the quiz; finding the owner and forwarding to it happen in the mailbox
+    // too, so neither holds up the inbound channel
+
     @MessageMapping("/quiz/join")
-    @SendTo("/topic/quiz/players")
-    public List<Player> joinQuiz(JoinQuizRequest request) {
-        return quizService.addPlayer(request.player(), request.quizId());
+    public void joinQuiz(JoinQuizRequest request) {
+        dispatch(request.quizId(), "join", request, () -> {
+            quizService
+                    .addPlayer(request.player(), request.quizId())
+                    .ifPresent(this::sendRosterUpdate);
+            stateBroadcaster.publishChanges(request.quizId());
+        });
     }
 
     @MessageMapping("/quiz/leave")
-    @SendTo("/topic/quiz/players")
-    public List<Player> leaveQuiz(LeaveQuizRequest request) {
-        return quizService.removePlayer(request.playerId(), request.quizId());
+    public void leaveQuiz(LeaveQuizRequest request) {
+        dispatch(request.quizId(), "leave", request, () -> {
+            quizService
+                    .removePlayer(request.playerId(), request.quizId())
+                    .ifPresent(this::sendRosterUpdate);
+            stateBroadcaster.publishChanges(request.quizId());
+        });
+    }
+
+    // Roster changes only go to the quiz's own subscribers
+    private void sendRosterUpdate(RosterUpdate update) {
+        broadcastSender.send("/topic/quiz/" + update.quizId() + "/players", update);
     }
 
     @MessageMapping("/quiz/start")
     public void startQuiz(Long quizId) {
-        QuizState state = quizService.startQuiz(quizId);
-        messagingTemplate.convertAndSend("/topic/quiz/state/" + quizId, state);
+        dispatch(
+                quizId,
+                "start",
+                quizId,
+                () -> stateBroadcaster.publish(quizService.startQuiz(quizId)));
     }
 
     @MessageMapping("/quiz/submit")
     public void submitAnswer(AnswerSubmission submission) {
-        QuizState state = quizService.processAnswer(submission);
-        messagingTemplate.convertAndSend("/topic/quiz/state/" + submission.quizId(), state);
+        // Question transitions go out at once, other changes are coalesced
+        dispatch(submission.quizId(), "submit", submission, () -> quizService
+                .processAnswer(submission)
+                .ifPresentOrElse(
+                        stateBroadcaster::publish,
+                        () -> stateBroadcaster.publishChanges(submission.quizId())));
     }
 
     @MessageMapping("/quiz/pause")
     public void pauseQuiz(Long quizId) {
-        QuizState state = quizService.pauseQuiz(quizId);
-        messagingTemplate.convertAndSend("/topic/quiz/state/" + quizId, state);
+        dispatch(
+                quizId,
+                "pause",
+                quizId,
+                () -> stateBroadcaster.publish(quizService.pauseQuiz(quizId)));
     }
 
     @MessageMapping("/quiz/end")
     public void endQuiz(Long quizId) {
-        QuizState state = quizService.endQuiz(quizId);
-        messagingTemplate.convertAndSend("/topic/quiz/state/" + quizId, state);
+        dispatch(
+                quizId, "end", quizId, () -> stateBroadcaster.publish(quizService.endQuiz(quizId)));
+    }
+
+    private void dispatch(Long quizId, String command, Object payload, Runnable local) {
+        quizExecutor.execute(quizId, () -> {
+            try {
+                runOrForward(quizId, command, payload, local);
+            } catch (OwnerUnavailableException | QuizOwnedElsewhereException e) {
+                // The owner went away, or another instance took the quiz after it was looked up;
+                // either way the lookup was forgotten, so look again once
+                try {
+                    runOrForward(quizId, command, payload, local);
+                } catch (OwnerUnavailableException | QuizOwnedElsewhereException again) {
+                    log.error("Dropped {} for quiz {}: {}", command, quizId, again.getMessage());
+                    throw again;
+                }
+            }
+        });
+    }
+
+    private void runOrForward(Long quizId, String command, Object payload, Runnable local) {
+        if (quizOwnership.isLocal(quizId)) {
+            local.run();
+        } else {
+            quizForwarder.forward(quizId, command, payload);
+        }
+    }
+
+    // Deadlines expire on the timer thread, closing the question runs in the quiz's mailbox; a
+    // quiz that moved to another instance has its deadlines there
+    @EventListener
+    public void onQuestionTimeout(QuestionTimeoutEvent event) {
+        if (!quizOwnership.owns(event.quizId())) {
+            return;
+        }
+        try {
+            quizExecutor.execute(event.quizId(), () -> quizService
+                    .expireQuestion(event.quizId(), event.questionIndex())
+                    .ifPresent(stateBroadcaster::publish));
+        } catch (MailboxFullException e) {
+            log.warn(
+                    "Dropped timeout of question {} for quiz {}: {}",
+                    event.questionIndex(),
+                    event.quizId(),
+                    e.getMessage());
+        }
     }
 }
@@ -5,7 +5,13 @@ import jakarta.persistence.*;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "answer_submission", schema = "endurance")
+@Table(
+        name = "answer_submission",
+        schema = "endurance",
+        uniqueConstraints =
+                @UniqueConstraint(
+                        name = "uk_answer_quiz_question_player",
+                        columnNames = {"quiz_id", "question_id", "player_id"}))
 public class AnswerSubmissionEntity {
 
     @Id
@@ -65,25 +65,6 @@ public class PlayerEntity {
         this.quizzes = quizzes;
     }
 
-    // Helper method to convert entity to domain model
-    public com.thonbecker.endurance.type.Player toDomainModel(Long quizId) {
-        // Find the QuizPlayerEntity for the specified quiz
-        QuizPlayerEntity quizPlayer = quizzes.stream()
-                .filter(qp -> qp.getQuiz().getId().equals(quizId))
-                .findFirst()
-                .orElse(null);
-
-        int score = 0;
-        boolean isReady = false;
-
-        if (quizPlayer != null) {
-            score = quizPlayer.getScore();
-            isReady = quizPlayer.isReady();
-        }
-
-        return new com.thonbecker.endurance.type.Player(id, name, score, isReady);
-    }
-
     // Helper method to create entity from domain model
     public static PlayerEntity fromDomainModel(com.thonbecker.endurance.type.Player player) {
         return new PlayerEntity(player.id(), player.name());
@@ -2,15 +2,27 @@ package com.thonbecker.endurance.entity;
 
 import jakarta.persistence.*;
 
+import org.hibernate.annotations.BatchSize;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
 import java.util.ArrayList;
 import java.util.List;
 import java.util.stream.Collectors;
 
 @Entity
 @Table(name = "question", schema = "endurance")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_ONLY)
 public class QuestionEntity {
 
     @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "question_seq")
+    @SequenceGenerator(
+            name = "question_seq",
+            schema = "endurance",
+            sequenceName = "question_seq",
+            allocationSize = 50)
     private Long id;
 
     @ManyToOne
@@ -29,7 +41,10 @@ public class QuestionEntity {
     @Column(name = "question_order", nullable = false)
     private int questionOrder;
 
+    // Options of uncached questions load for up to 50 questions at a time
     @OneToMany(mappedBy = "question", cascade = CascadeType.ALL, orphanRemoval = true)
+    @Cache(usage = CacheConcurrencyStrategy.READ_ONLY)
+    @BatchSize(size = 50)
     private List<QuestionOptionEntity> options = new ArrayList<>();
 
     // Default constructor required by JPA
@@ -126,8 +141,9 @@ public class QuestionEntity {
     // Helper method to create entity from domain model
     public static QuestionEntity fromDomainModel(
             com.thonbecker.endurance.type.Question question, int order) {
+        // The ID comes from the question sequence on persist
         QuestionEntity entity = new QuestionEntity(
-                question.id(),
+                null,
                 question.questionText(),
                 question.correctOptionIndex(),
                 question.points(),
@@ -2,12 +2,22 @@ package com.thonbecker.endurance.entity;
 
 import jakarta.persistence.*;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
 @Entity
 @Table(name = "question_option", schema = "endurance")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_ONLY)
 public class QuestionOptionEntity {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "question_option_seq")
+    @SequenceGenerator(
+            name = "question_option_seq",
+            schema = "endurance",
+            sequenceName = "question_option_seq",
+            allocationSize = 50)
     private Long id;
 
     @ManyToOne
@@ -4,13 +4,15 @@ import com.thonbecker.endurance.type.QuizStatus;
 
 import jakarta.persistence.*;
 
+import org.springframework.data.domain.Persistable;
+
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 
 @Entity
 @Table(name = "quiz", schema = "endurance")
-public class QuizEntity {
+public class QuizEntity implements Persistable<Long> {
 
     @Id
     private Long id;
@@ -37,6 +39,10 @@ public class QuizEntity {
     @OneToMany(mappedBy = "quiz", cascade = CascadeType.ALL)
     private List<AnswerSubmissionEntity> submissions = new ArrayList<>();
 
+    // IDs are assigned, so without this save() would merge a new quiz and select it first
+    @Transient
+    private boolean isNew = true;
+
     // Default constructor required by JPA
     public QuizEntity() {}
 
@@ -50,6 +56,7 @@ public class QuizEntity {
     }
 
     // Getters and setters
+    @Override
     public Long getId() {
         return id;
     }
@@ -124,6 +131,17 @@ public class QuizEntity {
         this.submissions = submissions;
     }
 
+    @Override
+    public boolean isNew() {
+        return isNew;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markNotNew() {
+        isNew = false;
+    }
+
     // Helper method to convert entity to domain model
     public com.thonbecker.endurance.type.Quiz toDomainModel() {
         List<com.thonbecker.endurance.type.Question> domainQuestions =
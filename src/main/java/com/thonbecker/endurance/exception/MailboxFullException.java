@@ -0,0 +1,10 @@
+package com.thonbecker.endurance.exception;
+
+/**
+ * Exception thrown when a quiz has more pending commands than its mailbox allows.
+ */
+public class MailboxFullException extends QuizException {
+    public MailboxFullException(Long quizId, int capacity) {
+        super("Quiz " + quizId + " has " + capacity + " pending commands, try again later");
+    }
+}
@@ -0,0 +1,10 @@
+package com.thonbecker.endurance.exception;
+
+/**
+ * Exception thrown when a command could not be forwarded to the instance that owns its quiz.
+ */
+public class OwnerUnavailableException extends QuizException {
+    public OwnerUnavailableException(Long quizId, String reason) {
+        super("The instance running quiz " + quizId + " is not reachable: " + reason);
+    }
+}
@@ -0,0 +1,10 @@
+package com.thonbecker.endurance.exception;
+
+/**
+ * Exception thrown when a quiz cannot be run here because another instance took it first.
+ */
+public class QuizOwnedElsewhereException extends QuizException {
+    public QuizOwnedElsewhereException(Long quizId) {
+        super("Quiz " + quizId + " is run by another instance");
+    }
+}
@@ -0,0 +1,128 @@
+package com.thonbecker.endurance.repository;
+
+import com.thonbecker.endurance.type.AnswerSubmission;
+import com.thonbecker.endurance.type.ScoredAnswer;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Plain JDBC access to answer submissions for the write paths that must not go through
+ * Hibernate, which cannot batch inserts into the identity-keyed {@code answer_submission} table.
+ */
+@Repository
+public class AnswerSubmissionJdbcRepository {
+    private static final String ROW_PLACEHOLDER = "(?, ?, ?, ?, ?, ?)";
+    private static final int COLUMNS = 6;
+    private static final int MAX_ROWS_PER_STATEMENT = 1000;
+
+    /*
+     * Inserts the answers that are not recorded yet and adds the points of exactly those answers
+     * to the players' scores, in a single statement. Answers already present are left alone by
+     * the unique constraint on (quiz_id, question_id, player_id), so replaying a batch never
+     * counts points twice.
+     */
+    private static final String INSERT_IF_ABSENT_TEMPLATE =
+            """
+            WITH submitted (player_id, quiz_id, question_id, selected_option, submission_time, points) AS (
+                VALUES %s
+            ), answer AS (
+                SELECT DISTINCT ON (quiz_id, question_id, player_id) * FROM submitted
+            ), inserted AS (
+                INSERT INTO endurance.answer_submission
+                    (player_id, quiz_id, question_id, selected_option, submission_time)
+                SELECT player_id, quiz_id, question_id, selected_option, submission_time FROM answer
+                ON CONFLICT (quiz_id, question_id, player_id) DO NOTHING
+                RETURNING quiz_id, question_id, player_id
+            ), awarded AS (
+                SELECT i.quiz_id, i.player_id, SUM(a.points) AS points
+                FROM inserted i JOIN answer a USING (quiz_id, question_id, player_id)
+                GROUP BY i.quiz_id, i.player_id
+                HAVING SUM(a.points) > 0
+            ), scored AS (
+                UPDATE endurance.quiz_player qp SET score = qp.score + awarded.points
+                FROM awarded
+                WHERE qp.quiz_id = awarded.quiz_id AND qp.player_id = awarded.player_id
+                RETURNING qp.player_id
+            )
+            SELECT COUNT(*) FROM inserted
+            """;
+
+    private static final String SELECT_ANSWERED =
+            "SELECT question_id, player_id FROM endurance.answer_submission WHERE quiz_id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public AnswerSubmissionJdbcRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Records the given answers unless they are already recorded, and adds the points of the
+     * newly recorded ones to the players' scores.
+     *
+     * @param answers the answers with the points they earned
+     * @return the number of answers that were newly recorded
+     */
+    public int insertIfAbsent(List<ScoredAnswer> answers) {
+        int inserted = 0;
+        for (int from = 0; from < answers.size(); from += MAX_ROWS_PER_STATEMENT) {
+            List<ScoredAnswer> chunk =
+                    answers.subList(from, Math.min(from + MAX_ROWS_PER_STATEMENT, answers.size()));
+            Integer count = jdbcTemplate.queryForObject(
+                    insertIfAbsentSql(chunk.size()), Integer.class, parameters(chunk));
+            inserted += count != null ? count : 0;
+        }
+        return inserted;
+    }
+
+    /**
+     * Returns who answered which question of a quiz, according to the recorded answers.
+     *
+     * @param quizId the quiz
+     * @return the IDs of the players that answered, by question ID
+     */
+    public Map<Long, Set<String>> findAnswered(Long quizId) {
+        Map<Long, Set<String>> answered = new HashMap<>();
+        jdbcTemplate.query(
+                SELECT_ANSWERED,
+                rs -> {
+                    answered.computeIfAbsent(rs.getLong("question_id"), id -> new HashSet<>())
+                            .add(rs.getString("player_id"));
+                },
+                quizId);
+        return answered;
+    }
+
+    private static String insertIfAbsentSql(int rows) {
+        StringBuilder values = new StringBuilder(rows * (ROW_PLACEHOLDER.length() + 2));
+        for (int i = 0; i < rows; i++) {
+            if (i > 0) {
+                values.append(", ");
+            }
+            values.append(ROW_PLACEHOLDER);
+        }
+        return INSERT_IF_ABSENT_TEMPLATE.formatted(values);
+    }
+
+    private static Object[] parameters(List<ScoredAnswer> answers) {
+        Object[] args = new Object[answers.size() * COLUMNS];
+        int i = 0;
+        for (ScoredAnswer answer : answers) {
+            AnswerSubmission submission = answer.submission();
+            args[i++] = submission.playerId();
+            args[i++] = submission.quizId();
+            args[i++] = submission.questionId();
+            args[i++] = submission.selectedOption();
+            args[i++] = submission.submissionTime();
+            args[i++] = answer.points();
+        }
+        return args;
+    }
+}
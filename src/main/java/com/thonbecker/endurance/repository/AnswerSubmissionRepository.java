@@ -6,8 +6,6 @@ import com.thonbecker.endurance.entity.QuestionEntity;
 import com.thonbecker.endurance.entity.QuizEntity;
 
 import org.springframework.data.jpa.repository.JpaRepository;
-import org.springframework.data.jpa.repository.Query;
-import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -26,14 +24,4 @@ public interface AnswerSubmissionRepository extends JpaRepository<AnswerSubmissi
 
     Optional<AnswerSubmissionEntity> findByQuizAndPlayerAndQuestion(
             QuizEntity quiz, PlayerEntity player, QuestionEntity question);
-
-    boolean existsByQuizAndPlayerAndQuestion(
-            QuizEntity quiz, PlayerEntity player, QuestionEntity question);
-
-    @Query(
-            "SELECT COUNT(a) FROM AnswerSubmissionEntity a WHERE a.quiz = :quiz AND a.question = :question AND a.player.id IN :playerIds")
-    long countByQuizAndQuestionAndPlayerIdIn(
-            @Param("quiz") QuizEntity quiz,
-            @Param("question") QuestionEntity question,
-            @Param("playerIds") List<String> playerIds);
 }
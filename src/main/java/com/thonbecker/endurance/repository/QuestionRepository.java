@@ -4,8 +4,11 @@ import com.thonbecker.endurance.entity.QuestionEntity;
 import com.thonbecker.endurance.entity.QuizEntity;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -15,5 +18,10 @@ public interface QuestionRepository extends JpaRepository<QuestionEntity, Long>
 
     List<QuestionEntity> findByQuizOrderByQuestionOrderAsc(QuizEntity quiz);
 
+    // Initializes the options of questions already loaded with their quizzes
+    @Query("SELECT DISTINCT qu FROM QuestionEntity qu LEFT JOIN FETCH qu.options "
+            + "WHERE qu.quiz IN :quizzes")
+    List<QuestionEntity> fetchOptions(@Param("quizzes") Collection<QuizEntity> quizzes);
+
     long countByQuiz(QuizEntity quiz);
 }
@@ -0,0 +1,88 @@
+package com.thonbecker.endurance.repository;
+
+import com.thonbecker.endurance.type.QuizCheckpoint;
+import com.thonbecker.endurance.type.QuizStatus;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Plain JDBC access to the checkpoints of running quizzes, which are written in batches as one
+ * upsert per quiz and never loaded as entities.
+ */
+@Repository
+public class QuizCheckpointJdbcRepository {
+    private static final String UPSERT =
+            """
+            INSERT INTO endurance.quiz_checkpoint
+                (quiz_id, status, current_question_index, question_start_time, paused_at, sequence, taken_at)
+            VALUES (?, ?, ?, ?, ?, ?, CURRENT_TIMESTAMP)
+            ON CONFLICT (quiz_id) DO UPDATE SET
+                status = EXCLUDED.status,
+                current_question_index = EXCLUDED.current_question_index,
+                question_start_time = EXCLUDED.question_start_time,
+                paused_at = EXCLUDED.paused_at,
+                sequence = EXCLUDED.sequence,
+                taken_at = EXCLUDED.taken_at
+            """;
+
+    private static final String SELECT =
+            """
+            SELECT quiz_id, status, current_question_index, question_start_time, paused_at, sequence
+            FROM endurance.quiz_checkpoint
+            WHERE quiz_id = ?
+            """;
+
+    private static final String DELETE = "DELETE FROM endurance.quiz_checkpoint WHERE quiz_id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public QuizCheckpointJdbcRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Writes the given checkpoints, replacing the previous checkpoint of each quiz.
+     *
+     * @param checkpoints the checkpoints, at most one per quiz
+     */
+    public void saveAll(Collection<QuizCheckpoint> checkpoints) {
+        if (checkpoints.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(UPSERT, checkpoints, checkpoints.size(), (ps, checkpoint) -> {
+            ps.setLong(1, checkpoint.quizId());
+            ps.setString(2, checkpoint.status().name());
+            ps.setInt(3, checkpoint.currentQuestionIndex());
+            ps.setLong(4, checkpoint.questionStartTime());
+            ps.setLong(5, checkpoint.pausedAt());
+            ps.setLong(6, checkpoint.sequence());
+        });
+    }
+
+    public Optional<QuizCheckpoint> findById(Long quizId) {
+        List<QuizCheckpoint> checkpoints = jdbcTemplate.query(
+                SELECT,
+                (rs, row) -> new QuizCheckpoint(
+                        rs.getLong("quiz_id"),
+                        QuizStatus.valueOf(rs.getString("status")),
+                        rs.getInt("current_question_index"),
+                        rs.getLong("question_start_time"),
+                        rs.getLong("paused_at"),
+                        rs.getLong("sequence")),
+                quizId);
+        return checkpoints.stream().findFirst();
+    }
+
+    public void deleteAllById(Collection<Long> quizIds) {
+        if (quizIds.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(
+                DELETE, quizIds, quizIds.size(), (ps, quizId) -> ps.setLong(1, quizId));
+    }
+}
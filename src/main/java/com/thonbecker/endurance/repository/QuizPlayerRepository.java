@@ -4,8 +4,11 @@ import com.thonbecker.endurance.entity.PlayerEntity;
 import com.thonbecker.endurance.entity.QuizEntity;
 import com.thonbecker.endurance.entity.QuizPlayerEntity;
 import com.thonbecker.endurance.entity.QuizPlayerKey;
+import com.thonbecker.endurance.type.Player;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -16,6 +19,13 @@ public interface QuizPlayerRepository extends JpaRepository<QuizPlayerEntity, Qu
 
     List<QuizPlayerEntity> findByQuiz(QuizEntity quiz);
 
+    // Reads quiz_player joined to player, so nobody's other quizzes are loaded
+    @Query("SELECT new com.thonbecker.endurance.type.Player(p.id, p.name, qp.score, qp.ready) "
+            + "FROM QuizPlayerEntity qp JOIN qp.player p WHERE qp.quiz.id = :quizId")
+    List<Player> findRoster(@Param("quizId") Long quizId);
+
+    boolean existsByQuiz(QuizEntity quiz);
+
     List<QuizPlayerEntity> findByPlayer(PlayerEntity player);
 
     Optional<QuizPlayerEntity> findByQuizAndPlayer(QuizEntity quiz, PlayerEntity player);
@@ -2,11 +2,18 @@ package com.thonbecker.endurance.repository;
 
 import com.thonbecker.endurance.entity.QuizEntity;
 import com.thonbecker.endurance.type.QuizStatus;
+import com.thonbecker.endurance.type.QuizSummary;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface QuizRepository extends JpaRepository<QuizEntity, Long> {
@@ -15,5 +22,57 @@ public interface QuizRepository extends JpaRepository<QuizEntity, Long> {
 
     List<QuizEntity> findByStatusIn(List<QuizStatus> statuses);
 
-    List<QuizEntity> findByTitleContainingIgnoreCase(String titlePart);
+    @Query("SELECT q.id FROM QuizEntity q WHERE q.status IN :statuses")
+    List<Long> findIdsByStatusIn(@Param("statuses") List<QuizStatus> statuses);
+
+    // Summaries count questions and players in the same statement, without loading either
+    String SUMMARY_SELECT =
+            "SELECT new com.thonbecker.endurance.type.QuizSummary(q.id, q.title, q.status, "
+                    + "(SELECT COUNT(qu) FROM QuestionEntity qu WHERE qu.quiz = q), "
+                    + "(SELECT COUNT(qp) FROM QuizPlayerEntity qp WHERE qp.quiz = q), q.createdAt) "
+                    + "FROM QuizEntity q ";
+
+    @Query(SUMMARY_SELECT + "WHERE q.status IN :statuses")
+    List<QuizSummary> findSummariesByStatusIn(@Param("statuses") List<QuizStatus> statuses);
+
+    @Query(SUMMARY_SELECT + "WHERE q.id = :quizId")
+    Optional<QuizSummary> findSummaryById(@Param("quizId") Long quizId);
+
+    // Pages seek past the last quiz of the previous page on (created_at, id), so a page costs the
+    // same however deep it is
+    String NEWEST_FIRST = " ORDER BY q.createdAt DESC, q.id DESC";
+    String AFTER_CURSOR = " AND (q.createdAt, q.id) < (:createdAt, :id)";
+    // Title matches come from the trigram index and are sorted before the page is cut, so a
+    // search page costs more the more quizzes match, however deep it is
+    String TITLE_MATCHES = "WHERE q.title ILIKE :pattern ESCAPE '\\'";
+
+    @Query(SUMMARY_SELECT + "WHERE q.status = :status" + NEWEST_FIRST)
+    List<QuizSummary> findPageByStatus(@Param("status") QuizStatus status, Limit limit);
+
+    @Query(SUMMARY_SELECT + "WHERE q.status = :status" + AFTER_CURSOR + NEWEST_FIRST)
+    List<QuizSummary> findPageByStatusAfter(
+            @Param("status") QuizStatus status,
+            @Param("createdAt") LocalDateTime createdAt,
+            @Param("id") Long id,
+            Limit limit);
+
+    @Query(SUMMARY_SELECT + TITLE_MATCHES + NEWEST_FIRST)
+    List<QuizSummary> findPageByTitle(@Param("pattern") String pattern, Limit limit);
+
+    @Query(SUMMARY_SELECT + TITLE_MATCHES + AFTER_CURSOR + NEWEST_FIRST)
+    List<QuizSummary> findPageByTitleAfter(
+            @Param("pattern") String pattern,
+            @Param("createdAt") LocalDateTime createdAt,
+            @Param("id") Long id,
+            Limit limit);
+
+    // Questions come with their quiz in one statement; options follow through
+    // QuestionRepository.fetchOptions, as fetching both lists at once would multiply the rows
+    @Query("SELECT q FROM QuizEntity q LEFT JOIN FETCH q.questions qu WHERE q.id = :quizId "
+            + "ORDER BY qu.questionOrder")
+    Optional<QuizEntity> findWithQuestionsById(@Param("quizId") Long quizId);
+
+    @Modifying
+    @Query("UPDATE QuizEntity q SET q.status = :status WHERE q.id = :quizId")
+    int updateStatus(@Param("quizId") Long quizId, @Param("status") QuizStatus status);
 }
@@ -0,0 +1,481 @@
+package com.thonbecker.endurance.service;
+
+import com.thonbecker.endurance.type.AnswerSubmission;
+import com.thonbecker.endurance.type.ScoredAnswer;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only journal of accepted answers in memory-mapped segment files.
+ *
+ * <p>Every answer takes one record of {@value #RECORD_SIZE} bytes: its sequence number, quiz,
+ * question, submission time, selected option, points and player ID, followed by a checksum of all
+ * of them. Records are written straight into the mapped segment. A syncer thread forces what was
+ * written to disk, and everyone waiting in {@link #awaitSynced} since the previous force returns
+ * with the same one. A full segment is forced and the next one started.
+ *
+ * <p>How far the journal was shipped to the database is kept in a small file next to the
+ * segments. Segments whose answers were all shipped are deleted after the retention. On open, the
+ * segments are read up to the first record that is missing or does not match its checksum.
+ */
+@Slf4j
+public class AnswerJournal implements Closeable {
+    public static final int RECORD_SIZE = 128;
+    static final int MAX_PLAYER_ID_BYTES = 82;
+
+    // Offsets within a record
+    private static final int SEQUENCE = 0;
+    private static final int QUIZ_ID = 8;
+    private static final int QUESTION_ID = 16;
+    private static final int SUBMISSION_TIME = 24;
+    private static final int SELECTED_OPTION = 32;
+    private static final int POINTS = 36;
+    private static final int PLAYER_ID_LENGTH = 40;
+    private static final int PLAYER_ID = 42;
+    private static final int CHECKSUM = PLAYER_ID + MAX_PLAYER_ID_BYTES;
+
+    private static final String SEGMENT_PREFIX = "answers-";
+    private static final String SEGMENT_SUFFIX = ".journal";
+
+    private static final class Segment {
+        private final long firstSequence;
+        private final Path path;
+        private final MappedByteBuffer buffer;
+        private final int capacity;
+        // When the segment was full, zero while it is written to
+        private volatile long completedAt;
+
+        private Segment(long firstSequence, Path path, MappedByteBuffer buffer) {
+            this.firstSequence = firstSequence;
+            this.path = path;
+            this.buffer = buffer;
+            this.capacity = buffer.capacity() / RECORD_SIZE;
+        }
+
+        private int offset(long sequence) {
+            return (int) (sequence - firstSequence) * RECORD_SIZE;
+        }
+    }
+
+    private final Path directory;
+    private final long segmentBytes;
+    private final NavigableMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+    private final MappedByteBuffer shippedMark;
+    private final Thread syncer;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition appended = lock.newCondition();
+    private final Condition synced = lock.newCondition();
+
+    // Guarded by lock
+    private final CRC32C checksum = new CRC32C();
+    private Segment current;
+    private long lastAppended;
+    private long lastSynced;
+    private UncheckedIOException syncFailure;
+    private boolean closed;
+
+    private AnswerJournal(Path directory, long segmentBytes) throws IOException {
+        this.directory = directory;
+        // Whole records only
+        this.segmentBytes = Math.max(1, segmentBytes / RECORD_SIZE) * RECORD_SIZE;
+        Files.createDirectories(directory);
+        this.shippedMark = map(directory.resolve("shipped"), Long.BYTES);
+
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path path : files.filter(AnswerJournal::isSegment).toList()) {
+                String name = path.getFileName().toString();
+                long firstSequence = Long.parseLong(name.substring(
+                        SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+                Segment segment = new Segment(firstSequence, path, map(path, Files.size(path)));
+                segment.completedAt = System.currentTimeMillis();
+                segments.put(firstSequence, segment);
+            }
+        }
+        recover();
+
+        this.syncer =
+                Thread.ofPlatform().name("answer-journal-sync").daemon().start(this::runSyncer);
+    }
+
+    /**
+     * Opens the journal in a directory, creating it if needed.
+     *
+     * @param directory the directory of the segment files
+     * @param segmentBytes size of new segment files
+     * @return the journal, ready to append after the last intact record
+     */
+    public static AnswerJournal open(Path directory, long segmentBytes) {
+        try {
+            return new AnswerJournal(directory, segmentBytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open answer journal in " + directory, e);
+        }
+    }
+
+    /** Whether an answer fits into a record; longer player IDs cannot be journaled. */
+    public static boolean fits(AnswerSubmission submission) {
+        return submission.playerId().getBytes(StandardCharsets.UTF_8).length <= MAX_PLAYER_ID_BYTES;
+    }
+
+    /**
+     * Appends an answer. It is in the page cache once this returns, and on disk once {@link
+     * #awaitSynced} returns for its sequence number.
+     *
+     * @param answer the answer and the points it earned
+     * @return the sequence number of the answer
+     */
+    public long append(ScoredAnswer answer) {
+        AnswerSubmission submission = answer.submission();
+        byte[] playerId = submission.playerId().getBytes(StandardCharsets.UTF_8);
+        if (playerId.length > MAX_PLAYER_ID_BYTES) {
+            throw new IllegalArgumentException("Player ID too long for the answer journal");
+        }
+
+        lock.lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("Answer journal is closed");
+            }
+            // Nothing appended from now on would ever be synced
+            if (syncFailure != null) {
+                throw syncFailure;
+            }
+            long sequence = lastAppended + 1;
+            if (sequence - current.firstSequence >= current.capacity) {
+                roll(sequence);
+            }
+            MappedByteBuffer buffer = current.buffer;
+            int offset = current.offset(sequence);
+            buffer.putLong(offset + SEQUENCE, sequence);
+            buffer.putLong(offset + QUIZ_ID, submission.quizId());
+            buffer.putLong(offset + QUESTION_ID, submission.questionId());
+            buffer.putLong(offset + SUBMISSION_TIME, submission.submissionTime());
+            buffer.putInt(offset + SELECTED_OPTION, submission.selectedOption());
+            buffer.putInt(offset + POINTS, answer.points());
+            buffer.putShort(offset + PLAYER_ID_LENGTH, (short) playerId.length);
+            buffer.put(offset + PLAYER_ID, playerId);
+            buffer.putInt(offset + CHECKSUM, checksum(buffer, offset));
+
+            lastAppended = sequence;
+            appended.signal();
+            return sequence;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits until the answer with the given sequence number, and every one before it, is on disk.
+     *
+     * @param sequence the sequence number returned by {@link #append}
+     * @throws UncheckedIOException if the journal could not be synced
+     */
+    public void awaitSynced(long sequence) {
+        lock.lock();
+        try {
+            while (lastSynced < sequence) {
+                if (syncFailure != null) {
+                    throw syncFailure;
+                }
+                if (closed) {
+                    throw new IllegalStateException("Answer journal is closed");
+                }
+                synced.awaitUninterruptibly();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Sequence number of the last answer known to be on disk. */
+    public long synced() {
+        lock.lock();
+        try {
+            return lastSynced;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Reads synced answers in order.
+     *
+     * @param fromSequence the sequence number of the first answer
+     * @param max the most answers to read
+     * @return the answers from {@code fromSequence} on, without gaps
+     */
+    public List<ScoredAnswer> read(long fromSequence, int max) {
+        long toSequence;
+        lock.lock();
+        try {
+            toSequence = Math.min(lastSynced, fromSequence + max - 1);
+        } finally {
+            lock.unlock();
+        }
+
+        List<ScoredAnswer> answers = new ArrayList<>();
+        for (long sequence = fromSequence; sequence <= toSequence; sequence++) {
+            Segment segment = segments.floorEntry(sequence).getValue();
+            answers.add(readRecord(segment.buffer, segment.offset(sequence)));
+        }
+        return answers;
+    }
+
+    /** Sequence number of the last answer known to be in the database. */
+    public long shipped() {
+        return shippedMark.getLong(0);
+    }
+
+    /**
+     * Records that every answer up to a sequence number is in the database. The mark is only
+     * forced to disk before segments are deleted: after a crash, every answer shipped since then
+     * is shipped again, which the database ignores.
+     *
+     * @param sequence the last shipped sequence number
+     */
+    public void markShipped(long sequence) {
+        shippedMark.putLong(0, sequence);
+    }
+
+    /** Answers appended but not shipped yet. */
+    public long backlog() {
+        lock.lock();
+        try {
+            return lastAppended - shipped();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Deletes the full segments whose answers were all shipped at least {@code retention} ago.
+     *
+     * @param retention how long to keep shipped segments
+     * @return the number of deleted segments
+     */
+    public int deleteShipped(Duration retention) {
+        long shipped = shipped();
+        long cutoff = System.currentTimeMillis() - retention.toMillis();
+        int deleted = 0;
+        boolean markForced = false;
+        for (Segment segment : List.copyOf(segments.values())) {
+            Long next = segments.higherKey(segment.firstSequence);
+            // The current segment has no successor and is never deleted
+            if (next == null || next - 1 > shipped || segment.completedAt > cutoff) {
+                break;
+            }
+            if (!markForced) {
+                // After a crash, the mark must not point into a segment that is gone
+                shippedMark.force();
+                markForced = true;
+            }
+            segments.remove(segment.firstSequence);
+            try {
+                Files.deleteIfExists(segment.path);
+                deleted++;
+            } catch (IOException e) {
+                log.warn("Could not delete journal segment {}: {}", segment.path, e.getMessage());
+            }
+        }
+        return deleted;
+    }
+
+    /** Syncs what was appended and stops the syncer. */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            appended.signal();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            syncer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        lock.lock();
+        try {
+            current.buffer.force();
+            synced.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void runSyncer() {
+        Segment forcedSegment = null;
+        int forcedRecords = 0;
+        while (true) {
+            Segment segment;
+            long target;
+            lock.lock();
+            try {
+                while (lastAppended == lastSynced && !closed) {
+                    appended.awaitUninterruptibly();
+                }
+                if (lastAppended == lastSynced) {
+                    return;
+                }
+                segment = current;
+                target = lastAppended;
+            } finally {
+                lock.unlock();
+            }
+
+            // Segments before the current one were forced when they filled up
+            int records = (int) (target - segment.firstSequence + 1);
+            int from = segment == forcedSegment ? forcedRecords : 0;
+            try {
+                segment.buffer.force(from * RECORD_SIZE, (records - from) * RECORD_SIZE);
+            } catch (UncheckedIOException e) {
+                log.error("Could not sync answer journal", e);
+                lock.lock();
+                try {
+                    syncFailure = e;
+                    synced.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+                return;
+            }
+            forcedSegment = segment;
+            forcedRecords = records;
+
+            lock.lock();
+            try {
+                lastSynced = target;
+                synced.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    // Called with the lock held
+    private void roll(long firstSequence) {
+        current.buffer.force();
+        current.completedAt = System.currentTimeMillis();
+        current = createSegment(firstSequence);
+    }
+
+    private Segment createSegment(long firstSequence) {
+        Path path = directory.resolve(
+                "%s%020d%s".formatted(SEGMENT_PREFIX, firstSequence, SEGMENT_SUFFIX));
+        try {
+            Segment segment = new Segment(firstSequence, path, map(path, segmentBytes));
+            segments.put(firstSequence, segment);
+            // Makes the new file itself survive a crash
+            try (FileChannel dir = FileChannel.open(directory, StandardOpenOption.READ)) {
+                dir.force(true);
+            }
+            return segment;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot create journal segment " + path, e);
+        }
+    }
+
+    // Finds the last intact record and clears whatever an earlier run left behind it
+    private void recover() {
+        // Answers before the first remaining segment were shipped, even if the mark lost that
+        if (!segments.isEmpty() && shipped() < segments.firstKey() - 1) {
+            log.warn(
+                    "Shipped mark {} is behind the first journal segment, moving it to {}",
+                    shipped(),
+                    segments.firstKey() - 1);
+            markShipped(segments.firstKey() - 1);
+            shippedMark.force();
+        }
+        long last = shipped();
+        for (Segment segment : segments.values()) {
+            for (int i = 0; i < segment.capacity; i++) {
+                int offset = i * RECORD_SIZE;
+                if (!isIntact(segment.buffer, offset, segment.firstSequence + i)) {
+                    break;
+                }
+                last = Math.max(last, segment.firstSequence + i);
+            }
+        }
+        lastAppended = last;
+        lastSynced = last;
+
+        Segment tail = segments.isEmpty() ? null : segments.lastEntry().getValue();
+        long next = last + 1;
+        if (tail != null
+                && next >= tail.firstSequence
+                && next - tail.firstSequence < tail.capacity) {
+            tail.completedAt = 0;
+            current = tail;
+            for (long sequence = next;
+                    sequence - tail.firstSequence < tail.capacity
+                            && tail.buffer.getLong(tail.offset(sequence) + SEQUENCE) != 0;
+                    sequence++) {
+                tail.buffer.put(tail.offset(sequence), new byte[RECORD_SIZE]);
+            }
+            tail.buffer.force();
+        } else {
+            current = createSegment(next);
+        }
+        log.info("Answer journal opened at sequence {}, shipped up to {}", last, shipped());
+    }
+
+    private boolean isIntact(MappedByteBuffer buffer, int offset, long sequence) {
+        return buffer.getLong(offset + SEQUENCE) == sequence
+                && buffer.getInt(offset + CHECKSUM) == checksum(buffer, offset);
+    }
+
+    private int checksum(MappedByteBuffer buffer, int offset) {
+        checksum.reset();
+        checksum.update(buffer.slice(offset, CHECKSUM));
+        return (int) checksum.getValue();
+    }
+
+    private static ScoredAnswer readRecord(MappedByteBuffer buffer, int offset) {
+        byte[] playerId = new byte[buffer.getShort(offset + PLAYER_ID_LENGTH)];
+        buffer.get(offset + PLAYER_ID, playerId);
+        AnswerSubmission submission = new AnswerSubmission(
+                new String(playerId, StandardCharsets.UTF_8),
+                buffer.getLong(offset + QUIZ_ID),
+                buffer.getLong(offset + QUESTION_ID),
+                buffer.getInt(offset + SELECTED_OPTION),
+                buffer.getLong(offset + SUBMISSION_TIME));
+        return new ScoredAnswer(submission, buffer.getInt(offset + POINTS));
+    }
+
+    private static MappedByteBuffer map(Path path, long size) throws IOException {
+        try (FileChannel channel = FileChannel.open(
+                path,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            // The mapping stays valid once the channel is closed
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+    }
+
+    private static boolean isSegment(Path path) {
+        String name = path.getFileName().toString();
+        return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+    }
+}
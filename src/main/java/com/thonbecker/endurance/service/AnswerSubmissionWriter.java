@@ -0,0 +1,453 @@
+package com.thonbecker.endurance.service;
+
+import com.thonbecker.endurance.config.AnswerPersistenceProperties;
+import com.thonbecker.endurance.config.AnswerPersistenceProperties.DurabilityMode;
+import com.thonbecker.endurance.repository.AnswerSubmissionJdbcRepository;
+import com.thonbecker.endurance.type.AnswerSubmission;
+import com.thonbecker.endurance.type.ScoredAnswer;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import jakarta.annotation.PreDestroy;
+
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.stereotype.Service;
+
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+
+/**
+ * Write-behind pipeline for accepted answers.
+ *
+ * <p>Depending on the configured {@link DurabilityMode}, answers are either written in the
+ * submitting thread or put on a bounded queue that a single flusher thread writes out in
+ * multi-row batches, whenever a batch is full or the flush interval has elapsed. When the queue
+ * is full the submitting thread writes its answer itself, so accepted answers are never dropped.
+ * A batch that fails is retried with backoff; once the retries are used up, whoever waits for it
+ * writes it itself, and the flusher keeps retrying it before it takes any new answers.
+ *
+ * <p>In {@link DurabilityMode#JOURNAL} mode answers are appended to an {@link AnswerJournal}
+ * instead, without waiting for the sync. A quiz waits in {@link #awaitJournaled} before anything
+ * that shows its answers goes out, so the answers that arrived in the meantime share one sync
+ * instead of taking turns in the quiz's mailbox. The flusher thread ships the journal to the
+ * database in batches. Whatever was not shipped before the instance stopped is shipped when it
+ * starts again, before running quizzes are rebuilt from the database.
+ */
+@Slf4j
+@Service
+public class AnswerSubmissionWriter {
+    private static final PendingAnswer FLUSH_REQUEST = new PendingAnswer(null, null);
+
+    private record QuestionKey(Long quizId, Long questionId) {}
+
+    private record PendingAnswer(ScoredAnswer answer, CompletableFuture<Void> written) {}
+
+    // Answers of a quiz appended to the journal since it last waited for a sync
+    private record Unsynced(long lastSequence, List<ScoredAnswer> answers) {}
+
+    // Fails the futures of a batch that could not be written, so their callers can write it
+    private static class UnwrittenAnswersException extends RuntimeException {
+        private final transient List<ScoredAnswer> answers;
+
+        UnwrittenAnswersException(List<ScoredAnswer> answers, Throwable cause) {
+            super("Failed to write " + answers.size() + " answers", cause);
+            this.answers = answers;
+        }
+    }
+
+    private final AnswerSubmissionJdbcRepository answerSubmissionJdbcRepository;
+    private final AnswerPersistenceProperties properties;
+    private final BlockingQueue<PendingAnswer> queue;
+    private final Map<QuestionKey, CompletableFuture<Void>> lastPendingByQuestion =
+            new ConcurrentHashMap<>();
+    private final AnswerJournal journal;
+    private final Map<Long, Unsynced> unsyncedByQuiz = new ConcurrentHashMap<>();
+    private final Thread flusher;
+    private volatile boolean running = true;
+    // The batch the flusher was retrying when it stopped
+    private volatile List<PendingAnswer> unfinished = List.of();
+
+    private final Counter writtenCounter;
+    private final Counter failedCounter;
+    private final Counter duplicateCounter;
+    private final Counter overflowCounter;
+    private final Timer flushTimer;
+    private final Counter journaledCounter;
+    private final Timer journalSyncTimer;
+
+    public AnswerSubmissionWriter(
+            AnswerSubmissionJdbcRepository answerSubmissionJdbcRepository,
+            AnswerPersistenceProperties properties,
+            MeterRegistry meterRegistry) {
+        this.answerSubmissionJdbcRepository = answerSubmissionJdbcRepository;
+        this.properties = properties;
+        this.queue = new ArrayBlockingQueue<>(properties.queueCapacity());
+
+        Gauge.builder("endurance.answers.backlog", queue, BlockingQueue::size)
+                .description("Accepted answers waiting to be written")
+                .register(meterRegistry);
+        this.writtenCounter = meterRegistry.counter("endurance.answers.written");
+        this.failedCounter = meterRegistry.counter("endurance.answers.failed");
+        this.duplicateCounter = meterRegistry.counter("endurance.answers.duplicates");
+        this.overflowCounter = meterRegistry.counter("endurance.answers.overflow");
+        this.flushTimer = meterRegistry.timer("endurance.answers.flush");
+        this.journaledCounter = meterRegistry.counter("endurance.answers.journaled");
+        this.journalSyncTimer = meterRegistry.timer("endurance.answers.journal.sync");
+
+        if (properties.mode() == DurabilityMode.JOURNAL) {
+            this.journal = AnswerJournal.open(
+                    Path.of(properties.journal().directory()),
+                    properties.journal().segmentSize().toBytes());
+            Gauge.builder("endurance.answers.journal.backlog", journal, AnswerJournal::backlog)
+                    .description("Journaled answers not yet written to the database")
+                    .register(meterRegistry);
+            replayJournal();
+        } else {
+            this.journal = null;
+        }
+
+        this.flusher = Thread.ofPlatform()
+                .name("answer-writer")
+                .daemon()
+                .start(journal != null ? this::runShipper : this::runFlusher);
+        log.info("Answer writer started in {} mode", properties.mode());
+    }
+
+    /**
+     * Makes an accepted answer and the points it earned durable according to the configured
+     * mode.
+     *
+     * @param submission the accepted answer
+     * @param points the points to add to the player's score
+     * @return true if the answer was written in the caller, and so is undone if the caller's
+     *     transaction rolls back
+     */
+    public boolean write(AnswerSubmission submission, int points) {
+        ScoredAnswer answer = new ScoredAnswer(submission, points);
+        if (properties.mode() == DurabilityMode.SYNC || !running) {
+            writeNow(List.of(answer));
+            return true;
+        }
+        if (journal != null) {
+            if (!appendToJournal(answer)) {
+                writeNow(List.of(answer));
+                return true;
+            }
+            return false;
+        }
+
+        PendingAnswer pending = new PendingAnswer(answer, new CompletableFuture<>());
+        QuestionKey key = new QuestionKey(submission.quizId(), submission.questionId());
+        lastPendingByQuestion.put(key, pending.written());
+        if (!queue.offer(pending)) {
+            // Backlog is full, write in the caller instead of dropping the answer
+            overflowCounter.increment();
+            try {
+                writeNow(List.of(answer));
+            } catch (RuntimeException e) {
+                lastPendingByQuestion.remove(key, pending.written());
+                throw e;
+            }
+            complete(List.of(pending), null);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Waits until every answer accepted so far for the given question has been written. {@link
+     * DurabilityMode#BATCHED} waits for the database, and writes the answers itself when the
+     * flusher could not, and {@link DurabilityMode#JOURNAL} waits for the journal; the other modes
+     * return immediately.
+     *
+     * @param quizId the quiz
+     * @param questionId the question being closed
+     */
+    public void awaitWritten(Long quizId, Long questionId) {
+        if (properties.mode() == DurabilityMode.JOURNAL) {
+            awaitJournaled(quizId);
+            return;
+        }
+        if (properties.mode() != DurabilityMode.BATCHED) {
+            return;
+        }
+        CompletableFuture<Void> written =
+                lastPendingByQuestion.get(new QuestionKey(quizId, questionId));
+        if (written == null) {
+            return;
+        }
+
+        if (!written.isDone()) {
+            // Do not wait for the rest of the flush interval
+            queue.offer(FLUSH_REQUEST);
+        }
+        try {
+            written.get(properties.awaitTimeout().toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof UnwrittenAnswersException unwritten) {
+                writeUnwritten(unwritten);
+            }
+        } catch (TimeoutException e) {
+            log.warn(
+                    "Answers for question {} of quiz {} were not written in time: {}",
+                    questionId,
+                    quizId,
+                    e.getMessage());
+        }
+    }
+
+    /**
+     * Waits until every answer of a quiz accepted so far is synced to the journal, and writes them
+     * to the database instead if the journal cannot be synced. Only {@link DurabilityMode#JOURNAL}
+     * waits; the other modes return immediately.
+     *
+     * @param quizId the quiz
+     */
+    public void awaitJournaled(Long quizId) {
+        if (journal == null) {
+            return;
+        }
+        Unsynced unsynced = unsyncedByQuiz.remove(quizId);
+        if (unsynced == null) {
+            return;
+        }
+        try {
+            journalSyncTimer.record(() -> journal.awaitSynced(unsynced.lastSequence()));
+        } catch (UncheckedIOException | IllegalStateException e) {
+            log.error(
+                    "Could not sync {} journaled answers of quiz {}, writing them to the database",
+                    unsynced.answers().size(),
+                    quizId,
+                    e);
+            writeNow(unsynced.answers());
+        }
+    }
+
+    // The flusher gave up on the batch for now; the database may take it from here
+    private void writeUnwritten(UnwrittenAnswersException unwritten) {
+        try {
+            writeNow(unwritten.answers);
+        } catch (RuntimeException e) {
+            log.warn(
+                    "Could not write {} answers either, they are retried in the background: {}",
+                    unwritten.answers.size(),
+                    e.getMessage());
+        }
+    }
+
+    public int getBacklog() {
+        return queue.size();
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        flusher.interrupt();
+        flusher.join(properties.awaitTimeout().toMillis());
+        // Anything the flusher did not get to is written here
+        List<PendingAnswer> remaining = new ArrayList<>(unfinished);
+        queue.drainTo(remaining);
+        remaining.removeIf(pending -> pending == FLUSH_REQUEST);
+        if (!flush(remaining)) {
+            log.error("Gave up on {} answers that could not be written", remaining.size());
+        }
+        if (journal != null) {
+            try {
+                shipJournal();
+            } catch (RuntimeException e) {
+                log.warn("Journaled answers are shipped on the next start: {}", e.getMessage());
+            }
+            journal.close();
+        }
+        log.info("Answer writer stopped");
+    }
+
+    private void runFlusher() {
+        List<PendingAnswer> batch = new ArrayList<>(properties.batchSize());
+        while (running) {
+            // A batch that could not be written is retried before new answers are taken
+            if (batch.isEmpty()) {
+                try {
+                    collectBatch(batch);
+                } catch (InterruptedException e) {
+                    // Shutting down, write what has been collected
+                }
+            }
+            if (flush(batch)) {
+                batch.clear();
+            } else {
+                pause(backoff(properties.retryAttempts()));
+            }
+        }
+        unfinished = batch;
+    }
+
+    // Returns whether the answer is journaled; if not, the caller writes it instead
+    private boolean appendToJournal(ScoredAnswer answer) {
+        if (!AnswerJournal.fits(answer.submission())) {
+            return false;
+        }
+        try {
+            long sequence = journal.append(answer);
+            unsyncedByQuiz.compute(answer.submission().quizId(), (quizId, unsynced) -> {
+                List<ScoredAnswer> answers =
+                        unsynced != null ? unsynced.answers() : new ArrayList<>();
+                answers.add(answer);
+                return new Unsynced(sequence, answers);
+            });
+            journaledCounter.increment();
+            return true;
+        } catch (UncheckedIOException | IllegalStateException e) {
+            log.error("Could not journal answer, writing it to the database instead", e);
+            return false;
+        }
+    }
+
+    // Ships what an earlier run journaled but did not write, before quizzes are recovered
+    private void replayJournal() {
+        try {
+            int replayed = shipJournal();
+            if (replayed > 0) {
+                log.info("Replayed {} journaled answers", replayed);
+            }
+        } catch (RuntimeException e) {
+            log.error("Could not replay the answer journal, retrying in the background", e);
+        }
+    }
+
+    private void runShipper() {
+        while (running) {
+            // Quizzes that did not wait for their answers leave nothing behind once they are synced
+            long synced = journal.synced();
+            unsyncedByQuiz.values().removeIf(unsynced -> unsynced.lastSequence() <= synced);
+            try {
+                shipJournal();
+            } catch (RuntimeException e) {
+                // Shipped again with the next round, the database ignores what it already has
+                log.error("Failed to ship journaled answers", e);
+            }
+            try {
+                Thread.sleep(properties.flushInterval());
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private int shipJournal() {
+        int shipped = 0;
+        while (true) {
+            List<ScoredAnswer> answers =
+                    journal.read(journal.shipped() + 1, properties.batchSize());
+            if (answers.isEmpty()) {
+                break;
+            }
+            writeNow(answers);
+            journal.markShipped(journal.shipped() + answers.size());
+            shipped += answers.size();
+        }
+        journal.deleteShipped(properties.journal().retention());
+        return shipped;
+    }
+
+    private void collectBatch(List<PendingAnswer> batch) throws InterruptedException {
+        PendingAnswer first = queue.take();
+        if (first == FLUSH_REQUEST) {
+            return;
+        }
+        batch.add(first);
+
+        long deadline = System.nanoTime() + properties.flushInterval().toNanos();
+        while (batch.size() < properties.batchSize()) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return;
+            }
+            PendingAnswer next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null || next == FLUSH_REQUEST) {
+                return;
+            }
+            batch.add(next);
+        }
+    }
+
+    // Returns whether the batch is written; if not, its futures are failed and it is kept
+    private boolean flush(List<PendingAnswer> batch) {
+        batch.removeIf(pending -> pending == FLUSH_REQUEST);
+        if (batch.isEmpty()) {
+            return true;
+        }
+        List<ScoredAnswer> answers = batch.stream().map(PendingAnswer::answer).toList();
+        for (int attempt = 0; ; attempt++) {
+            RuntimeException failure;
+            try {
+                writeNow(answers);
+                complete(batch, null);
+                return true;
+            } catch (RuntimeException e) {
+                failure = e;
+            }
+            if (attempt >= properties.retryAttempts() || !pause(backoff(attempt))) {
+                log.error("Failed to write batch of {} answers", answers.size(), failure);
+                complete(batch, new UnwrittenAnswersException(answers, failure));
+                return false;
+            }
+            log.warn(
+                    "Failed to write batch of {} answers, retrying: {}",
+                    answers.size(),
+                    failure.getMessage());
+        }
+    }
+
+    private long backoff(int attempt) {
+        return properties.retryBackoff().toMillis() << Math.min(attempt, 10);
+    }
+
+    // Returns false when the wait is cut short by a shutdown
+    private static boolean pause(long millis) {
+        try {
+            Thread.sleep(millis);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void writeNow(List<ScoredAnswer> answers) {
+        try {
+            int inserted =
+                    flushTimer.record(() -> answerSubmissionJdbcRepository.insertIfAbsent(answers));
+            writtenCounter.increment(inserted);
+            duplicateCounter.increment(answers.size() - inserted);
+        } catch (RuntimeException e) {
+            failedCounter.increment(answers.size());
+            throw e;
+        }
+    }
+
+    // A failed answer stays pending for its question until a retry writes it
+    private void complete(List<PendingAnswer> batch, Throwable failure) {
+        for (PendingAnswer pending : batch) {
+            if (failure != null) {
+                pending.written().completeExceptionally(failure);
+                continue;
+            }
+            pending.written().complete(null);
+            AnswerSubmission submission = pending.answer().submission();
+            lastPendingByQuestion.remove(
+                    new QuestionKey(submission.quizId(), submission.questionId()),
+                    pending.written());
+        }
+    }
+}
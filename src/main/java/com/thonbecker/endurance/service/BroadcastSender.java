@@ -0,0 +1,169 @@
+package com.thonbecker.endurance.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import org.springframework.messaging.Message;
+import org.springframework.messaging.converter.MessageConversionException;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeTypeUtils;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Sends broadcasts as pre-serialized JSON.
+ *
+ * <p>The payload is serialized once into a byte array that the broker hands to every subscriber
+ * session as is. Payloads sent with a version are also kept per destination, so sending the same
+ * version again costs no serialization at all.
+ *
+ * <p>With a {@link QuizEventBus}, every payload sent here also goes to the other instances, which
+ * send it to their own subscribers.
+ */
+@Component
+public class BroadcastSender {
+
+    /**
+     * Native header of messages that make everything sent earlier to the same destination
+     * obsolete, so a session that has not received those yet can skip them.
+     */
+    public static final String LATEST_WINS_HEADER = "latest-wins";
+
+    private record VersionedMessage(Object version, Message<byte[]> message) {}
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final ObjectMapper objectMapper;
+    private final Optional<QuizEventBus> eventBus;
+    private final Map<String, VersionedMessage> latestByDestination = new ConcurrentHashMap<>();
+
+    private final Timer serializeTimer;
+    private final DistributionSummary payloadSize;
+    private final Counter reusedCounter;
+
+    public BroadcastSender(
+            SimpMessagingTemplate messagingTemplate,
+            ObjectMapper objectMapper,
+            Optional<QuizEventBus> eventBus,
+            MeterRegistry meterRegistry) {
+        this.messagingTemplate = messagingTemplate;
+        this.objectMapper = objectMapper;
+        this.eventBus = eventBus;
+        this.serializeTimer = Timer.builder("endurance.broadcast.serialize")
+                .description("Time spent serializing broadcast payloads")
+                .register(meterRegistry);
+        this.payloadSize = DistributionSummary.builder("endurance.broadcast.payload.size")
+                .description("Size of serialized broadcast payloads")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        this.reusedCounter = Counter.builder("endurance.broadcast.payload.reused")
+                .description("Broadcasts that reused an already serialized payload")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Serializes a payload once and sends it to a destination.
+     *
+     * @param destination the destination
+     * @param payload the payload
+     */
+    public void send(String destination, Object payload) {
+        Message<byte[]> message = toMessage(payload, false);
+        messagingTemplate.send(destination, message);
+        share(destination, message, false);
+    }
+
+    /**
+     * Sends a versioned payload to a destination, serializing it only if this version was not the
+     * last one sent there.
+     *
+     * @param destination the destination
+     * @param payload the payload
+     * @param version identifies the content of the payload
+     */
+    public void send(String destination, Object payload, Object version) {
+        send(destination, payload, version, false);
+    }
+
+    /**
+     * Sends a versioned payload to a destination, serializing it only if this version was not the
+     * last one sent there.
+     *
+     * @param destination the destination
+     * @param payload the payload
+     * @param version identifies the content of the payload
+     * @param latestWins whether the payload makes earlier messages to the destination obsolete
+     */
+    public void send(String destination, Object payload, Object version, boolean latestWins) {
+        VersionedMessage latest = latestByDestination.get(destination);
+        if (latest != null && Objects.equals(latest.version(), version)) {
+            reusedCounter.increment();
+            messagingTemplate.send(destination, latest.message());
+            share(destination, latest.message(), latestWins);
+            return;
+        }
+        Message<byte[]> message = toMessage(payload, latestWins);
+        messagingTemplate.send(destination, message);
+        share(destination, message, latestWins);
+        // Only shared once sent, which has made its headers immutable
+        latestByDestination.put(destination, new VersionedMessage(version, message));
+    }
+
+    /**
+     * Forgets the payload kept for a destination that will not be sent to again, or whose versions
+     * start over.
+     *
+     * @param destination the destination
+     */
+    public void evict(String destination) {
+        latestByDestination.remove(destination);
+    }
+
+    private void share(String destination, Message<byte[]> message, boolean latestWins) {
+        eventBus.ifPresent(bus -> bus.publish(destination, message.getPayload(), latestWins));
+    }
+
+    private Message<byte[]> toMessage(Object payload, boolean latestWins) {
+        byte[] body = serializeTimer.record(() -> serialize(payload));
+        payloadSize.record(body.length);
+        return createMessage(body, latestWins);
+    }
+
+    /**
+     * Wraps an already serialized JSON payload in a message for the broker.
+     *
+     * @param body the payload
+     * @param latestWins whether the payload makes earlier messages to the destination obsolete
+     * @return the message, with headers the template can still add the destination to
+     */
+    static Message<byte[]> createMessage(byte[] body, boolean latestWins) {
+        SimpMessageHeaderAccessor headers =
+                SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        headers.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        if (latestWins) {
+            headers.setNativeHeader(LATEST_WINS_HEADER, "true");
+        }
+        // Leave the headers mutable so the template can add the destination without copying
+        headers.setLeaveMutable(true);
+        return MessageBuilder.createMessage(body, headers.getMessageHeaders());
+    }
+
+    private byte[] serialize(Object payload) {
+        try {
+            return objectMapper.writeValueAsBytes(payload);
+        } catch (JsonProcessingException e) {
+            throw new MessageConversionException("Could not serialize broadcast payload", e);
+        }
+    }
+}
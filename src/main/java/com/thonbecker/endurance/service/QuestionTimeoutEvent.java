@@ -0,0 +1,9 @@
+package com.thonbecker.endurance.service;
+
+/**
+ * Published when the time for a question has run out.
+ *
+ * @param quizId the quiz
+ * @param questionIndex index of the question whose time ran out
+ */
+public record QuestionTimeoutEvent(Long quizId, int questionIndex) {}
@@ -0,0 +1,277 @@
+package com.thonbecker.endurance.service;
+
+import com.thonbecker.endurance.config.TimerProperties;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import jakarta.annotation.PreDestroy;
+
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Enforces question time limits with a hashed timing wheel.
+ *
+ * <p>All deadlines share one worker thread and a fixed ring of buckets, so scheduling and
+ * cancelling are O(1) and tens of thousands of live quizzes cost one thread and a node per
+ * deadline. Expired deadlines are reported as {@link QuestionTimeoutEvent}s; listeners must hand
+ * the work off instead of doing it on the timer thread.
+ */
+@Slf4j
+@Component
+public class QuestionTimer {
+
+    /** Handle to a scheduled deadline. */
+    public static final class Timeout {
+        private static final int PENDING = 0;
+        private static final int CANCELLED = 1;
+        private static final int EXPIRED = 2;
+        private static final AtomicIntegerFieldUpdater<Timeout> STATE =
+                AtomicIntegerFieldUpdater.newUpdater(Timeout.class, "state");
+
+        private final QuestionTimer timer;
+        private final long deadline;
+        private final Runnable task;
+        private volatile int state = PENDING;
+
+        // Owned by the worker thread
+        private long remainingRounds;
+        private Timeout next;
+        private Timeout prev;
+        private Bucket bucket;
+
+        private Timeout(QuestionTimer timer, long deadline, Runnable task) {
+            this.timer = timer;
+            this.deadline = deadline;
+            this.task = task;
+        }
+
+        /**
+         * Cancels the deadline.
+         *
+         * @return true if the deadline was still pending
+         */
+        public boolean cancel() {
+            if (!STATE.compareAndSet(this, PENDING, CANCELLED)) {
+                return false;
+            }
+            timer.cancelled.add(this);
+            return true;
+        }
+
+        public boolean isCancelled() {
+            return state == CANCELLED;
+        }
+
+        public boolean isExpired() {
+            return state == EXPIRED;
+        }
+
+        /** Time left until the deadline, never negative. */
+        public long getRemainingMillis() {
+            return Math.max(
+                    0,
+                    TimeUnit.NANOSECONDS.toMillis(
+                            deadline - (System.nanoTime() - timer.startTime)));
+        }
+
+        private void expire() {
+            if (!STATE.compareAndSet(this, PENDING, EXPIRED)) {
+                return;
+            }
+            try {
+                task.run();
+            } catch (Throwable t) {
+                log.error("Question timeout task failed", t);
+            }
+        }
+    }
+
+    private static final class Bucket {
+        private Timeout head;
+        private Timeout tail;
+
+        private void add(Timeout timeout) {
+            timeout.bucket = this;
+            if (head == null) {
+                head = tail = timeout;
+            } else {
+                tail.next = timeout;
+                timeout.prev = tail;
+                tail = timeout;
+            }
+        }
+
+        private void expireDue() {
+            Timeout timeout = head;
+            while (timeout != null) {
+                Timeout next = timeout.next;
+                if (timeout.remainingRounds <= 0) {
+                    remove(timeout);
+                    timeout.expire();
+                } else if (timeout.isCancelled()) {
+                    remove(timeout);
+                } else {
+                    timeout.remainingRounds--;
+                }
+                timeout = next;
+            }
+        }
+
+        private void remove(Timeout timeout) {
+            if (timeout.prev != null) {
+                timeout.prev.next = timeout.next;
+            }
+            if (timeout.next != null) {
+                timeout.next.prev = timeout.prev;
+            }
+            if (timeout == head) {
+                head = timeout.next;
+            }
+            if (timeout == tail) {
+                tail = timeout.prev;
+            }
+            timeout.prev = null;
+            timeout.next = null;
+            timeout.bucket = null;
+            timeout.timer.pendingCount.decrementAndGet();
+        }
+    }
+
+    private final ApplicationEventPublisher eventPublisher;
+    private final long tickNanos;
+    private final Bucket[] wheel;
+    private final int mask;
+    private final Queue<Timeout> scheduled = new ConcurrentLinkedQueue<>();
+    private final Queue<Timeout> cancelled = new ConcurrentLinkedQueue<>();
+    private final AtomicLong pendingCount = new AtomicLong();
+    private final long startTime;
+    private final Thread worker;
+    private volatile boolean running = true;
+    private long tick;
+
+    public QuestionTimer(
+            ApplicationEventPublisher eventPublisher,
+            TimerProperties properties,
+            MeterRegistry meterRegistry) {
+        this.eventPublisher = eventPublisher;
+        this.tickNanos = properties.tickDuration().toNanos();
+        int size = Integer.highestOneBit(Math.max(1, properties.wheelSize() - 1)) << 1;
+        this.wheel = new Bucket[size];
+        for (int i = 0; i < size; i++) {
+            wheel[i] = new Bucket();
+        }
+        this.mask = size - 1;
+
+        Gauge.builder("endurance.timer.pending", pendingCount, AtomicLong::get)
+                .description("Question deadlines waiting to expire")
+                .register(meterRegistry);
+
+        this.startTime = System.nanoTime();
+        this.worker = Thread.ofPlatform().name("question-timer").daemon().start(this::runWorker);
+    }
+
+    /**
+     * Schedules the deadline of a question.
+     *
+     * @param quizId the quiz
+     * @param questionIndex index of the question
+     * @param delayMillis time left for the question
+     * @return handle to cancel the deadline
+     */
+    public Timeout scheduleTimeout(Long quizId, int questionIndex, long delayMillis) {
+        return schedule(
+                delayMillis,
+                TimeUnit.MILLISECONDS,
+                () -> eventPublisher.publishEvent(new QuestionTimeoutEvent(quizId, questionIndex)));
+    }
+
+    /**
+     * Schedules a task to run on the timer thread after a delay.
+     *
+     * @param delay the delay
+     * @param unit unit of the delay
+     * @param task a short, non-blocking task
+     * @return handle to cancel the task
+     */
+    public Timeout schedule(long delay, TimeUnit unit, Runnable task) {
+        long deadline = System.nanoTime() - startTime + unit.toNanos(Math.max(0, delay));
+        Timeout timeout = new Timeout(this, deadline, task);
+        pendingCount.incrementAndGet();
+        scheduled.add(timeout);
+        return timeout;
+    }
+
+    public long getPendingCount() {
+        return pendingCount.get();
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        worker.interrupt();
+        worker.join(TimeUnit.NANOSECONDS.toMillis(tickNanos) * 2 + 100);
+    }
+
+    private void runWorker() {
+        while (running) {
+            waitForNextTick();
+            if (!running) {
+                return;
+            }
+            removeCancelled();
+            transferScheduled();
+            wheel[(int) (tick & mask)].expireDue();
+            tick++;
+        }
+    }
+
+    private void waitForNextTick() {
+        long tickDeadline = tickNanos * (tick + 1);
+        while (running) {
+            long sleepNanos = tickDeadline - (System.nanoTime() - startTime);
+            if (sleepNanos <= 0) {
+                return;
+            }
+            LockSupport.parkNanos(this, sleepNanos);
+        }
+    }
+
+    private void transferScheduled() {
+        // Bound the work per tick so a burst of scheduling cannot stall expiry
+        for (int i = 0; i < 100_000; i++) {
+            Timeout timeout = scheduled.poll();
+            if (timeout == null) {
+                return;
+            }
+            if (timeout.isCancelled()) {
+                pendingCount.decrementAndGet();
+                continue;
+            }
+            long expiryTick = timeout.deadline / tickNanos;
+            timeout.remainingRounds = (expiryTick - tick) / wheel.length;
+            long targetTick = Math.max(expiryTick, tick);
+            wheel[(int) (targetTick & mask)].add(timeout);
+        }
+    }
+
+    private void removeCancelled() {
+        Timeout timeout;
+        while ((timeout = cancelled.poll()) != null) {
+            // Deadlines cancelled before they reached a bucket are dropped on transfer
+            if (timeout.bucket != null) {
+                timeout.bucket.remove(timeout);
+            }
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package com.thonbecker.endurance.service;
+
+/**
+ * Published when a quiz was created, players joined or left it, or its status changed.
+ *
+ * @param quizId the quiz
+ */
+public record QuizChangedEvent(Long quizId) {}
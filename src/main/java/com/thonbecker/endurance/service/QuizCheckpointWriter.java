@@ -0,0 +1,111 @@
+package com.thonbecker.endurance.service;
+
+import com.thonbecker.endurance.config.RecoveryProperties;
+import com.thonbecker.endurance.repository.QuizCheckpointJdbcRepository;
+import com.thonbecker.endurance.type.QuizCheckpoint;
+import com.thonbecker.endurance.type.QuizStatus;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import jakarta.annotation.PreDestroy;
+
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes a checkpoint of every quiz in memory whose position changed since its previous one, at a
+ * fixed interval and once more on shutdown, so that {@link QuizRecovery} can rebuild it after a
+ * restart. All changed quizzes go out in one batch; checkpoints of finished quizzes are deleted.
+ * Only quizzes this instance owns are written, and it owns them until this writer has stopped.
+ */
+@Slf4j
+@Component
+public class QuizCheckpointWriter {
+    private final QuizService quizService;
+    private final QuizOwnership ownership;
+    private final QuizCheckpointJdbcRepository checkpointRepository;
+    private final ScheduledExecutorService scheduler;
+
+    // Only touched by the scheduler thread, and on shutdown once it has stopped
+    private final Map<Long, QuizCheckpoint> written = new HashMap<>();
+
+    private final Counter writtenCounter;
+    private final Counter failedCounter;
+
+    public QuizCheckpointWriter(
+            QuizService quizService,
+            QuizOwnership ownership,
+            QuizCheckpointJdbcRepository checkpointRepository,
+            RecoveryProperties properties,
+            MeterRegistry meterRegistry) {
+        this.quizService = quizService;
+        this.ownership = ownership;
+        this.checkpointRepository = checkpointRepository;
+        this.writtenCounter = meterRegistry.counter("endurance.quiz.checkpoints");
+        this.failedCounter = meterRegistry.counter("endurance.quiz.checkpoints.failed");
+
+        long interval = properties.checkpointInterval().toMillis();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("quiz-checkpoint").daemon().factory());
+        scheduler.scheduleWithFixedDelay(
+                this::writeCheckpoints, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        scheduler.shutdown();
+        scheduler.awaitTermination(5, TimeUnit.SECONDS);
+        writeCheckpoints();
+        log.info("Quiz checkpoint writer stopped");
+    }
+
+    void writeCheckpoints() {
+        List<QuizCheckpoint> changed = new ArrayList<>();
+        List<QuizCheckpoint> finished = new ArrayList<>();
+        Set<Long> inMemory = new HashSet<>();
+        for (QuizSession session : quizService.getSessions()) {
+            QuizCheckpoint checkpoint = session.checkpoint();
+            inMemory.add(checkpoint.quizId());
+            if (checkpoint.equals(written.get(checkpoint.quizId()))) {
+                continue;
+            }
+            if (checkpoint.status() == QuizStatus.FINISHED) {
+                finished.add(checkpoint);
+            } else if (ownership.owns(checkpoint.quizId())) {
+                // Sessions left from quizzes that moved to another instance are out of date
+                changed.add(checkpoint);
+            }
+        }
+        // Forget quizzes the session store dropped
+        written.keySet().retainAll(inMemory);
+        if (changed.isEmpty() && finished.isEmpty()) {
+            return;
+        }
+
+        try {
+            checkpointRepository.saveAll(changed);
+            checkpointRepository.deleteAllById(
+                    finished.stream().map(QuizCheckpoint::quizId).toList());
+        } catch (RuntimeException e) {
+            // Tried again with the next round
+            failedCounter.increment(changed.size() + finished.size());
+            log.error("Failed to write {} quiz checkpoints", changed.size() + finished.size(), e);
+            return;
+        }
+        changed.forEach(checkpoint -> written.put(checkpoint.quizId(), checkpoint));
+        finished.forEach(checkpoint -> written.put(checkpoint.quizId(), checkpoint));
+        writtenCounter.increment(changed.size());
+    }
+}
@@ -0,0 +1,425 @@
+package com.thonbecker.endurance.service;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.thonbecker.endurance.config.EventBusProperties;
+import com.thonbecker.endurance.config.IdProperties;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import jakarta.annotation.PreDestroy;
+
+import lombok.extern.slf4j.Slf4j;
+
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+/**
+ * Shares broadcasts and quiz changes between instances over Postgres {@code LISTEN/NOTIFY}, so
+ * that several instances serve the same quizzes without a separate message broker.
+ *
+ * <p>Broadcasts are queued and sent by one thread. Whatever queued up while it sent the previous
+ * notification goes out together, as many as fit into one notification. Every batch is also
+ * written to {@code endurance.quiz_event}: a batch too large for a notification is only announced
+ * by its ID and read from there, and an instance whose listening connection dropped reads what it
+ * missed from there once it is back.
+ *
+ * <p>Each instance sends what it receives to its own subscribers, and refreshes its lobby list
+ * for quizzes that changed elsewhere.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "endurance.broker", name = "mode", havingValue = "POSTGRES")
+public class QuizEventBus {
+    // Postgres refuses notification payloads of 8000 bytes or more; this leaves room for the
+    // node and event IDs in front of the batch
+    static final int MAX_INLINE_BYTES = 7_900;
+
+    private static final String PUBLISH =
+            """
+            WITH event AS (
+                INSERT INTO endurance.quiz_event (node_id, payload) VALUES (?, ?)
+                RETURNING id, payload)
+            SELECT pg_notify(?, ? || ':' || event.id || CASE WHEN ? THEN ':' || event.payload
+                ELSE '' END)
+            FROM event
+            """;
+
+    private static final String FIND_PAYLOAD =
+            "SELECT payload FROM endurance.quiz_event WHERE id = ?";
+
+    private static final String FIND_RECENT =
+            """
+            SELECT id, node_id, payload FROM endurance.quiz_event
+            WHERE node_id <> ? AND created_at >= CURRENT_TIMESTAMP - make_interval(secs => ?)
+            ORDER BY id
+            """;
+
+    private static final String PRUNE =
+            """
+            DELETE FROM endurance.quiz_event
+            WHERE created_at < CURRENT_TIMESTAMP - make_interval(secs => ?)
+            """;
+
+    private static final TypeReference<List<Event>> EVENTS = new TypeReference<>() {};
+
+    /** A broadcast to a destination, or a quiz that changed. */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    record Event(String destination, String body, boolean latestWins, Long changedQuizId) {}
+
+    private final EventBusProperties properties;
+    private final int nodeId;
+    private final DataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+    private final SimpMessagingTemplate messagingTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ObjectMapper objectMapper;
+    private final BlockingQueue<Event> queue;
+
+    // Highest event received from each other instance; only touched by the listener thread
+    private final Map<Integer, Long> lastReceived = new HashMap<>();
+
+    private final Thread publisher;
+    private final Thread listener;
+    private volatile boolean running;
+    private volatile Connection listenConnection;
+
+    private final Counter sentCounter;
+    private final Counter referencedCounter;
+    private final Counter receivedCounter;
+    private final Counter replayedCounter;
+    private final Counter droppedCounter;
+    private final Counter reconnectCounter;
+
+    public QuizEventBus(
+            EventBusProperties properties,
+            IdProperties idProperties,
+            DataSource dataSource,
+            JdbcTemplate jdbcTemplate,
+            SimpMessagingTemplate messagingTemplate,
+            ApplicationEventPublisher eventPublisher,
+            ObjectMapper objectMapper,
+            MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.nodeId = idProperties.nodeId();
+        this.dataSource = dataSource;
+        this.jdbcTemplate = jdbcTemplate;
+        this.messagingTemplate = messagingTemplate;
+        this.eventPublisher = eventPublisher;
+        this.objectMapper = objectMapper;
+        this.queue = new ArrayBlockingQueue<>(properties.queueCapacity());
+
+        Gauge.builder("endurance.bus.queued", queue, BlockingQueue::size)
+                .description("Events waiting to be sent to the other instances")
+                .register(meterRegistry);
+        this.sentCounter = meterRegistry.counter("endurance.bus.sent");
+        this.referencedCounter = meterRegistry.counter("endurance.bus.referenced");
+        this.receivedCounter = meterRegistry.counter("endurance.bus.received");
+        this.replayedCounter = meterRegistry.counter("endurance.bus.replayed");
+        this.droppedCounter = meterRegistry.counter("endurance.bus.dropped");
+        this.reconnectCounter = meterRegistry.counter("endurance.bus.reconnects");
+
+        this.publisher = Thread.ofPlatform()
+                .name("quiz-bus-publisher")
+                .daemon()
+                .unstarted(this::publishLoop);
+        this.listener =
+                Thread.ofPlatform().name("quiz-bus-listener").daemon().unstarted(this::listenLoop);
+    }
+
+    // Once the schema is migrated
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        running = true;
+        publisher.start();
+        listener.start();
+        log.info("Sharing broadcasts over Postgres channel {}", properties.channel());
+    }
+
+    /**
+     * Sends a broadcast to the subscribers of the other instances.
+     *
+     * @param destination the destination
+     * @param body the serialized JSON payload
+     * @param latestWins whether the payload makes earlier messages to the destination obsolete
+     */
+    public void publish(String destination, byte[] body, boolean latestWins) {
+        offer(new Event(destination, new String(body, StandardCharsets.UTF_8), latestWins, null));
+    }
+
+    // Lets the other instances refresh their lobby list once the change is committed
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onQuizChanged(QuizChangedEvent event) {
+        offer(new Event(null, null, false, event.quizId()));
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        // Sends what is still queued
+        publisher.join(5_000);
+        Connection connection = listenConnection;
+        if (connection != null) {
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                log.debug("Failed to close the listening connection: {}", e.getMessage());
+            }
+        }
+        listener.interrupt();
+        log.info("Quiz event bus stopped");
+    }
+
+    /**
+     * Joins encoded events into JSON arrays of at most {@code maxBytes}. An event that does not
+     * fit on its own gets an array of its own.
+     */
+    static List<String> toBatches(List<String> events, int maxBytes) {
+        List<String> batches = new ArrayList<>();
+        StringJoiner batch = null;
+        int size = 0;
+        for (String event : events) {
+            // The event and the bracket or comma in front of it
+            int eventBytes = utf8Length(event) + 1;
+            if (batch != null && size + eventBytes > maxBytes) {
+                batches.add(batch.toString());
+                batch = null;
+            }
+            if (batch == null) {
+                batch = new StringJoiner(",", "[", "]");
+                // The closing bracket
+                size = 1;
+            }
+            batch.add(event);
+            size += eventBytes;
+        }
+        if (batch != null) {
+            batches.add(batch.toString());
+        }
+        return batches;
+    }
+
+    private void offer(Event event) {
+        if (!queue.offer(event)) {
+            droppedCounter.increment();
+        }
+    }
+
+    private void publishLoop() {
+        List<Event> pending = new ArrayList<>();
+        long pruneInterval = properties.retention().toNanos() / 2;
+        long nextPrune = System.nanoTime() + pruneInterval;
+        try {
+            while (running || !queue.isEmpty()) {
+                Event first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    pending.add(first);
+                    // Broadcasts usually come in bursts, such as a snapshot and a roster update
+                    TimeUnit.NANOSECONDS.sleep(properties.batchWindow().toNanos());
+                    queue.drainTo(pending);
+                    send(pending);
+                    pending.clear();
+                }
+                if (System.nanoTime() - nextPrune >= 0) {
+                    prune();
+                    nextPrune = System.nanoTime() + pruneInterval;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void send(List<Event> events) throws InterruptedException {
+        List<String> encoded = new ArrayList<>(events.size());
+        for (Event event : events) {
+            try {
+                encoded.add(objectMapper.writeValueAsString(event));
+            } catch (JsonProcessingException e) {
+                droppedCounter.increment();
+                log.error("Could not encode event for {}", event.destination(), e);
+            }
+        }
+        for (String batch : toBatches(encoded, MAX_INLINE_BYTES)) {
+            // Later batches wait, so the other instances receive everything in order
+            while (!trySend(batch)) {
+                if (!running) {
+                    log.warn("Dropped events on shutdown, the database is unreachable");
+                    return;
+                }
+                TimeUnit.MILLISECONDS.sleep(properties.reconnectDelay().toMillis());
+            }
+        }
+        sentCounter.increment(encoded.size());
+    }
+
+    private boolean trySend(String batch) {
+        boolean inline = utf8Length(batch) <= MAX_INLINE_BYTES;
+        try {
+            jdbcTemplate.query(
+                    PUBLISH,
+                    resultSet -> null,
+                    nodeId,
+                    batch,
+                    properties.channel(),
+                    String.valueOf(nodeId),
+                    inline);
+        } catch (DataAccessException e) {
+            log.warn("Could not send events to the other instances: {}", e.getMessage());
+            return false;
+        }
+        if (!inline) {
+            referencedCounter.increment();
+        }
+        return true;
+    }
+
+    private void prune() {
+        try {
+            jdbcTemplate.update(PRUNE, properties.retention().toSeconds());
+        } catch (DataAccessException e) {
+            log.debug("Could not prune shared events: {}", e.getMessage());
+        }
+    }
+
+    private void listenLoop() {
+        // When the previous connection was last known to work, zero before the first one
+        long lastConnected = 0;
+        while (running) {
+            try (Connection connection = dataSource.getConnection()) {
+                listenConnection = connection;
+                connection.setAutoCommit(true);
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + properties.channel());
+                }
+                JdbcTemplate template =
+                        new JdbcTemplate(new SingleConnectionDataSource(connection, true));
+                if (lastConnected != 0) {
+                    replay(template, System.nanoTime() - lastConnected);
+                }
+
+                PGConnection notifications = connection.unwrap(PGConnection.class);
+                while (running) {
+                    lastConnected = System.nanoTime();
+                    PGNotification[] received = notifications.getNotifications(1_000);
+                    if (received == null || received.length == 0) {
+                        // Only a round trip notices that the connection is gone
+                        if (!connection.isValid(1)) {
+                            throw new SQLException("Listening connection is no longer valid");
+                        }
+                        continue;
+                    }
+                    for (PGNotification notification : received) {
+                        receive(template, notification.getParameter());
+                    }
+                }
+            } catch (SQLException | RuntimeException e) {
+                if (!running) {
+                    return;
+                }
+                reconnectCounter.increment();
+                log.warn("Quiz event bus lost its connection, reconnecting: {}", e.getMessage());
+                try {
+                    TimeUnit.MILLISECONDS.sleep(properties.reconnectDelay().toMillis());
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+            } finally {
+                listenConnection = null;
+            }
+        }
+    }
+
+    // Events sent while this instance was not listening, plus a second for clocks and commits
+    private void replay(JdbcTemplate template, long missedNanos) {
+        double seconds = Math.min(
+                TimeUnit.NANOSECONDS.toMillis(missedNanos) / 1000.0 + 1,
+                properties.retention().toSeconds());
+        template.query(
+                FIND_RECENT,
+                resultSet -> {
+                    if (deliver(
+                            resultSet.getInt("node_id"),
+                            resultSet.getLong("id"),
+                            resultSet.getString("payload"))) {
+                        replayedCounter.increment();
+                    }
+                },
+                nodeId,
+                seconds);
+    }
+
+    private void receive(JdbcTemplate template, String notification) {
+        String[] parts = notification.split(":", 3);
+        int origin = Integer.parseInt(parts[0]);
+        if (origin == nodeId) {
+            return;
+        }
+        long id = Long.parseLong(parts[1]);
+        String batch = parts.length == 3
+                ? parts[2]
+                : template.queryForObject(FIND_PAYLOAD, String.class, id);
+        deliver(origin, id, batch);
+    }
+
+    // Returns whether the batch was new
+    private boolean deliver(int origin, long id, String batch) {
+        if (id <= lastReceived.getOrDefault(origin, 0L)) {
+            return false;
+        }
+        lastReceived.put(origin, id);
+
+        List<Event> events;
+        try {
+            events = objectMapper.readValue(batch, EVENTS);
+        } catch (JsonProcessingException e) {
+            log.error("Could not decode events {} of node {}", id, origin, e);
+            return true;
+        }
+        for (Event event : events) {
+            if (event.changedQuizId() != null) {
+                eventPublisher.publishEvent(new RemoteQuizChangedEvent(event.changedQuizId()));
+            } else {
+                messagingTemplate.send(
+                        event.destination(),
+                        BroadcastSender.createMessage(
+                                event.body().getBytes(StandardCharsets.UTF_8), event.latestWins()));
+            }
+        }
+        receivedCounter.increment(events.size());
+        return true;
+    }
+
+    private static int utf8Length(String value) {
+        return value.getBytes(StandardCharsets.UTF_8).length;
+    }
+}
@@ -0,0 +1,108 @@
+package com.thonbecker.endurance.service;
+
+import com.thonbecker.endurance.config.OwnershipProperties;
+import com.thonbecker.endurance.exception.OwnerUnavailableException;
+import com.thonbecker.endurance.exception.ResourceNotFoundException;
+import com.thonbecker.endurance.type.QuizStateSnapshot;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestClient;
+import org.springframework.web.client.RestClientException;
+
+/**
+ * Hands commands for a quiz to the instance that owns it, through that instance's
+ * {@code /internal/quiz} endpoints, with the secret the instances share.
+ */
+@Slf4j
+@Component
+public class QuizForwarder {
+    private final QuizOwnership ownership;
+    private final RestClient restClient;
+    private final Counter forwardedCounter;
+    private final Counter failedCounter;
+
+    public QuizForwarder(
+            QuizOwnership ownership,
+            OwnershipProperties properties,
+            RestClient.Builder restClientBuilder,
+            MeterRegistry meterRegistry) {
+        this.ownership = ownership;
+        SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+        requestFactory.setConnectTimeout(properties.forwardTimeout());
+        requestFactory.setReadTimeout(properties.forwardTimeout());
+        this.restClient = restClientBuilder
+                .requestFactory(requestFactory)
+                .defaultHeader(OwnershipProperties.SECRET_HEADER, properties.secret())
+                .build();
+        this.forwardedCounter = meterRegistry.counter("endurance.quiz.forwarded");
+        this.failedCounter = meterRegistry.counter("endurance.quiz.forwarded.failed");
+    }
+
+    /**
+     * Sends a command to the owner of its quiz, which queues it in the quiz's mailbox.
+     *
+     * @param quizId the quiz
+     * @param command the last segment of the command's destination, such as {@code submit}
+     * @param payload the command's payload
+     * @throws OwnerUnavailableException if the owner cannot be found or reached
+     */
+    public void forward(Long quizId, String command, Object payload) {
+        String owner = owner(quizId);
+        try {
+            restClient
+                    .post()
+                    .uri(owner + "/internal/quiz/{command}", command)
+                    .body(payload)
+                    .retrieve()
+                    .toBodilessEntity();
+            forwardedCounter.increment();
+        } catch (RestClientException e) {
+            throw unavailable(quizId, e);
+        }
+    }
+
+    /**
+     * Fetches the snapshot of a quiz from its owner.
+     *
+     * @param quizId the quiz
+     * @return the snapshot the owner would send a subscriber
+     * @throws OwnerUnavailableException if the owner cannot be found or reached
+     */
+    public QuizStateSnapshot fetchSnapshot(Long quizId) {
+        String owner = owner(quizId);
+        try {
+            QuizStateSnapshot snapshot = restClient
+                    .get()
+                    .uri(owner + "/internal/quiz/state/{quizId}", quizId)
+                    .retrieve()
+                    .body(QuizStateSnapshot.class);
+            forwardedCounter.increment();
+            return snapshot;
+        } catch (HttpClientErrorException.NotFound e) {
+            throw new ResourceNotFoundException("Quiz state for quiz", quizId);
+        } catch (RestClientException e) {
+            throw unavailable(quizId, e);
+        }
+    }
+
+    private String owner(Long quizId) {
+        return ownership
+                .findOwnerAddress(quizId)
+                .orElseThrow(() -> new OwnerUnavailableException(quizId, "no instance owns it"));
+    }
+
+    // The owner may have gone away; the next command looks it up again or takes the quiz
+    private OwnerUnavailableException unavailable(Long quizId, RestClientException e) {
+        failedCounter.increment();
+        ownership.forgetOwner(quizId);
+        log.warn("Failed to forward a command for quiz {}: {}", quizId, e.getMessage());
+        return new OwnerUnavailableException(quizId, e.getMessage());
+    }
+}
@@ -0,0 +1,64 @@
+package com.thonbecker.endurance.service;
+
+import com.thonbecker.endurance.config.IdProperties;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Generates quiz IDs from a timestamp, the node ID of this instance and a sequence, so instances
+ * never need to coordinate.
+ *
+ * <p>IDs fit in 53 bits so JavaScript clients read them exactly: 41 bits of milliseconds since
+ * 2025-01-01 (about 69 years), 5 bits of node ID and 7 bits of sequence (128 IDs per millisecond
+ * and node). The last timestamp and sequence share one {@link AtomicLong}, so {@link #nextId()} is
+ * a compare-and-set loop without locks or allocation. When the sequence runs out or the clock moves
+ * backwards, the generator carries on from its own last timestamp instead of waiting, and follows
+ * the clock again once it has caught up.
+ */
+@Component
+public class QuizIdGenerator {
+    static final long EPOCH = 1_735_689_600_000L; // 2025-01-01T00:00:00Z
+    static final int NODE_BITS = 5;
+    static final int SEQUENCE_BITS = 7;
+    static final int MAX_NODE_ID = (1 << NODE_BITS) - 1;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+
+    private final long node;
+    private final LongSupplier clock;
+
+    // Timestamp of the last ID shifted left by SEQUENCE_BITS, plus its sequence
+    private final AtomicLong last = new AtomicLong();
+
+    @Autowired
+    public QuizIdGenerator(IdProperties properties) {
+        this(properties, System::currentTimeMillis);
+    }
+
+    QuizIdGenerator(IdProperties properties, LongSupplier clock) {
+        if (properties.nodeId() < 0 || properties.nodeId() > MAX_NODE_ID) {
+            throw new IllegalArgumentException("Node ID must be between 0 and " + MAX_NODE_ID
+                    + ", was " + properties.nodeId());
+        }
+        this.node = properties.nodeId();
+        this.clock = clock;
+    }
+
+    public long nextId() {
+        long now = (clock.getAsLong() - EPOCH) << SEQUENCE_BITS;
+        long current;
+        long next;
+        do {
+            current = last.get();
+            // An exhausted sequence overflows into the timestamp
+            next = now > current ? now : current + 1;
+        } while (!last.compareAndSet(current, next));
+
+        return (next >>> SEQUENCE_BITS) << (NODE_BITS + SEQUENCE_BITS)
+                | node << SEQUENCE_BITS
+                | (next & SEQUENCE_MASK);
+    }
+}
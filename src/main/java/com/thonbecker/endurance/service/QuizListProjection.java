@@ -0,0 +1,132 @@
+package com.thonbecker.endurance.service;
+
+import com.thonbecker.endurance.repository.QuizRepository;
+import com.thonbecker.endurance.type.QuizListUpdate;
+import com.thonbecker.endurance.type.QuizStatus;
+import com.thonbecker.endurance.type.QuizSummary;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The lobby's list of open quizzes, kept in memory.
+ *
+ * <p>The list is read with one summary query on first use. After that, every {@link
+ * QuizChangedEvent} re-reads the summary of that one quiz once its transaction committed, and
+ * subscribers of {@code /topic/quiz/list} receive the resulting {@link QuizListUpdate}.
+ */
+@Service
+public class QuizListProjection {
+    static final String LIST_DESTINATION = "/topic/quiz/list";
+
+    // Quizzes in these states can be joined
+    private static final List<QuizStatus> OPEN_STATUSES =
+            List.of(QuizStatus.CREATED, QuizStatus.WAITING);
+
+    private final QuizRepository quizRepository;
+    private final BroadcastSender broadcastSender;
+    private final Map<Long, QuizSummary> summaries = new ConcurrentHashMap<>();
+    private volatile boolean loaded;
+
+    private final Counter updateCounter;
+
+    public QuizListProjection(
+            QuizRepository quizRepository,
+            BroadcastSender broadcastSender,
+            MeterRegistry meterRegistry) {
+        this.quizRepository = quizRepository;
+        this.broadcastSender = broadcastSender;
+        Gauge.builder("endurance.quiz.list.size", summaries, Map::size)
+                .description("Open quizzes in the lobby list")
+                .register(meterRegistry);
+        this.updateCounter = Counter.builder("endurance.quiz.list.updates")
+                .description("Lobby list updates broadcast")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Returns all open quizzes, for a client that (re)subscribes to the lobby.
+     *
+     * @return the open quizzes, oldest first
+     */
+    public List<QuizSummary> getOpenQuizzes() {
+        ensureLoaded();
+        return summaries.values().stream()
+                .sorted(Comparator.comparing(QuizSummary::id))
+                .toList();
+    }
+
+    // Events of one quiz come from its mailbox or the request that created it, so they arrive in
+    // order and every refresh reads the quiz after the change that triggered it
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onQuizChanged(QuizChangedEvent event) {
+        refresh(event.quizId()).ifPresent(update -> {
+            broadcastSender.send(LIST_DESTINATION, update);
+            updateCounter.increment();
+        });
+    }
+
+    // The instance that changed the quiz has broadcast the update already, over the event bus
+    @EventListener
+    public void onRemoteQuizChanged(RemoteQuizChangedEvent event) {
+        refresh(event.quizId());
+    }
+
+    /**
+     * Re-reads the summary of a quiz and applies it to the list.
+     *
+     * @param quizId the quiz
+     * @return how the list changed, or empty if it did not
+     */
+    Optional<QuizListUpdate> refresh(Long quizId) {
+        if (!ensureLoaded()) {
+            // Loading read the quiz as it is now
+            return Optional.empty();
+        }
+
+        QuizSummary current = quizRepository
+                .findSummaryById(quizId)
+                .filter(summary -> OPEN_STATUSES.contains(summary.status()))
+                .orElse(null);
+        QuizSummary previous =
+                current != null ? summaries.put(quizId, current) : summaries.remove(quizId);
+
+        if (Objects.equals(previous, current)) {
+            return Optional.empty();
+        }
+        if (current == null) {
+            return Optional.of(QuizListUpdate.removed(quizId));
+        }
+        return Optional.of(
+                previous == null ? QuizListUpdate.added(current) : QuizListUpdate.updated(current));
+    }
+
+    // Returns whether the list was loaded before
+    private boolean ensureLoaded() {
+        if (loaded) {
+            return true;
+        }
+        synchronized (this) {
+            if (loaded) {
+                return true;
+            }
+            quizRepository
+                    .findSummariesByStatusIn(OPEN_STATUSES)
+                    .forEach(summary -> summaries.put(summary.id(), summary));
+            loaded = true;
+            return false;
+        }
+    }
+}
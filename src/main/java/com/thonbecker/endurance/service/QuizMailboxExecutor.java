@@ -0,0 +1,162 @@
+package com.thonbecker.endurance.service;
+
+import com.thonbecker.endurance.config.MailboxProperties;
+import com.thonbecker.endurance.exception.MailboxFullException;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import jakarta.annotation.PreDestroy;
+
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs commands one quiz at a time.
+ *
+ * <p>Every quiz gets its own mailbox; commands for the same quiz run in submission order and
+ * never concurrently, while mailboxes of different quizzes are drained in parallel on virtual
+ * threads. A mailbox only exists while it has work, so idle quizzes cost nothing.
+ */
+@Slf4j
+@Component
+public class QuizMailboxExecutor {
+    private static final int DRAIN_BATCH_SIZE = 64;
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Map<Long, Mailbox> mailboxes = new ConcurrentHashMap<>();
+    private final MailboxProperties properties;
+    private final MeterRegistry meterRegistry;
+    private final Counter rejectedCounter;
+
+    public QuizMailboxExecutor(MailboxProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+        this.rejectedCounter = meterRegistry.counter("endurance.quiz.mailbox.rejected");
+        Gauge.builder("endurance.quiz.mailbox.active", mailboxes, Map::size)
+                .description("Quizzes with pending commands")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Queues a command for a quiz.
+     *
+     * @param quizId the quiz the command belongs to
+     * @param command the command
+     * @return a future completed with the command's result
+     * @throws MailboxFullException if the quiz already has too many pending commands
+     */
+    public <T> CompletableFuture<T> submit(Long quizId, Callable<T> command) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        enqueue(quizId, () -> {
+            try {
+                result.complete(command.call());
+            } catch (Throwable t) {
+                log.warn("Command for quiz {} failed: {}", quizId, t.getMessage());
+                result.completeExceptionally(t);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Queues a command for a quiz.
+     *
+     * @param quizId the quiz the command belongs to
+     * @param command the command
+     * @return a future completed once the command has run
+     * @throws MailboxFullException if the quiz already has too many pending commands
+     */
+    public CompletableFuture<Void> execute(Long quizId, Runnable command) {
+        return submit(quizId, () -> {
+            command.run();
+            return null;
+        });
+    }
+
+    public int getDepth(Long quizId) {
+        Mailbox mailbox = mailboxes.get(quizId);
+        return mailbox != null ? mailbox.depth.get() : 0;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.close();
+    }
+
+    private void enqueue(Long quizId, Runnable task) {
+        // Enqueue under the map's bin lock so a mailbox cannot be retired in between
+        Mailbox target = mailboxes.compute(quizId, (id, mailbox) -> {
+            if (mailbox == null) {
+                mailbox = new Mailbox(id);
+            }
+            if (mailbox.depth.incrementAndGet() > properties.capacity()) {
+                mailbox.depth.decrementAndGet();
+                rejectedCounter.increment();
+                throw new MailboxFullException(id, properties.capacity());
+            }
+            mailbox.queue.add(task);
+            return mailbox;
+        });
+        target.schedule();
+    }
+
+    private final class Mailbox implements Runnable {
+        private final Long quizId;
+        private final Queue<Runnable> queue = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger depth = new AtomicInteger();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private final Gauge depthGauge;
+
+        private Mailbox(Long quizId) {
+            this.quizId = quizId;
+            this.depthGauge = Gauge.builder(
+                            "endurance.quiz.mailbox.depth", depth, AtomicInteger::get)
+                    .description("Commands waiting for a quiz")
+                    .tag("quizId", String.valueOf(quizId))
+                    .register(meterRegistry);
+        }
+
+        private void schedule() {
+            if (scheduled.compareAndSet(false, true)) {
+                executor.execute(this);
+            }
+        }
+
+        @Override
+        public void run() {
+            Runnable task;
+            int processed = 0;
+            while (processed < DRAIN_BATCH_SIZE && (task = queue.poll()) != null) {
+                depth.decrementAndGet();
+                processed++;
+                try {
+                    task.run();
+                } catch (Throwable t) {
+                    log.error("Unexpected failure in mailbox of quiz {}", quizId, t);
+                }
+            }
+
+            // Retire the mailbox when it ran dry, otherwise hand over to a fresh virtual thread
+            mailboxes.computeIfPresent(quizId, (id, mailbox) -> {
+                if (mailbox == this && queue.isEmpty()) {
+                    meterRegistry.remove(depthGauge);
+                    return null;
+                }
+                return mailbox;
+            });
+            scheduled.set(false);
+            if (!queue.isEmpty()) {
+                schedule();
+            }
+        }
+    }
+}
@@ -0,0 +1,433 @@
+package com.thonbecker.endurance.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.thonbecker.endurance.config.IdProperties;
+import com.thonbecker.endurance.config.OwnershipProperties;
+import com.thonbecker.endurance.type.QuizStatus;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import jakarta.annotation.PreDestroy;
+
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import javax.sql.DataSource;
+
+/**
+ * Decides which instance runs which quiz when several instances share the database.
+ *
+ * <p>An instance owns a quiz while it holds the Postgres advisory lock on the quiz ID. All locks
+ * are taken on one connection that the instance keeps open for its lifetime, so when an instance
+ * dies its connection closes and Postgres releases its quizzes at once. When the instance's host
+ * or network goes away instead, the connection does not close; Postgres probes it with TCP
+ * keepalives and drops it after a few missed heartbeats. The other instances find
+ * the owner of a quiz by joining {@code pg_locks} with {@code endurance.quiz_node}, where every
+ * instance records its address and the backend of its lock connection.
+ *
+ * <p>A quiz is only taken when it starts, when its session is rebuilt, or when its owner went away.
+ * Commands for a quiz that nobody owns run wherever they arrive until then.
+ *
+ * <p>A heartbeat checks the lock connection and takes the locks again after a reconnect, releases
+ * quizzes that finished or left memory once their mailbox is empty, and takes over its share of
+ * the running quizzes that nobody owns.
+ */
+@Slf4j
+@Component
+public class QuizOwnership {
+    private static final String REGISTER =
+            """
+            INSERT INTO endurance.quiz_node (node_id, address, backend_pid, started_at)
+            VALUES (?, ?, pg_backend_pid(), CURRENT_TIMESTAMP)
+            ON CONFLICT (node_id) DO UPDATE SET
+                address = EXCLUDED.address,
+                backend_pid = EXCLUDED.backend_pid,
+                started_at = EXCLUDED.started_at
+            """;
+
+    // pg_try_advisory_lock(bigint) files the key as classid (high half) and objid (low half)
+    private static final String OWNER_ADDRESS =
+            """
+            SELECT n.address FROM pg_locks l
+            JOIN endurance.quiz_node n ON n.backend_pid = l.pid
+            WHERE l.locktype = 'advisory' AND l.granted AND l.objsubid = 1
+              AND l.classid = CAST(? AS oid) AND l.objid = CAST(? AS oid)
+            """;
+
+    private static final String ORPHANS =
+            """
+            SELECT q.id FROM endurance.quiz q
+            WHERE q.status = 'IN_PROGRESS'
+              AND NOT EXISTS (
+                  SELECT 1 FROM pg_locks l
+                  WHERE l.locktype = 'advisory' AND l.objsubid = 1
+                    AND l.classid = CAST(q.id >> 32 AS oid)
+                    AND l.objid = CAST(q.id & 4294967295 AS oid))
+            """;
+
+    private static final String LIVE_NODES =
+            """
+            SELECT COUNT(*) FROM endurance.quiz_node n
+            JOIN pg_stat_activity a ON a.pid = n.backend_pid
+            """;
+
+    // How long a quiz nobody owned is taken to stay that way; another instance may take it in
+    // the meantime, which the command sent here finds out when it tries to take it too
+    private static final Duration UNOWNED_TTL = Duration.ofSeconds(1);
+
+    // Missed keepalive probes after which the server drops an instance's lock connection
+    private static final int DEAD_PEER_PROBES = 3;
+
+    private final OwnershipProperties properties;
+    private final int nodeId;
+    private final DataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+    private final QuizSessionStore sessionStore;
+    private final QuizMailboxExecutor quizExecutor;
+    private final ApplicationEventPublisher eventPublisher;
+
+    // Owned quizzes, with when they were taken
+    private final Map<Long, Long> owned = new ConcurrentHashMap<>();
+    // Claims under way; whoever asks for a quiz first takes the lock, others wait for the answer
+    private final Map<Long, CompletableFuture<Boolean>> claims = new ConcurrentHashMap<>();
+    // Owners elsewhere, and quizzes without one, looked up recently
+    private final Cache<Long, String> remoteOwners;
+    private final Cache<Long, Boolean> unowned;
+
+    // Claims share the lock connection, a reconnect has it to itself
+    private final ReadWriteLock connectionLock = new ReentrantReadWriteLock();
+    private Connection lockConnection;
+    private volatile JdbcTemplate lockTemplate;
+
+    private final ScheduledExecutorService heartbeat;
+    private final Counter claimedCounter;
+    private final Counter lostCounter;
+
+    public QuizOwnership(
+            OwnershipProperties properties,
+            IdProperties idProperties,
+            DataSource dataSource,
+            JdbcTemplate jdbcTemplate,
+            QuizSessionStore sessionStore,
+            QuizMailboxExecutor quizExecutor,
+            ApplicationEventPublisher eventPublisher,
+            MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.nodeId = idProperties.nodeId();
+        this.dataSource = dataSource;
+        this.jdbcTemplate = jdbcTemplate;
+        this.sessionStore = sessionStore;
+        this.quizExecutor = quizExecutor;
+        this.eventPublisher = eventPublisher;
+        this.remoteOwners = Caffeine.newBuilder()
+                .expireAfterWrite(properties.heartbeatInterval())
+                .maximumSize(10_000)
+                .build();
+        this.unowned = Caffeine.newBuilder()
+                .expireAfterWrite(UNOWNED_TTL)
+                .maximumSize(10_000)
+                .build();
+
+        Gauge.builder("endurance.quiz.owned", owned, Map::size)
+                .description("Quizzes run by this instance")
+                .register(meterRegistry);
+        this.claimedCounter = meterRegistry.counter("endurance.quiz.ownership.claimed");
+        this.lostCounter = meterRegistry.counter("endurance.quiz.ownership.lost");
+
+        this.heartbeat = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("quiz-ownership").daemon().factory());
+    }
+
+    // Once the schema is migrated; the first beat takes over quizzes left by stopped instances
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!properties.enabled()) {
+            return;
+        }
+        long interval = properties.heartbeatInterval().toMillis();
+        heartbeat.scheduleWithFixedDelay(this::beat, 0, interval, TimeUnit.MILLISECONDS);
+        log.info("Quiz ownership enabled for node {} at {}", nodeId, properties.address());
+    }
+
+    public boolean isEnabled() {
+        return properties.enabled();
+    }
+
+    /** Whether this instance runs the quiz, without trying to take it. */
+    public boolean owns(Long quizId) {
+        return !properties.enabled() || owned.containsKey(quizId);
+    }
+
+    /**
+     * Whether commands for a quiz run on this instance: it owns the quiz, or nobody does. The quiz
+     * is not taken here; starting it or rebuilding its session does that.
+     */
+    public boolean isLocal(Long quizId) {
+        return owns(quizId) || findOwnerAddress(quizId).isEmpty();
+    }
+
+    /**
+     * Takes a quiz for this instance, unless another instance runs it.
+     *
+     * <p>A quiz taken here may have been run by another instance since this one last had it, so
+     * whatever session was left in memory is dropped and rebuilt from the database.
+     *
+     * @param quizId the quiz
+     * @return whether this instance owns the quiz now
+     */
+    public boolean claim(Long quizId) {
+        if (owns(quizId)) {
+            return true;
+        }
+        CompletableFuture<Boolean> claim = new CompletableFuture<>();
+        CompletableFuture<Boolean> running = claims.putIfAbsent(quizId, claim);
+        if (running != null) {
+            return running.join();
+        }
+        try {
+            claim.complete(owned.containsKey(quizId) || lock(quizId));
+        } catch (RuntimeException e) {
+            claim.completeExceptionally(e);
+            throw e;
+        } finally {
+            claims.remove(quizId, claim);
+        }
+        return claim.join();
+    }
+
+    /**
+     * Finds the address of the instance that owns a quiz.
+     *
+     * @param quizId the quiz
+     * @return the owner's base URL, or empty if nobody owns the quiz
+     */
+    public Optional<String> findOwnerAddress(Long quizId) {
+        String address = remoteOwners.getIfPresent(quizId);
+        if (address != null) {
+            return Optional.of(address);
+        }
+        if (unowned.getIfPresent(quizId) != null) {
+            return Optional.empty();
+        }
+        Optional<String> owner = jdbcTemplate
+                .queryForList(OWNER_ADDRESS, String.class, quizId >>> 32, quizId & 0xFFFFFFFFL)
+                .stream()
+                .findFirst();
+        owner.ifPresentOrElse(
+                found -> remoteOwners.put(quizId, found), () -> unowned.put(quizId, true));
+        return owner;
+    }
+
+    /** Forgets the looked up owner of a quiz, once it could not be reached or was wrong. */
+    public void forgetOwner(Long quizId) {
+        remoteOwners.invalidate(quizId);
+        unowned.invalidate(quizId);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        heartbeat.shutdownNow();
+        // Closing the lock connection hands every owned quiz to the other instances
+        connectionLock.writeLock().lock();
+        try {
+            closeLockConnection();
+            owned.clear();
+        } finally {
+            connectionLock.writeLock().unlock();
+        }
+        log.info("Quiz ownership released");
+    }
+
+    void beat() {
+        try {
+            ensureConnected();
+            releaseDone();
+            claimOrphans();
+        } catch (RuntimeException e) {
+            log.warn("Quiz ownership heartbeat failed: {}", e.getMessage());
+        }
+    }
+
+    // Advisory locks count up when taken twice on a connection, so a quiz is only locked once;
+    // the claims map keeps two callers from locking the same quiz
+    private boolean lock(Long quizId) {
+        if (lockTemplate == null) {
+            ensureConnected();
+        }
+        connectionLock.readLock().lock();
+        try {
+            if (lockTemplate == null || !tryLock(lockTemplate, quizId)) {
+                // Someone took it after this instance last looked
+                unowned.invalidate(quizId);
+                return false;
+            }
+            remoteOwners.invalidate(quizId);
+            sessionStore.invalidate(quizId);
+            owned.put(quizId, System.currentTimeMillis());
+        } finally {
+            connectionLock.readLock().unlock();
+        }
+        claimedCounter.increment();
+        return true;
+    }
+
+    private static boolean tryLock(JdbcTemplate template, Long quizId) {
+        return Boolean.TRUE.equals(
+                template.queryForObject("SELECT pg_try_advisory_lock(?)", Boolean.class, quizId));
+    }
+
+    private void unlock(Long quizId) {
+        connectionLock.readLock().lock();
+        try {
+            if (owned.remove(quizId) != null && lockTemplate != null) {
+                lockTemplate.queryForObject("SELECT pg_advisory_unlock(?)", Boolean.class, quizId);
+            }
+        } finally {
+            connectionLock.readLock().unlock();
+        }
+    }
+
+    // Claims keep using the lock connection while it is checked; only a reconnect stops them
+    private void ensureConnected() {
+        JdbcTemplate template = lockTemplate;
+        try {
+            if (template != null
+                    && Boolean.TRUE.equals(
+                            template.execute((Connection connection) -> connection.isValid(1)))) {
+                return;
+            }
+        } catch (RuntimeException e) {
+            // Reconnect below
+        }
+        connectionLock.writeLock().lock();
+        try {
+            if (lockTemplate != template) {
+                // Someone else reconnected in the meantime
+                return;
+            }
+            boolean reconnect = lockConnection != null;
+            closeLockConnection();
+            try {
+                lockConnection = dataSource.getConnection();
+                lockConnection.setAutoCommit(true);
+            } catch (SQLException e) {
+                lockConnection = null;
+                throw new IllegalStateException("Cannot open the quiz lock connection", e);
+            }
+            JdbcTemplate connected =
+                    new JdbcTemplate(new SingleConnectionDataSource(lockConnection, true));
+            detectDeadPeer(connected);
+            connected.update(REGISTER, nodeId, properties.address());
+
+            if (reconnect) {
+                // Locks went with the old connection; keep what nobody took in the meantime
+                for (Long quizId : List.copyOf(owned.keySet())) {
+                    if (!tryLock(connected, quizId)) {
+                        lose(quizId);
+                    }
+                }
+                log.warn("Reconnected the quiz lock connection, {} quizzes kept", owned.size());
+            }
+            lockTemplate = connected;
+        } finally {
+            connectionLock.writeLock().unlock();
+        }
+    }
+
+    // Without these the server keeps the session, and its locks, until the kernel gives up on
+    // the connection, which takes hours
+    private void detectDeadPeer(JdbcTemplate connected) {
+        long seconds = Math.max(1, properties.heartbeatInterval().toSeconds());
+        connected.execute("SET tcp_keepalives_idle = " + seconds);
+        connected.execute("SET tcp_keepalives_interval = " + seconds);
+        connected.execute("SET tcp_keepalives_count = " + DEAD_PEER_PROBES);
+        connected.execute("SET tcp_user_timeout = " + seconds * (DEAD_PEER_PROBES + 1) * 1000);
+    }
+
+    private void closeLockConnection() {
+        if (lockConnection == null) {
+            return;
+        }
+        try {
+            lockConnection.close();
+        } catch (SQLException e) {
+            log.debug("Failed to close the quiz lock connection: {}", e.getMessage());
+        }
+        lockConnection = null;
+        lockTemplate = null;
+    }
+
+    private void lose(Long quizId) {
+        owned.remove(quizId);
+        sessionStore.invalidate(quizId);
+        lostCounter.increment();
+        log.warn("Quiz {} is now run by another instance", quizId);
+    }
+
+    // Quizzes that finished, or that left memory a while after they were taken, go back once
+    // their mailbox has run every command it accepted here
+    private void releaseDone() {
+        long settled =
+                System.currentTimeMillis() - properties.heartbeatInterval().toMillis();
+        for (Map.Entry<Long, Long> entry : owned.entrySet()) {
+            QuizSession session = sessionStore.peek(entry.getKey());
+            boolean done = session != null
+                    ? session.getStatus() == QuizStatus.FINISHED
+                    : entry.getValue() < settled;
+            if (done && quizExecutor.getDepth(entry.getKey()) == 0) {
+                unlock(entry.getKey());
+            }
+        }
+    }
+
+    // Takes this instance's share of the running quizzes whose owner went away
+    private void claimOrphans() {
+        List<Long> orphans = new ArrayList<>(jdbcTemplate.queryForList(ORPHANS, Long.class));
+        if (orphans.isEmpty()) {
+            return;
+        }
+        Long nodes = jdbcTemplate.queryForObject(LIVE_NODES, Long.class);
+        int share =
+                (int) Math.ceil(orphans.size() / (double) Math.max(1, nodes != null ? nodes : 1));
+        Collections.shuffle(orphans);
+
+        List<Long> claimed = new ArrayList<>();
+        for (Long quizId : orphans) {
+            if (claimed.size() >= share) {
+                break;
+            }
+            if (claim(quizId)) {
+                claimed.add(quizId);
+            }
+        }
+        if (!claimed.isEmpty()) {
+            log.info("Took over {} running quizzes", claimed.size());
+            eventPublisher.publishEvent(new QuizzesClaimedEvent(claimed));
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.thonbecker.endurance.service;
+
+import com.thonbecker.endurance.entity.QuestionEntity;
+import com.thonbecker.endurance.entity.QuizEntity;
+import com.thonbecker.endurance.repository.AnswerSubmissionJdbcRepository;
+import com.thonbecker.endurance.repository.QuestionRepository;
+import com.thonbecker.endurance.repository.QuizCheckpointJdbcRepository;
+import com.thonbecker.endurance.repository.QuizPlayerRepository;
+import com.thonbecker.endurance.repository.QuizRepository;
+import com.thonbecker.endurance.type.Player;
+import com.thonbecker.endurance.type.Question;
+import com.thonbecker.endurance.type.QuizCheckpoint;
+import com.thonbecker.endurance.type.QuizStatus;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * Rebuilds the {@link QuizSession} of a quiz that was running before a restart, or that the
+ * {@link QuizSessionStore} dropped.
+ *
+ * <p>The position of the quiz comes from its last checkpoint, who answered what from the recorded
+ * answers, and the scores from the roster, which is updated in the same statement that records an
+ * answer. The status in the database wins over the checkpoint's: a quiz paused or resumed after
+ * its last checkpoint is paused or resumed again here. A finished quiz is rebuilt at its last
+ * question with its final scores.
+ */
+@Slf4j
+@Service
+public class QuizRecovery {
+    private static final List<QuizStatus> LIVE =
+            List.of(QuizStatus.IN_PROGRESS, QuizStatus.WAITING);
+
+    private final QuizRepository quizRepository;
+    private final QuestionRepository questionRepository;
+    private final QuizPlayerRepository quizPlayerRepository;
+    private final AnswerSubmissionJdbcRepository answerSubmissionJdbcRepository;
+    private final QuizCheckpointJdbcRepository checkpointRepository;
+
+    private final Counter recoveredCounter;
+    private final Timer recoveryTimer;
+
+    public QuizRecovery(
+            QuizRepository quizRepository,
+            QuestionRepository questionRepository,
+            QuizPlayerRepository quizPlayerRepository,
+            AnswerSubmissionJdbcRepository answerSubmissionJdbcRepository,
+            QuizCheckpointJdbcRepository checkpointRepository,
+            MeterRegistry meterRegistry) {
+        this.quizRepository = quizRepository;
+        this.questionRepository = questionRepository;
+        this.quizPlayerRepository = quizPlayerRepository;
+        this.answerSubmissionJdbcRepository = answerSubmissionJdbcRepository;
+        this.checkpointRepository = checkpointRepository;
+        this.recoveredCounter = Counter.builder("endurance.quiz.recovered")
+                .description("Quiz sessions rebuilt from the database")
+                .register(meterRegistry);
+        this.recoveryTimer = Timer.builder("endurance.quiz.recovery")
+                .description("Time to rebuild a running quiz")
+                .register(meterRegistry);
+    }
+
+    /** IDs of the quizzes that were running or paused, and so may need rebuilding. */
+    @Transactional(readOnly = true)
+    public List<Long> findLiveQuizIds() {
+        return quizRepository.findIdsByStatusIn(LIVE);
+    }
+
+    /**
+     * Rebuilds the session of a quiz.
+     *
+     * @param quizId the quiz
+     * @param now the time of recovery
+     * @return the session, or empty if the quiz does not exist or has not started
+     */
+    @Transactional(readOnly = true)
+    public Optional<QuizSession> load(Long quizId, long now) {
+        return recoveryTimer.record(() -> {
+            QuizEntity quiz = quizRepository.findById(quizId).orElse(null);
+            if (quiz == null || quiz.getStatus() == QuizStatus.CREATED) {
+                return Optional.empty();
+            }
+
+            List<Question> questions =
+                    questionRepository.findByQuizOrderByQuestionOrderAsc(quiz).stream()
+                            .map(QuestionEntity::toDomainModel)
+                            .toList();
+            if (questions.isEmpty()) {
+                return Optional.empty();
+            }
+            Map<String, Integer> scores = quizPlayerRepository.findRoster(quizId).stream()
+                    .collect(Collectors.toMap(Player::id, Player::score));
+
+            // A finished quiz has no checkpoint left; one that stopped before its first checkpoint
+            // continues from its answers alone
+            QuizCheckpoint checkpoint = quiz.getStatus() == QuizStatus.FINISHED
+                    ? new QuizCheckpoint(
+                            quizId, QuizStatus.FINISHED, questions.size() - 1, now, now, 0)
+                    : checkpointRepository
+                            .findById(quizId)
+                            .orElseGet(() -> new QuizCheckpoint(
+                                    quizId, QuizStatus.IN_PROGRESS, 0, now, now, 0));
+            QuizSession session = QuizSession.restore(
+                    checkpoint,
+                    questions,
+                    scores,
+                    quiz.getTimePerQuestionInSeconds() * 1000L,
+                    answerSubmissionJdbcRepository.findAnswered(quizId),
+                    now);
+
+            // Paused or resumed after the checkpoint was written
+            if (quiz.getStatus() == QuizStatus.WAITING
+                    && session.getStatus() == QuizStatus.IN_PROGRESS) {
+                session.pause(now);
+            } else if (quiz.getStatus() == QuizStatus.IN_PROGRESS
+                    && session.getStatus() == QuizStatus.WAITING) {
+                session.resume(now);
+            }
+
+            recoveredCounter.increment();
+            log.info(
+                    "Recovered quiz {} at question {} ({})",
+                    quizId,
+                    session.getCurrentQuestionIndex(),
+                    session.getStatus());
+            return Optional.of(session);
+        });
+    }
+}
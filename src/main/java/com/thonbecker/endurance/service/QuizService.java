@@ -1,7 +1,9 @@
 package com.thonbecker.endurance.service;
 
+import com.thonbecker.endurance.config.RecoveryProperties;
 import com.thonbecker.endurance.entity.*;
 import com.thonbecker.endurance.exception.InvalidStateException;
+import com.thonbecker.endurance.exception.QuizOwnedElsewhereException;
 import com.thonbecker.endurance.exception.ResourceNotFoundException;
 import com.thonbecker.endurance.exception.ValidationException;
 import com.thonbecker.endurance.repository.*;
@@ -9,43 +11,80 @@ import com.thonbecker.endurance.type.*;
 
 import lombok.extern.slf4j.Slf4j;
 
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
 import java.util.stream.Collectors;
 
 @Slf4j
 @Service
 public class QuizService {
-    // In-memory state for active quizzes
-    private final Map<Long, QuizState> quizStates = new ConcurrentHashMap<>();
+    public static final int MAX_PAGE_SIZE = 100;
+    // Shorter text has no trigram to look up in the title index and would scan every quiz
+    public static final int MIN_SEARCH_LENGTH = 3;
+
+    // In-memory authoritative sessions for active quizzes, rebuilt from the database when dropped
+    private final QuizSessionStore sessions;
+
+    // Sessions being rebuilt after a restart; whoever starts a rebuild runs it, others wait for it
+    private final Map<Long, CompletableFuture<Optional<QuizSession>>> recoveries =
+            new ConcurrentHashMap<>();
+    private final ExecutorService recoveryExecutor = Executors.newVirtualThreadPerTaskExecutor();
 
     // Services and repositories
     private final TriviaQuestionGenerator questionGenerator;
     private final QuizRepository quizRepository;
     private final QuestionRepository questionRepository;
-    private final QuestionOptionRepository questionOptionRepository;
     private final PlayerRepository playerRepository;
     private final QuizPlayerRepository quizPlayerRepository;
-    private final AnswerSubmissionRepository answerSubmissionRepository;
+    private final AnswerSubmissionWriter answerSubmissionWriter;
+    private final QuestionTimer questionTimer;
+    private final QuizIdGenerator quizIdGenerator;
+    private final QuizRecovery quizRecovery;
+    private final QuizOwnership quizOwnership;
+    private final RecoveryProperties recoveryProperties;
+    private final ApplicationEventPublisher eventPublisher;
 
     public QuizService(
             TriviaQuestionGenerator questionGenerator,
             QuizRepository quizRepository,
             QuestionRepository questionRepository,
-            QuestionOptionRepository questionOptionRepository,
             PlayerRepository playerRepository,
             QuizPlayerRepository quizPlayerRepository,
-            AnswerSubmissionRepository answerSubmissionRepository) {
+            AnswerSubmissionWriter answerSubmissionWriter,
+            QuestionTimer questionTimer,
+            QuizIdGenerator quizIdGenerator,
+            QuizSessionStore sessions,
+            QuizRecovery quizRecovery,
+            QuizOwnership quizOwnership,
+            RecoveryProperties recoveryProperties,
+            ApplicationEventPublisher eventPublisher) {
         this.questionGenerator = questionGenerator;
         this.quizRepository = quizRepository;
         this.questionRepository = questionRepository;
-        this.questionOptionRepository = questionOptionRepository;
         this.playerRepository = playerRepository;
         this.quizPlayerRepository = quizPlayerRepository;
-        this.answerSubmissionRepository = answerSubmissionRepository;
+        this.answerSubmissionWriter = answerSubmissionWriter;
+        this.questionTimer = questionTimer;
+        this.quizIdGenerator = quizIdGenerator;
+        this.sessions = sessions;
+        this.quizRecovery = quizRecovery;
+        this.quizOwnership = quizOwnership;
+        this.recoveryProperties = recoveryProperties;
+        this.eventPublisher = eventPublisher;
     }
 
     @Transactional
@@ -73,33 +112,28 @@ public class QuizService {
             }
         }
 
-        // Convert domain model to entity
+        // Build the whole quiz, so it is persisted in one cascade and inserted in batches
         QuizEntity quizEntity = QuizEntity.fromDomainModel(quiz);
-
-        // Save the quiz entity
-        quizEntity = quizRepository.save(quizEntity);
-
-        // Save questions and options
+        if (quizEntity.getId() == null) {
+            quizEntity.setId(generateQuizId());
+        }
         for (int i = 0; i < quiz.questions().size(); i++) {
             Question question = quiz.questions().get(i);
             QuestionEntity questionEntity = QuestionEntity.fromDomainModel(question, i);
-            questionEntity.setQuiz(quizEntity);
-            questionEntity = questionRepository.save(questionEntity);
-
-            // Save options
             List<String> options = question.options();
             for (int j = 0; j < options.size(); j++) {
-                QuestionOptionEntity optionEntity = new QuestionOptionEntity(options.get(j), j);
-                optionEntity.setQuestion(questionEntity);
-                questionOptionRepository.save(optionEntity);
+                questionEntity.addOption(new QuestionOptionEntity(options.get(j), j));
             }
+            quizEntity.addQuestion(questionEntity);
         }
 
-        // Return the saved quiz as domain model
-        return quizRepository
-                .findById(quizEntity.getId())
-                .map(QuizEntity::toDomainModel)
-                .orElseThrow(() -> new ResourceNotFoundException("Failed to create quiz"));
+        // Question and option IDs come from pooled sequences, so they are known before the flush
+        quizRepository.save(quizEntity);
+
+        eventPublisher.publishEvent(new QuizChangedEvent(quizEntity.getId()));
+
+        // Return what was written, with its assigned IDs
+        return quizEntity.toDomainModel();
     }
 
     @Transactional
@@ -115,22 +149,19 @@ public class QuizService {
         return createQuiz(quiz);
     }
 
-    @Transactional(readOnly = true)
-    public List<Quiz> getAvailableQuizzes() {
-        // Get all quizzes that are in CREATED or WAITING status (available to join)
-        return quizRepository
-                .findByStatusIn(List.of(QuizStatus.CREATED, QuizStatus.WAITING))
-                .stream()
-                .map(QuizEntity::toDomainModel)
-                .collect(Collectors.toList());
-    }
-
     private Long generateQuizId() {
-        return System.currentTimeMillis();
+        return quizIdGenerator.nextId();
     }
 
+    /**
+     * Adds a player to a quiz, or updates the readiness of a player already in it.
+     *
+     * @param player the player; a new ID is assigned if it has none
+     * @param quizId the quiz
+     * @return the roster change, or empty if the player was already in the quiz as is
+     */
     @Transactional
-    public List<Player> addPlayer(Player player, Long quizId) {
+    public Optional<RosterUpdate> addPlayer(Player player, Long quizId) {
         // Check if the player exists by ID (if provided) or create new
         PlayerEntity playerEntity;
         if (player.id() != null) {
@@ -153,27 +184,41 @@ public class QuizService {
                 .orElseThrow(() -> new ResourceNotFoundException("Quiz", quizId));
 
         // Check if the player is already in the quiz
-        if (!quizPlayerRepository.existsByQuizAndPlayer(quizEntity, playerEntity)) {
+        Optional<QuizPlayerEntity> existing =
+                quizPlayerRepository.findByQuizAndPlayer(quizEntity, playerEntity);
+        RosterUpdate update;
+        if (existing.isEmpty()) {
             // Add the player to the quiz
             QuizPlayerEntity quizPlayerEntity = new QuizPlayerEntity(quizEntity, playerEntity);
             quizPlayerEntity.setReady(player.isReady());
             quizPlayerRepository.save(quizPlayerEntity);
-        } else {
+            update = RosterUpdate.joined(quizId, toPlayer(quizPlayerEntity));
+        } else if (existing.get().isReady() != player.isReady()) {
             // Update player readiness
-            quizPlayerRepository.findByQuizAndPlayer(quizEntity, playerEntity).ifPresent(qp -> {
-                qp.setReady(player.isReady());
-                quizPlayerRepository.save(qp);
-            });
+            QuizPlayerEntity quizPlayerEntity = existing.get();
+            quizPlayerEntity.setReady(player.isReady());
+            quizPlayerRepository.save(quizPlayerEntity);
+            update = RosterUpdate.ready(quizId, toPlayer(quizPlayerEntity));
+        } else {
+            return Optional.empty();
         }
 
-        // Return all players in the quiz
-        return quizPlayerRepository.findByQuiz(quizEntity).stream()
-                .map(qp -> qp.getPlayer().toDomainModel(quizEntity.getId()))
-                .collect(Collectors.toList());
+        // Keep the roster of a running quiz in sync
+        liveSession(quizEntity).ifPresent(session -> session.addPlayer(playerEntity.getId(), 0));
+        eventPublisher.publishEvent(new QuizChangedEvent(quizId));
+
+        return Optional.of(update);
     }
 
+    /**
+     * Removes a player from a quiz, and ends a running quiz when its last player left.
+     *
+     * @param playerId the player
+     * @param quizId the quiz
+     * @return the roster change, or empty if the player was not in the quiz
+     */
     @Transactional
-    public List<Player> removePlayer(String playerId, Long quizId) {
+    public Optional<RosterUpdate> removePlayer(String playerId, Long quizId) {
         // Get the quiz
         QuizEntity quizEntity = quizRepository
                 .findById(quizId)
@@ -185,28 +230,51 @@ public class QuizService {
                 .orElseThrow(() -> new ResourceNotFoundException("Player", playerId));
 
         // Remove the player from the quiz
-        quizPlayerRepository
-                .findByQuizAndPlayer(quizEntity, playerEntity)
-                .ifPresent(quizPlayerEntity -> {
-                    quizPlayerRepository.delete(quizPlayerEntity);
-                });
+        Optional<QuizPlayerEntity> quizPlayerEntity =
+                quizPlayerRepository.findByQuizAndPlayer(quizEntity, playerEntity);
+        if (quizPlayerEntity.isEmpty()) {
+            return Optional.empty();
+        }
+        quizPlayerRepository.delete(quizPlayerEntity.get());
 
-        // Get remaining players
-        List<Player> remainingPlayers = quizPlayerRepository.findByQuiz(quizEntity).stream()
-                .map(qp -> qp.getPlayer().toDomainModel(quizEntity.getId()))
-                .collect(Collectors.toList());
+        // Keep the roster of a running quiz in sync
+        liveSession(quizEntity).ifPresent(session -> session.removePlayer(playerId));
+        eventPublisher.publishEvent(new QuizChangedEvent(quizId));
 
         // Check if all players have left and quiz is in progress
-        if (remainingPlayers.isEmpty() && quizEntity.getStatus() == QuizStatus.IN_PROGRESS) {
+        if (quizEntity.getStatus() == QuizStatus.IN_PROGRESS
+                && !quizPlayerRepository.existsByQuiz(quizEntity)) {
             log.info("All players have left quiz {}, ending quiz automatically", quizId);
             endQuiz(quizId);
         }
 
-        return remainingPlayers;
+        return Optional.of(RosterUpdate.left(quizId, playerId));
+    }
+
+    /**
+     * Returns everyone in a quiz, for a client that (re)subscribes to its roster.
+     *
+     * @param quizId the quiz
+     * @return the players in the quiz
+     */
+    @Transactional(readOnly = true)
+    public List<Player> getRoster(Long quizId) {
+        if (!quizRepository.existsById(quizId)) {
+            throw new ResourceNotFoundException("Quiz", quizId);
+        }
+        return quizPlayerRepository.findRoster(quizId);
+    }
+
+    private static Player toPlayer(QuizPlayerEntity quizPlayer) {
+        return new Player(
+                quizPlayer.getPlayer().getId(),
+                quizPlayer.getPlayer().getName(),
+                quizPlayer.getScore(),
+                quizPlayer.isReady());
     }
 
     @Transactional
-    public QuizState startQuiz(Long quizId) {
+    public QuizStateMessage startQuiz(Long quizId) {
         // Validate input
         if (quizId == null) {
             throw new ValidationException("quizId", "cannot be null");
@@ -225,7 +293,15 @@ public class QuizService {
                             + ". Quiz must be in CREATED or WAITING status to start.");
         }
 
-        // Get all questions for validation
+        // The instance that starts a quiz runs it
+        claim(quizId);
+
+        // A paused quiz that is not in memory after a restart is rebuilt before it resumes
+        QuizSession paused = quizEntity.getStatus() == QuizStatus.WAITING
+                ? findSession(quizId).orElse(null)
+                : null;
+
+        // Get all questions for validation; their options come from the second-level cache
         List<QuestionEntity> questions =
                 questionRepository.findByQuizOrderByQuestionOrderAsc(quizEntity);
 
@@ -237,7 +313,7 @@ public class QuizService {
         }
 
         // Get all players in the quiz
-        List<QuizPlayerEntity> quizPlayers = quizPlayerRepository.findByQuiz(quizEntity);
+        List<Player> quizPlayers = quizPlayerRepository.findRoster(quizId);
 
         // Validate quiz has at least one player
         if (quizPlayers.isEmpty()) {
@@ -255,32 +331,50 @@ public class QuizService {
         // Update quiz status
         quizEntity.setStatus(QuizStatus.IN_PROGRESS);
         quizRepository.save(quizEntity);
-
-        // Get the first question
-        QuestionEntity firstQuestion = questions.getFirst();
+        eventPublisher.publishEvent(new QuizChangedEvent(quizId));
+
+        // A paused quiz continues where it stopped, with the time its question had left
+        if (paused != null && paused.getStatus() == QuizStatus.WAITING) {
+            long remaining = paused.resume(System.currentTimeMillis());
+            sessions.put(paused);
+            scheduleDeadline(paused, remaining);
+            log.info("Quiz {} resumed with {} ms left on the current question", quizId, remaining);
+            return paused.nextSnapshot();
+        }
 
         // Create player scores map
-        Map<String, Integer> playerScores = quizPlayers.stream()
-                .collect(
-                        Collectors.toMap(qp -> qp.getPlayer().getId(), QuizPlayerEntity::getScore));
+        Map<String, Integer> playerScores =
+                quizPlayers.stream().collect(Collectors.toMap(Player::id, Player::score));
 
-        // Create quiz state
-        QuizState state = new QuizState(
-                quizId, firstQuestion.toDomainModel(), 0, playerScores, System.currentTimeMillis());
+        // Build the in-memory session that decides the rest of the game
+        QuizSession session = new QuizSession(
+                quizId,
+                questions.stream().map(QuestionEntity::toDomainModel).toList(),
+                playerScores,
+                quizEntity.getTimePerQuestionInSeconds() * 1000L,
+                System.currentTimeMillis());
+        sessions.put(session);
+        scheduleDeadline(session, session.getTimePerQuestionMillis());
 
-        // Store in memory for active state
-        quizStates.put(quizId, state);
+        QuizStateSnapshot state = session.nextSnapshot();
 
         log.info(
                 "Quiz {} started successfully with first question: {}",
                 quizId,
-                firstQuestion.getId());
+                state.currentQuestion().id());
 
         return state;
     }
 
+    /**
+     * Validates, scores and records an answer.
+     *
+     * @param submission the answer
+     * @return a snapshot if the answer closed the question; otherwise empty, and the changes are
+     *     left for the next {@link #takeDelta(Long)}
+     */
     @Transactional
-    public QuizState processAnswer(AnswerSubmission submission) {
+    public Optional<QuizStateSnapshot> processAnswer(AnswerSubmission submission) {
         // Validate submission
         if (submission == null) {
             throw new ValidationException("submission", "cannot be null");
@@ -295,154 +389,261 @@ public class QuizService {
             throw new ValidationException("questionId", "cannot be null");
         }
 
-        // Get entities
-        QuizEntity quizEntity = quizRepository
-                .findById(submission.quizId())
-                .orElseThrow(() -> new ResourceNotFoundException("Quiz", submission.quizId()));
-
-        PlayerEntity playerEntity = playerRepository
-                .findById(submission.playerId())
-                .orElseThrow(() -> new ResourceNotFoundException("Player", submission.playerId()));
-
-        QuestionEntity questionEntity = questionRepository
-                .findById(submission.questionId())
-                .orElseThrow(
-                        () -> new ResourceNotFoundException("Question", submission.questionId()));
-
-        // Check if the quiz is in progress
-        if (quizEntity.getStatus() != QuizStatus.IN_PROGRESS) {
-            throw new InvalidStateException(quizEntity.getStatus(), QuizStatus.IN_PROGRESS);
+        // Validate and score the answer against the in-memory session
+        QuizSession session = getSession(submission.quizId());
+        QuizSession.AnswerOutcome outcome = session.submit(submission, System.currentTimeMillis());
+
+        // Make the answer and the points it earned durable, or take it back so it can be retried
+        boolean writtenInTransaction;
+        try {
+            writtenInTransaction = answerSubmissionWriter.write(submission, outcome.points());
+        } catch (RuntimeException e) {
+            session.withdraw(submission, outcome);
+            throw e;
         }
-
-        // Check if the question belongs to the quiz
-        if (!questionEntity.getQuiz().getId().equals(quizEntity.getId())) {
-            throw new ValidationException("Question does not belong to the specified quiz");
+        if (writtenInTransaction) {
+            withdrawOnRollback(session, submission, outcome);
         }
 
-        // Check if the player is part of the quiz
-        if (!quizPlayerRepository.existsByQuizAndPlayer(quizEntity, playerEntity)) {
-            throw new ValidationException("Player is not part of the quiz");
+        // If all players have answered, move to the next question once its answers are written
+        if (outcome.questionComplete()) {
+            answerSubmissionWriter.awaitWritten(
+                    submission.quizId(), outcome.question().id());
+            return Optional.of(moveToNextQuestion(session));
         }
 
-        // Check if the player has already submitted an answer for this question
-        if (answerSubmissionRepository.existsByQuizAndPlayerAndQuestion(
-                quizEntity, playerEntity, questionEntity)) {
-            throw new ValidationException(
-                    "Player has already submitted an answer for this question");
-        }
+        // Otherwise, the changes go out with the next delta
+        return Optional.empty();
+    }
 
-        // Validate selected option
-        if (submission.selectedOption() < 0
-                || submission.selectedOption() >= questionEntity.getOptions().size()) {
-            throw new ValidationException("selectedOption", "invalid option index");
+    // An answer written with the transaction is gone again if anything after it fails
+    private static void withdrawOnRollback(
+            QuizSession session, AnswerSubmission submission, QuizSession.AnswerOutcome outcome) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
         }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_ROLLED_BACK) {
+                    session.withdraw(submission, outcome);
+                }
+            }
+        });
+    }
 
-        // Save the answer submission
-        AnswerSubmissionEntity answerEntity = AnswerSubmissionEntity.fromDomainModel(
-                submission, playerEntity, quizEntity, questionEntity);
-        answerSubmissionRepository.save(answerEntity);
+    /**
+     * Closes a question whose time limit has passed and moves the quiz on.
+     *
+     * @param quizId the quiz
+     * @param questionIndex index of the question whose deadline expired
+     * @return the new state, or empty if the question was already closed in the meantime
+     */
+    @Transactional
+    public Optional<QuizStateMessage> expireQuestion(Long quizId, int questionIndex) {
+        QuizSession session = findSession(quizId).orElse(null);
+        if (session == null
+                || session.getStatus() != QuizStatus.IN_PROGRESS
+                || session.getCurrentQuestionIndex() != questionIndex) {
+            // The question closed early, or the quiz was paused or ended
+            return Optional.empty();
+        }
 
-        // Check if the answer is correct
-        boolean isCorrect = questionEntity.getCorrectOptionIndex() == submission.selectedOption();
+        log.info("Time is up for question {} of quiz {}", questionIndex, quizId);
+        answerSubmissionWriter.awaitWritten(quizId, session.getCurrentQuestion().id());
+        return Optional.of(moveToNextQuestion(session));
+    }
 
-        // Update player score if correct
-        if (isCorrect) {
-            quizPlayerRepository.findByQuizAndPlayer(quizEntity, playerEntity).ifPresent(qp -> {
-                qp.setScore(qp.getScore() + questionEntity.getPoints());
-                quizPlayerRepository.save(qp);
-            });
+    private QuizStateSnapshot moveToNextQuestion(QuizSession session) {
+        if (session.advance(System.currentTimeMillis())) {
+            scheduleDeadline(session, session.getTimePerQuestionMillis());
+        } else {
+            // No more questions, quiz is finished
+            log.info(
+                    "All questions answered for quiz {}, ending quiz automatically",
+                    session.getQuizId());
+            session.cancelDeadline();
+            quizRepository.updateStatus(session.getQuizId(), QuizStatus.FINISHED);
+            sessions.put(session);
         }
+        return session.nextSnapshot();
+    }
 
-        // Get the current quiz state
-        QuizState currentState = quizStates.get(submission.quizId());
-        if (currentState == null) {
-            throw new ResourceNotFoundException("Quiz state for quiz", submission.quizId());
+    private void scheduleDeadline(QuizSession session, long delayMillis) {
+        // Quizzes without a time limit only advance once everyone has answered
+        if (session.getTimePerQuestionMillis() <= 0) {
+            return;
         }
+        session.replaceDeadline(questionTimer.scheduleTimeout(
+                session.getQuizId(), session.getCurrentQuestionIndex(), delayMillis));
+    }
 
-        // Check if all players have answered the current question
-        List<PlayerEntity> quizPlayers = quizPlayerRepository.findByQuiz(quizEntity).stream()
-                .map(QuizPlayerEntity::getPlayer)
-                .collect(Collectors.toList());
-
-        List<String> playerIds =
-                quizPlayers.stream().map(PlayerEntity::getId).collect(Collectors.toList());
-
-        // Count answers for the current question
-        long answerCount = answerSubmissionRepository.countByQuizAndQuestionAndPlayerIdIn(
-                quizEntity, questionEntity, playerIds);
+    private QuizSession getSession(Long quizId) {
+        return findSession(quizId)
+                .orElseThrow(() -> new ResourceNotFoundException("Quiz state for quiz", quizId));
+    }
 
-        // If all players have answered, move to the next question
-        if (answerCount >= playerIds.size()) {
-            return moveToNextQuestion(quizEntity, currentState);
+    // Only running and paused quizzes have a session worth rebuilding
+    private Optional<QuizSession> liveSession(QuizEntity quiz) {
+        if (quiz.getStatus() != QuizStatus.IN_PROGRESS && quiz.getStatus() != QuizStatus.WAITING) {
+            return Optional.ofNullable(sessions.get(quiz.getId()));
         }
-
-        // Otherwise, return the current state
-        return currentState;
+        return findSession(quiz.getId());
     }
 
-    private QuizState moveToNextQuestion(QuizEntity quizEntity, QuizState currentState) {
-        int nextQuestionIndex = currentState.currentQuestionIndex() + 1;
-
-        // Get all questions for the quiz ordered by question order
-        List<QuestionEntity> questions =
-                questionRepository.findByQuizOrderByQuestionOrderAsc(quizEntity);
-
-        // Check if there are more questions
-        if (nextQuestionIndex < questions.size()) {
-            // Get the next question
-            QuestionEntity nextQuestion = questions.get(nextQuestionIndex);
+    /**
+     * Returns the session of a quiz, rebuilding it first if it is not in memory, after a restart
+     * or because the session store dropped it.
+     */
+    private Optional<QuizSession> findSession(Long quizId) {
+        QuizSession session = sessions.get(quizId);
+        if (session != null) {
+            return Optional.of(session);
+        }
+        try {
+            return recover(quizId).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
 
-            // Create player scores map
-            Map<String, Integer> playerScores = quizPlayerRepository.findByQuiz(quizEntity).stream()
-                    .collect(Collectors.toMap(
-                            qp -> qp.getPlayer().getId(), QuizPlayerEntity::getScore));
+    private CompletableFuture<Optional<QuizSession>> recover(Long quizId) {
+        CompletableFuture<Optional<QuizSession>> recovery = new CompletableFuture<>();
+        CompletableFuture<Optional<QuizSession>> running = recoveries.putIfAbsent(quizId, recovery);
+        if (running != null) {
+            return running;
+        }
+        try {
+            // Another rebuild may have finished between the caller's lookup and ours
+            QuizSession session = sessions.get(quizId);
+            Optional<QuizSession> recovered;
+            if (session != null) {
+                recovered = Optional.of(session);
+            } else {
+                // The instance that rebuilds a session runs the quiz from then on
+                claim(quizId);
+                recovered =
+                        quizRecovery.load(quizId, System.currentTimeMillis()).map(this::install);
+            }
+            recovery.complete(recovered);
+        } catch (RuntimeException e) {
+            recovery.completeExceptionally(e);
+        } finally {
+            recoveries.remove(quizId, recovery);
+        }
+        return recovery;
+    }
 
-            // Create new quiz state with the next question
-            QuizState newState = new QuizState(
-                    quizEntity.getId(),
-                    nextQuestion.toDomainModel(),
-                    nextQuestionIndex,
-                    playerScores,
-                    System.currentTimeMillis());
+    private void claim(Long quizId) {
+        if (!quizOwnership.claim(quizId)) {
+            throw new QuizOwnedElsewhereException(quizId);
+        }
+    }
 
-            // Update in-memory state
-            quizStates.put(quizEntity.getId(), newState);
+    private QuizSession install(QuizSession recovered) {
+        QuizSession session = sessions.putIfAbsent(recovered);
+        if (session != null) {
+            return session;
+        }
+        if (recovered.getStatus() == QuizStatus.IN_PROGRESS) {
+            if (recovered.isCurrentQuestionAnswered()) {
+                // Everyone had answered, but the quiz stopped before it moved on
+                recovered.replaceDeadline(questionTimer.scheduleTimeout(
+                        recovered.getQuizId(), recovered.getCurrentQuestionIndex(), 0));
+            } else {
+                scheduleDeadline(
+                        recovered, recovered.getRemainingMillis(System.currentTimeMillis()));
+            }
+        }
+        return recovered;
+    }
 
-            return newState;
-        } else {
-            // No more questions, quiz is finished
-            log.info(
-                    "All questions answered for quiz {}, ending quiz automatically",
-                    quizEntity.getId());
-            quizEntity.setStatus(QuizStatus.FINISHED);
-            quizRepository.save(quizEntity);
+    /**
+     * Rebuilds every quiz that was running or paused when the application stopped, a few at a
+     * time in the background. A quiz that is used before its turn is rebuilt right away by the
+     * caller. When instances share quizzes, each only rebuilds the quizzes it takes over.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void recoverLiveQuizzes() {
+        if (!quizOwnership.isEnabled()) {
+            recoverInBackground(quizRecovery.findLiveQuizIds());
+        }
+    }
 
-            // Get the final scores
-            Map<String, Integer> finalScores = quizPlayerRepository.findByQuiz(quizEntity).stream()
-                    .collect(Collectors.toMap(
-                            qp -> qp.getPlayer().getId(), QuizPlayerEntity::getScore));
+    @EventListener
+    public void onQuizzesClaimed(QuizzesClaimedEvent event) {
+        recoverInBackground(event.quizIds());
+    }
 
-            // Create final state (keeping the last question for reference)
-            QuizState finalState = new QuizState(
-                    quizEntity.getId(),
-                    currentState.currentQuestion(),
-                    currentState.currentQuestionIndex(),
-                    finalScores,
-                    currentState.questionStartTime());
+    private void recoverInBackground(List<Long> quizIds) {
+        if (quizIds.isEmpty()) {
+            return;
+        }
+        log.info("Recovering {} running quizzes", quizIds.size());
+        long start = System.nanoTime();
+        Semaphore permits = new Semaphore(recoveryProperties.parallelism());
+        CompletableFuture<?>[] recovered = quizIds.stream()
+                .map(quizId -> CompletableFuture.runAsync(
+                        () -> {
+                            permits.acquireUninterruptibly();
+                            try {
+                                findSession(quizId);
+                            } catch (RuntimeException e) {
+                                log.error("Failed to recover quiz {}", quizId, e);
+                            } finally {
+                                permits.release();
+                            }
+                        },
+                        recoveryExecutor))
+                .toArray(CompletableFuture[]::new);
+        CompletableFuture.allOf(recovered)
+                .thenRun(() -> log.info(
+                        "Recovered {} running quizzes in {} ms",
+                        quizIds.size(),
+                        (System.nanoTime() - start) / 1_000_000));
+    }
 
-            // Update in-memory state
-            quizStates.put(quizEntity.getId(), finalState);
+    /** Sessions of the quizzes in memory, for writing their checkpoints. */
+    public Collection<QuizSession> getSessions() {
+        return sessions.values();
+    }
 
-            return finalState;
+    /**
+     * Takes the changes of a quiz that were not broadcast yet.
+     *
+     * @param quizId the quiz
+     * @return the next delta of the quiz's state stream, or empty if nothing changed
+     */
+    public Optional<QuizStateDelta> takeDelta(Long quizId) {
+        QuizSession session = sessions.get(quizId);
+        if (session == null || !session.hasPendingChanges()) {
+            return Optional.empty();
         }
+        // Scores go out only once the answers behind them are durable
+        answerSubmissionWriter.awaitJournaled(quizId);
+        return Optional.of(session.nextDelta());
     }
 
     public QuizState getCurrentState(Long quizId) {
-        return quizStates.get(quizId);
+        QuizSession session = sessions.get(quizId);
+        return session != null ? session.toState() : null;
+    }
+
+    /**
+     * Returns a snapshot of a running quiz for a client that (re)subscribes to its state stream.
+     *
+     * @param quizId the quiz
+     * @return the snapshot, carrying the sequence number of the latest message sent
+     */
+    public QuizStateSnapshot getSnapshot(Long quizId) {
+        return getSession(quizId).snapshot();
     }
 
     @Transactional
-    public QuizState pauseQuiz(Long quizId) {
+    public QuizStateMessage pauseQuiz(Long quizId) {
         // Validate input
         if (quizId == null) {
             throw new ValidationException("quizId", "cannot be null");
@@ -461,18 +662,19 @@ public class QuizService {
         // Update quiz status
         quizEntity.setStatus(QuizStatus.WAITING);
         quizRepository.save(quizEntity);
+        eventPublisher.publishEvent(new QuizChangedEvent(quizId));
 
         // Get the current state
-        QuizState currentState = quizStates.get(quizId);
-        if (currentState == null) {
-            throw new ResourceNotFoundException("Quiz state for quiz", quizId);
-        }
+        QuizSession session = getSession(quizId);
+        session.pause(System.currentTimeMillis());
+        sessions.put(session);
+        answerSubmissionWriter.awaitJournaled(quizId);
 
-        return currentState;
+        return session.nextDelta();
     }
 
     @Transactional
-    public QuizState endQuiz(Long quizId) {
+    public QuizStateMessage endQuiz(Long quizId) {
         // Validate input
         if (quizId == null) {
             throw new ValidationException("quizId", "cannot be null");
@@ -491,41 +693,100 @@ public class QuizService {
         // Update quiz status
         quizEntity.setStatus(QuizStatus.FINISHED);
         quizRepository.save(quizEntity);
+        eventPublisher.publishEvent(new QuizChangedEvent(quizId));
 
         // Get the current state
-        QuizState currentState = quizStates.get(quizId);
-        if (currentState == null) {
-            throw new ResourceNotFoundException("Quiz state for quiz", quizId);
-        }
+        QuizSession session = getSession(quizId);
+        session.finish();
+        sessions.put(session);
+        answerSubmissionWriter.awaitJournaled(quizId);
 
-        // Get the final scores
-        Map<String, Integer> finalScores = quizPlayerRepository.findByQuiz(quizEntity).stream()
-                .collect(
-                        Collectors.toMap(qp -> qp.getPlayer().getId(), QuizPlayerEntity::getScore));
+        // The session holds the authoritative final scores
+        return session.nextSnapshot();
+    }
+
+    /**
+     * Lists the quizzes with a status, newest first.
+     *
+     * @param status the status
+     * @param after the {@code nextCursor} of the previous page, or null for the first page
+     * @param size number of quizzes per page, at most {@value #MAX_PAGE_SIZE}
+     * @return the page
+     */
+    @Transactional(readOnly = true)
+    public QuizPage browseQuizzes(QuizStatus status, String after, int size) {
+        QuizCursor cursor = decodeCursor(after);
+        Limit limit = pageLimit(size);
+        List<QuizSummary> quizzes = cursor == null
+                ? quizRepository.findPageByStatus(status, limit)
+                : quizRepository.findPageByStatusAfter(
+                        status, cursor.createdAt(), cursor.id(), limit);
+        return toPage(quizzes, size);
+    }
 
-        // Create final state
-        QuizState finalState = new QuizState(
-                quizEntity.getId(),
-                currentState.currentQuestion(),
-                currentState.currentQuestionIndex(),
-                finalScores,
-                currentState.questionStartTime());
+    /**
+     * Finds the quizzes whose title contains a text, ignoring case, newest first.
+     *
+     * @param title the text, at least {@value #MIN_SEARCH_LENGTH} characters
+     * @param after the {@code nextCursor} of the previous page, or null for the first page
+     * @param size number of quizzes per page, at most {@value #MAX_PAGE_SIZE}
+     * @return the page
+     */
+    @Transactional(readOnly = true)
+    public QuizPage searchQuizzes(String title, String after, int size) {
+        if (title == null || title.isBlank()) {
+            throw new ValidationException("title", "Search text must not be empty");
+        }
+        if (title.strip().length() < MIN_SEARCH_LENGTH) {
+            throw new ValidationException(
+                    "title",
+                    "Search text must be at least " + MIN_SEARCH_LENGTH + " characters long");
+        }
+        QuizCursor cursor = decodeCursor(after);
+        Limit limit = pageLimit(size);
+        // Wildcards typed by the user match themselves
+        String pattern = "%"
+                + title.strip().replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_")
+                + "%";
+        List<QuizSummary> quizzes = cursor == null
+                ? quizRepository.findPageByTitle(pattern, limit)
+                : quizRepository.findPageByTitleAfter(
+                        pattern, cursor.createdAt(), cursor.id(), limit);
+        return toPage(quizzes, size);
+    }
 
-        // Update in-memory state
-        quizStates.put(quizId, finalState);
+    private static QuizCursor decodeCursor(String after) {
+        if (after == null || after.isBlank()) {
+            return null;
+        }
+        try {
+            return QuizCursor.decode(after);
+        } catch (IllegalArgumentException e) {
+            throw new ValidationException("after", "Not a cursor from a previous page");
+        }
+    }
 
-        return finalState;
+    private static Limit pageLimit(int size) {
+        if (size < 1 || size > MAX_PAGE_SIZE) {
+            throw new ValidationException(
+                    "size", "Page size must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        // One quiz more than asked for tells whether there is a next page
+        return Limit.of(size + 1);
     }
 
-    @Transactional(readOnly = true)
-    public List<Quiz> getAllQuizzes() {
-        return quizRepository.findAll().stream()
-                .map(QuizEntity::toDomainModel)
-                .collect(Collectors.toList());
+    private static QuizPage toPage(List<QuizSummary> quizzes, int size) {
+        if (quizzes.size() <= size) {
+            return new QuizPage(quizzes, null);
+        }
+        List<QuizSummary> page = List.copyOf(quizzes.subList(0, size));
+        return new QuizPage(page, QuizCursor.after(page.getLast()).encode());
     }
 
     @Transactional(readOnly = true)
     public Optional<Quiz> getQuizById(Long quizId) {
-        return quizRepository.findById(quizId).map(QuizEntity::toDomainModel);
+        Optional<QuizEntity> quiz = quizRepository.findWithQuestionsById(quizId);
+        quiz.ifPresent(entity -> questionRepository.fetchOptions(List.of(entity)));
+        return quiz.map(QuizEntity::toDomainModel);
     }
 }
@@ -0,0 +1,411 @@
+package com.thonbecker.endurance.service;
+
+import com.thonbecker.endurance.exception.InvalidStateException;
+import com.thonbecker.endurance.exception.ValidationException;
+import com.thonbecker.endurance.type.AnswerSubmission;
+import com.thonbecker.endurance.type.Question;
+import com.thonbecker.endurance.type.QuizCheckpoint;
+import com.thonbecker.endurance.type.QuizState;
+import com.thonbecker.endurance.type.QuizStateDelta;
+import com.thonbecker.endurance.type.QuizStateSnapshot;
+import com.thonbecker.endurance.type.QuizStatus;
+
+import java.util.*;
+
+/**
+ * Authoritative in-memory state of a running quiz.
+ *
+ * <p>Holds the roster, the ordered questions with their correct answers, the set of players that
+ * answered each question and the running scores, so that validation, scoring and advancement can
+ * be decided without touching the database. The database is only written to make the results
+ * durable.
+ *
+ * <p>The session also numbers the messages of the quiz's state stream and collects the score
+ * changes that the next {@link QuizStateDelta} has to carry.
+ *
+ * <p>After a restart, a session is rebuilt with {@link #restore} from its last {@link
+ * QuizCheckpoint}, the recorded answers and the durable scores.
+ */
+public class QuizSession {
+
+    /**
+     * Result of accepting an answer.
+     *
+     * @param question the answered question
+     * @param correct whether the selected option was the correct one
+     * @param points points awarded for the answer
+     * @param score the player's score after the answer
+     * @param questionComplete whether every player in the roster has now answered the current
+     *     question
+     */
+    public record AnswerOutcome(
+            Question question, boolean correct, int points, int score, boolean questionComplete) {}
+
+    private final Long quizId;
+    private final List<Question> questions;
+    private final Map<Long, Integer> questionIndexById;
+    private final List<Set<String>> answeredByQuestion;
+    private final Map<String, Integer> scores;
+    private final long timePerQuestionMillis;
+
+    private QuizStatus status;
+    private int currentQuestionIndex;
+    private long questionStartTime;
+    private long pausedAt;
+    private QuestionTimer.Timeout deadline;
+
+    // State stream bookkeeping
+    private final Map<String, Integer> changedScores = new LinkedHashMap<>();
+    private final Set<String> removedPlayers = new LinkedHashSet<>();
+    private long sequence;
+    private boolean changed;
+
+    public QuizSession(
+            Long quizId,
+            List<Question> questions,
+            Map<String, Integer> scores,
+            long timePerQuestionMillis,
+            long questionStartTime) {
+        if (questions.isEmpty()) {
+            throw new ValidationException("Quiz " + quizId + " has no questions");
+        }
+        this.quizId = quizId;
+        this.questions = List.copyOf(questions);
+        this.questionIndexById = new HashMap<>();
+        this.answeredByQuestion = new ArrayList<>(questions.size());
+        for (int i = 0; i < this.questions.size(); i++) {
+            questionIndexById.put(this.questions.get(i).id(), i);
+            answeredByQuestion.add(new HashSet<>());
+        }
+        this.scores = new LinkedHashMap<>(scores);
+        this.timePerQuestionMillis = timePerQuestionMillis;
+        this.status = QuizStatus.IN_PROGRESS;
+        this.currentQuestionIndex = 0;
+        this.questionStartTime = questionStartTime;
+    }
+
+    /**
+     * Rebuilds the session of a quiz that was running before a restart.
+     *
+     * <p>Answers recorded for a question after the checkpoint's show that the quiz moved on after
+     * the checkpoint was written; the session then continues at the last answered question, which
+     * gets its full time again.
+     *
+     * @param checkpoint the last checkpoint of the quiz
+     * @param questions the questions of the quiz, in order
+     * @param scores the durable scores of the players in the roster
+     * @param timePerQuestionMillis time limit of each question, or zero for none
+     * @param answered the IDs of the players that answered, by question ID
+     * @param now the time of the restore
+     * @return the session, at the position it had before the restart
+     */
+    public static QuizSession restore(
+            QuizCheckpoint checkpoint,
+            List<Question> questions,
+            Map<String, Integer> scores,
+            long timePerQuestionMillis,
+            Map<Long, Set<String>> answered,
+            long now) {
+        QuizSession session = new QuizSession(
+                checkpoint.quizId(),
+                questions,
+                scores,
+                timePerQuestionMillis,
+                checkpoint.questionStartTime());
+        synchronized (session) {
+            int lastAnswered = -1;
+            for (Map.Entry<Long, Set<String>> entry : answered.entrySet()) {
+                Integer index = session.questionIndexById.get(entry.getKey());
+                if (index != null) {
+                    session.answeredByQuestion.get(index).addAll(entry.getValue());
+                    lastAnswered = Math.max(lastAnswered, index);
+                }
+            }
+
+            session.status = checkpoint.status();
+            session.currentQuestionIndex =
+                    Math.min(checkpoint.currentQuestionIndex(), questions.size() - 1);
+            session.pausedAt = checkpoint.pausedAt();
+            session.sequence = checkpoint.sequence();
+            if (lastAnswered > session.currentQuestionIndex) {
+                session.currentQuestionIndex = lastAnswered;
+                session.questionStartTime =
+                        session.status == QuizStatus.WAITING ? session.pausedAt : now;
+            }
+        }
+        return session;
+    }
+
+    public Long getQuizId() {
+        return quizId;
+    }
+
+    public long getTimePerQuestionMillis() {
+        return timePerQuestionMillis;
+    }
+
+    public synchronized QuizStatus getStatus() {
+        return status;
+    }
+
+    public synchronized int getCurrentQuestionIndex() {
+        return currentQuestionIndex;
+    }
+
+    public synchronized Question getCurrentQuestion() {
+        return questions.get(currentQuestionIndex);
+    }
+
+    /** Rough size of the session in memory, counted as its questions plus its players. */
+    public synchronized int getWeight() {
+        return questions.size() + scores.size();
+    }
+
+    /** Whether the roster is not empty and everyone in it answered the current question. */
+    public synchronized boolean isCurrentQuestionAnswered() {
+        return !scores.isEmpty() && isCurrentQuestionComplete();
+    }
+
+    public synchronized boolean hasPlayer(String playerId) {
+        return scores.containsKey(playerId);
+    }
+
+    /**
+     * Validates and records an answer. Only the current question can be answered, and only until
+     * its time is up.
+     *
+     * @param submission the submitted answer
+     * @param now the time the answer arrived
+     * @return the outcome of the answer
+     * @throws InvalidStateException if the quiz is not in progress
+     * @throws ValidationException if the answer is not acceptable
+     */
+    public synchronized AnswerOutcome submit(AnswerSubmission submission, long now) {
+        if (status != QuizStatus.IN_PROGRESS) {
+            throw new InvalidStateException(status, QuizStatus.IN_PROGRESS);
+        }
+
+        Integer questionIndex = questionIndexById.get(submission.questionId());
+        if (questionIndex == null) {
+            throw new ValidationException("Question does not belong to the specified quiz");
+        }
+        if (questionIndex != currentQuestionIndex) {
+            throw new ValidationException("questionId", "Question is not the current question");
+        }
+        if (timePerQuestionMillis > 0 && now - questionStartTime >= timePerQuestionMillis) {
+            throw new ValidationException("Time is up for this question");
+        }
+
+        Integer score = scores.get(submission.playerId());
+        if (score == null) {
+            throw new ValidationException("Player is not part of the quiz");
+        }
+
+        Question question = questions.get(questionIndex);
+        if (submission.selectedOption() < 0
+                || submission.selectedOption() >= question.options().size()) {
+            throw new ValidationException("selectedOption", "invalid option index");
+        }
+
+        Set<String> answered = answeredByQuestion.get(questionIndex);
+        if (!answered.add(submission.playerId())) {
+            throw new ValidationException(
+                    "Player has already submitted an answer for this question");
+        }
+
+        boolean correct = question.correctOptionIndex() == submission.selectedOption();
+        int points = correct ? question.points() : 0;
+        int newScore = score + points;
+        scores.put(submission.playerId(), newScore);
+        if (points != 0) {
+            changedScores.put(submission.playerId(), newScore);
+        }
+        changed = true;
+
+        return new AnswerOutcome(question, correct, points, newScore, isCurrentQuestionComplete());
+    }
+
+    /**
+     * Takes back an answer that {@link #submit} accepted but that could not be made durable, so
+     * that the player can submit it again.
+     *
+     * @param submission the accepted answer
+     * @param outcome the outcome {@link #submit} returned for it
+     */
+    public synchronized void withdraw(AnswerSubmission submission, AnswerOutcome outcome) {
+        Integer questionIndex = questionIndexById.get(submission.questionId());
+        if (questionIndex == null
+                || !answeredByQuestion.get(questionIndex).remove(submission.playerId())) {
+            return;
+        }
+        Integer score = scores.get(submission.playerId());
+        if (score != null && outcome.points() != 0) {
+            scores.put(submission.playerId(), score - outcome.points());
+            changedScores.put(submission.playerId(), score - outcome.points());
+        }
+        changed = true;
+    }
+
+    /**
+     * Moves to the next question, or finishes the quiz if the current question was the last one.
+     *
+     * @param now the start time of the next question
+     * @return true if a next question was started, false if the quiz is now finished
+     */
+    public synchronized boolean advance(long now) {
+        if (currentQuestionIndex + 1 < questions.size()) {
+            currentQuestionIndex++;
+            questionStartTime = now;
+            return true;
+        }
+        status = QuizStatus.FINISHED;
+        return false;
+    }
+
+    /**
+     * Pauses the quiz and stops the clock of the current question.
+     *
+     * @param now the time of pausing
+     */
+    public synchronized void pause(long now) {
+        status = QuizStatus.WAITING;
+        pausedAt = now;
+        cancelDeadline();
+    }
+
+    /**
+     * Resumes a paused quiz. The current question keeps the time it had left when paused.
+     *
+     * @param now the time of resuming
+     * @return the time left for the current question
+     */
+    public synchronized long resume(long now) {
+        if (status != QuizStatus.WAITING) {
+            throw new InvalidStateException(status, QuizStatus.WAITING);
+        }
+        questionStartTime += now - pausedAt;
+        status = QuizStatus.IN_PROGRESS;
+        return getRemainingMillis(now);
+    }
+
+    public synchronized void finish() {
+        status = QuizStatus.FINISHED;
+        cancelDeadline();
+    }
+
+    /** Time left for the current question, never negative. */
+    public synchronized long getRemainingMillis(long now) {
+        return Math.max(0, timePerQuestionMillis - (now - questionStartTime));
+    }
+
+    /**
+     * Sets the deadline of the current question, cancelling the previous one.
+     *
+     * @param deadline the new deadline, or null for none
+     */
+    public synchronized void replaceDeadline(QuestionTimer.Timeout deadline) {
+        cancelDeadline();
+        this.deadline = deadline;
+    }
+
+    public synchronized void cancelDeadline() {
+        if (deadline != null) {
+            deadline.cancel();
+            deadline = null;
+        }
+    }
+
+    public synchronized void addPlayer(String playerId, int score) {
+        if (scores.putIfAbsent(playerId, score) == null) {
+            removedPlayers.remove(playerId);
+            changedScores.put(playerId, score);
+            changed = true;
+        }
+    }
+
+    public synchronized void removePlayer(String playerId) {
+        if (scores.remove(playerId) != null) {
+            changedScores.remove(playerId);
+            removedPlayers.add(playerId);
+            changed = true;
+        }
+    }
+
+    /** Whether anything changed since the previous message of the state stream. */
+    public synchronized boolean hasPendingChanges() {
+        return changed;
+    }
+
+    /**
+     * Takes the next message of the state stream as a full snapshot.
+     *
+     * @return the snapshot, with the next sequence number
+     */
+    public synchronized QuizStateSnapshot nextSnapshot() {
+        sequence++;
+        changedScores.clear();
+        removedPlayers.clear();
+        changed = false;
+        return snapshot();
+    }
+
+    /**
+     * Takes the next message of the state stream as a delta holding the changes since the
+     * previous message.
+     *
+     * @return the delta, with the next sequence number
+     */
+    public synchronized QuizStateDelta nextDelta() {
+        sequence++;
+        QuizStateDelta delta = new QuizStateDelta(
+                quizId,
+                sequence,
+                status,
+                currentQuestionIndex,
+                new LinkedHashMap<>(changedScores),
+                List.copyOf(removedPlayers),
+                answeredByQuestion.get(currentQuestionIndex).size());
+        changedScores.clear();
+        removedPlayers.clear();
+        changed = false;
+        return delta;
+    }
+
+    /**
+     * Builds a snapshot for a client that (re)subscribes, without advancing the stream. It may
+     * already contain changes that the next delta repeats; deltas carry absolute values, so
+     * applying them again is harmless.
+     *
+     * @return the snapshot, with the sequence number of the latest message
+     */
+    public synchronized QuizStateSnapshot snapshot() {
+        return new QuizStateSnapshot(
+                quizId,
+                sequence,
+                status,
+                questions.get(currentQuestionIndex),
+                currentQuestionIndex,
+                new LinkedHashMap<>(scores),
+                answeredByQuestion.get(currentQuestionIndex).size(),
+                questionStartTime);
+    }
+
+    /** Where the quiz stands now, for the next checkpoint. */
+    public synchronized QuizCheckpoint checkpoint() {
+        return new QuizCheckpoint(
+                quizId, status, currentQuestionIndex, questionStartTime, pausedAt, sequence);
+    }
+
+    public synchronized QuizState toState() {
+        return new QuizState(
+                quizId,
+                questions.get(currentQuestionIndex),
+                currentQuestionIndex,
+                new LinkedHashMap<>(scores),
+                questionStartTime);
+    }
+
+    private boolean isCurrentQuestionComplete() {
+        return answeredByQuestion.get(currentQuestionIndex).containsAll(scores.keySet());
+    }
+}
@@ -0,0 +1,189 @@
+package com.thonbecker.endurance.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.Ticker;
+import com.thonbecker.endurance.config.SessionStoreProperties;
+import com.thonbecker.endurance.repository.QuizCheckpointJdbcRepository;
+import com.thonbecker.endurance.type.QuizStatus;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * The quiz sessions in memory, bounded in total weight and dropped once unused for a while.
+ *
+ * <p>Finished quizzes go after {@link SessionStoreProperties#finishedTtl()}, abandoned running or
+ * paused ones after {@link SessionStoreProperties#idleTtl()}; under pressure, the least useful
+ * paused and finished sessions are evicted by Caffeine's W-TinyLFU policy. Running quizzes weigh
+ * nothing, so they stay until they finish or are abandoned: their commands may be changing them
+ * at any time, and answers still waiting to be written are not in the database to rebuild them
+ * from. A paused or abandoned quiz that is evicted first gets its checkpoint written, so that
+ * {@link QuizRecovery} rebuilds it where it stood, and its deadline cancelled. Size, hits,
+ * misses and evictions are exported as the {@code quiz-sessions} cache metrics.
+ *
+ * <p>A session rebuilt after its quiz left memory numbers its state messages from its checkpoint
+ * again, so whatever {@link BroadcastSender} kept for the quiz's state stream is forgotten as soon
+ * as the session is dropped; otherwise a message could go out with the bytes of an older one that
+ * had the same sequence number.
+ *
+ * <p>Weights are only taken when a session is put, so a session is put again whenever its status
+ * changes.
+ */
+@Slf4j
+@Component
+public class QuizSessionStore {
+    private final Cache<Long, QuizSession> sessions;
+    private final QuizCheckpointJdbcRepository checkpointRepository;
+    private final BroadcastSender broadcastSender;
+
+    @Autowired
+    public QuizSessionStore(
+            SessionStoreProperties properties,
+            QuizCheckpointJdbcRepository checkpointRepository,
+            BroadcastSender broadcastSender,
+            MeterRegistry meterRegistry) {
+        this(
+                properties,
+                checkpointRepository,
+                broadcastSender,
+                meterRegistry,
+                Ticker.systemTicker(),
+                ForkJoinPool.commonPool());
+    }
+
+    QuizSessionStore(
+            SessionStoreProperties properties,
+            QuizCheckpointJdbcRepository checkpointRepository,
+            BroadcastSender broadcastSender,
+            MeterRegistry meterRegistry,
+            Ticker ticker,
+            Executor executor) {
+        this.checkpointRepository = checkpointRepository;
+        this.broadcastSender = broadcastSender;
+        this.sessions = Caffeine.newBuilder()
+                .maximumWeight(properties.maximumWeight())
+                .weigher((Long quizId, QuizSession session) ->
+                        session.getStatus() == QuizStatus.IN_PROGRESS ? 0 : session.getWeight())
+                .expireAfter(new SessionExpiry(
+                        properties.finishedTtl().toNanos(), properties.idleTtl().toNanos()))
+                // Runs as part of the eviction, before the quiz can be rebuilt
+                .evictionListener((Long quizId, QuizSession session, RemovalCause cause) ->
+                        forgetBroadcasts(quizId))
+                .removalListener(this::onRemoval)
+                .ticker(ticker)
+                .executor(executor)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, sessions, "quiz-sessions");
+    }
+
+    /** Returns the session of a quiz, or null if it is not in memory. */
+    public QuizSession get(Long quizId) {
+        return sessions.getIfPresent(quizId);
+    }
+
+    /**
+     * Keeps a session unless the quiz already has one.
+     *
+     * @return the session already kept for the quiz, or null if the given one was kept
+     */
+    public QuizSession putIfAbsent(QuizSession session) {
+        return sessions.asMap().putIfAbsent(session.getQuizId(), session);
+    }
+
+    /**
+     * Keeps a session, replacing any other of the same quiz. Putting a session again after its
+     * status changed gives it the time to live of its new status.
+     */
+    public void put(QuizSession session) {
+        sessions.put(session.getQuizId(), session);
+    }
+
+    /** Returns the session of a quiz without counting as a use, or null if it is not in memory. */
+    public QuizSession peek(Long quizId) {
+        return sessions.policy().getIfPresentQuietly(quizId);
+    }
+
+    /**
+     * Drops the session of a quiz without writing its checkpoint, once another instance may have
+     * moved the quiz on. Its deadline is cancelled so that it cannot close a question.
+     */
+    public void invalidate(Long quizId) {
+        QuizSession session = sessions.asMap().remove(quizId);
+        if (session != null) {
+            session.cancelDeadline();
+            forgetBroadcasts(quizId);
+        }
+    }
+
+    /** The sessions in memory; looking through them does not keep them alive. */
+    public Collection<QuizSession> values() {
+        return Collections.unmodifiableCollection(sessions.asMap().values());
+    }
+
+    public long size() {
+        return sessions.estimatedSize();
+    }
+
+    // Called by Caffeine's maintenance, outside of the cache's locks
+    private void onRemoval(Long quizId, QuizSession session, RemovalCause cause) {
+        if (!cause.wasEvicted() || session == null) {
+            return;
+        }
+        // A session that is no longer kept must not close questions
+        session.cancelDeadline();
+        if (session.getStatus() == QuizStatus.FINISHED) {
+            return;
+        }
+        log.info("Evicted running quiz {} from memory ({})", quizId, cause);
+        try {
+            checkpointRepository.saveAll(List.of(session.checkpoint()));
+        } catch (RuntimeException e) {
+            // The quiz is rebuilt from its previous checkpoint and its answers instead
+            log.warn("Failed to write the checkpoint of evicted quiz {}", quizId, e);
+        }
+    }
+
+    private void forgetBroadcasts(Long quizId) {
+        broadcastSender.evict(QuizStateBroadcaster.destination(quizId));
+    }
+
+    private record SessionExpiry(long finishedNanos, long idleNanos)
+            implements Expiry<Long, QuizSession> {
+
+        @Override
+        public long expireAfterCreate(Long quizId, QuizSession session, long currentTime) {
+            return timeToLive(session);
+        }
+
+        @Override
+        public long expireAfterUpdate(
+                Long quizId, QuizSession session, long currentTime, long currentDuration) {
+            return timeToLive(session);
+        }
+
+        @Override
+        public long expireAfterRead(
+                Long quizId, QuizSession session, long currentTime, long currentDuration) {
+            return timeToLive(session);
+        }
+
+        private long timeToLive(QuizSession session) {
+            return session.getStatus() == QuizStatus.FINISHED ? finishedNanos : idleNanos;
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.thonbecker.endurance.service;
+
+import com.thonbecker.endurance.config.BroadcastProperties;
+import com.thonbecker.endurance.exception.MailboxFullException;
+import com.thonbecker.endurance.type.QuizStateMessage;
+import com.thonbecker.endurance.type.QuizStateSnapshot;
+import com.thonbecker.endurance.type.QuizStatus;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends quiz state to {@code /topic/quiz/state/{quizId}}.
+ *
+ * <p>Snapshots go out immediately. Smaller changes are coalesced: the first change of a quiz opens
+ * a window, and when it closes everything that changed in the meantime goes out as a single delta
+ * that holds the latest values. A burst of answers at the end of a question thus costs one message
+ * per window instead of one per answer.
+ */
+@Slf4j
+@Component
+public class QuizStateBroadcaster {
+
+    private record Window(long openedAt, int changes) {}
+
+    private final QuizService quizService;
+    private final QuizMailboxExecutor quizExecutor;
+    private final QuestionTimer timer;
+    private final BroadcastSender broadcastSender;
+    private final BroadcastProperties properties;
+    private final Map<Long, Window> openWindows = new ConcurrentHashMap<>();
+
+    private final Counter coalescedCounter;
+    private final Timer delayTimer;
+
+    public QuizStateBroadcaster(
+            QuizService quizService,
+            QuizMailboxExecutor quizExecutor,
+            QuestionTimer timer,
+            BroadcastSender broadcastSender,
+            BroadcastProperties properties,
+            MeterRegistry meterRegistry) {
+        this.quizService = quizService;
+        this.quizExecutor = quizExecutor;
+        this.timer = timer;
+        this.broadcastSender = broadcastSender;
+        this.properties = properties;
+        this.coalescedCounter = Counter.builder("endurance.broadcast.coalesced")
+                .description("State changes merged into another message instead of sent alone")
+                .register(meterRegistry);
+        this.delayTimer = Timer.builder("endurance.broadcast.coalesce.delay")
+                .description("Time changes waited in a coalescing window")
+                .register(meterRegistry);
+    }
+
+    /** The destination of a quiz's state stream. */
+    static String destination(Long quizId) {
+        return "/topic/quiz/state/" + quizId;
+    }
+
+    /**
+     * Sends a message right away. Used for snapshots and status changes, which must not wait.
+     *
+     * @param message the message
+     */
+    public void publish(QuizStateMessage message) {
+        // The sequence number identifies the content, so a repeated message is not serialized again
+        String destination = destination(message.quizId());
+        // A snapshot holds everything earlier messages of the stream did
+        broadcastSender.send(
+                destination, message, message.sequence(), message instanceof QuizStateSnapshot);
+        if (message.status() == QuizStatus.FINISHED) {
+            broadcastSender.evict(destination);
+        }
+    }
+
+    /**
+     * Reports that a quiz has changes that are not broadcast yet. They go out as one delta when the
+     * coalescing window closes, unless a snapshot has covered them by then.
+     *
+     * @param quizId the quiz
+     */
+    public void publishChanges(Long quizId) {
+        if (properties.coalesceWindow().isZero()) {
+            quizService.takeDelta(quizId).ifPresent(this::publish);
+            return;
+        }
+
+        Window window = openWindows.merge(
+                quizId,
+                new Window(System.nanoTime(), 1),
+                (open, added) -> new Window(open.openedAt(), open.changes() + 1));
+        if (window.changes() == 1) {
+            timer.schedule(
+                    properties.coalesceWindow().toNanos(),
+                    TimeUnit.NANOSECONDS,
+                    () -> closeWindow(quizId));
+        }
+    }
+
+    private void closeWindow(Long quizId) {
+        // Runs on the timer thread, the delta itself is taken in the quiz's mailbox
+        try {
+            quizExecutor.execute(quizId, () -> flush(quizId));
+        } catch (MailboxFullException e) {
+            // The changes stay in the session and go out with the next message
+            openWindows.remove(quizId);
+            log.warn("Could not flush state changes of quiz {}: {}", quizId, e.getMessage());
+        }
+    }
+
+    private void flush(Long quizId) {
+        Window window = openWindows.remove(quizId);
+        if (window == null) {
+            return;
+        }
+        delayTimer.record(System.nanoTime() - window.openedAt(), TimeUnit.NANOSECONDS);
+        boolean sent = quizService
+                .takeDelta(quizId)
+                .map(delta -> {
+                    publish(delta);
+                    return true;
+                })
+                .orElse(false);
+        // Changes that did not get a message of their own; all of them if a snapshot covered them
+        coalescedCounter.increment(sent ? window.changes() - 1 : window.changes());
+    }
+}
@@ -0,0 +1,10 @@
+package com.thonbecker.endurance.service;
+
+import java.util.List;
+
+/**
+ * Published when this instance took over running quizzes whose owner went away.
+ *
+ * @param quizIds the quizzes, now owned by this instance
+ */
+public record QuizzesClaimedEvent(List<Long> quizIds) {}
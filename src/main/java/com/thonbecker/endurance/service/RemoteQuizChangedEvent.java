@@ -0,0 +1,9 @@
+package com.thonbecker.endurance.service;
+
+/**
+ * Published when another instance reports a {@link QuizChangedEvent} over the {@link
+ * QuizEventBus}.
+ *
+ * @param quizId the quiz
+ */
+public record RemoteQuizChangedEvent(Long quizId) {}
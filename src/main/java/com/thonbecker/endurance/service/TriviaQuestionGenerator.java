@@ -14,7 +14,6 @@ import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -28,7 +27,6 @@ public class TriviaQuestionGenerator {
     private static final String EXPLANATION_MARKER = "EXPLANATION:";
     private static final Pattern OPTION_PATTERN = Pattern.compile("^([A-D]): (.+)$");
     private static final int DEFAULT_POINTS = 1; // Default points value for questions
-    private final AtomicLong idCounter = new AtomicLong(1);
 
     public TriviaQuestionGenerator(ChatModel chatModel) {
 
@@ -151,7 +149,8 @@ public class TriviaQuestionGenerator {
         String correctAnswer = extractSection(block, CORRECT_MARKER, EXPLANATION_MARKER);
         int correctIndex = correctAnswer.trim().charAt(0) - 'A';
 
-        return new Question(generateQuestionId(), questionText, options, correctIndex, points);
+        // The ID is assigned from the question sequence when the quiz is stored
+        return new Question(null, questionText, options, correctIndex, points);
     }
 
     /**
@@ -195,13 +194,4 @@ public class TriviaQuestionGenerator {
 
         return options;
     }
-
-    /**
-     * Generates a unique ID for a question
-     *
-     * @return A unique ID
-     */
-    private Long generateQuestionId() {
-        return idCounter.getAndIncrement();
-    }
 }
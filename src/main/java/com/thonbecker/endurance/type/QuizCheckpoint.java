@@ -0,0 +1,20 @@
+package com.thonbecker.endurance.type;
+
+/**
+ * Where a running quiz stood when it was last checkpointed. Scores and answers are durable on
+ * their own, so a checkpoint only holds the position of the quiz and its state stream.
+ *
+ * @param quizId the quiz
+ * @param status IN_PROGRESS, WAITING while paused, or FINISHED
+ * @param currentQuestionIndex index of the current question
+ * @param questionStartTime when the current question started, in epoch milliseconds
+ * @param pausedAt when the quiz was paused, in epoch milliseconds; only meaningful while WAITING
+ * @param sequence sequence number of the latest message of the state stream
+ */
+public record QuizCheckpoint(
+        Long quizId,
+        QuizStatus status,
+        int currentQuestionIndex,
+        long questionStartTime,
+        long pausedAt,
+        long sequence) {}
@@ -0,0 +1,44 @@
+package com.thonbecker.endurance.type;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Position of a quiz in the newest-first order of quiz pages; the next page holds the quizzes
+ * that sort after it.
+ *
+ * <p>Clients get it as an opaque string from {@link QuizPage#nextCursor()}.
+ */
+public record QuizCursor(LocalDateTime createdAt, Long id) {
+
+    public static QuizCursor after(QuizSummary quiz) {
+        return new QuizCursor(quiz.createdAt(), quiz.id());
+    }
+
+    public String encode() {
+        String position = createdAt + "|" + id;
+        return Base64.getUrlEncoder()
+                .withoutPadding()
+                .encodeToString(position.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Reads a cursor handed out by {@link #encode()}.
+     *
+     * @throws IllegalArgumentException if the cursor was not handed out by {@link #encode()}
+     */
+    public static QuizCursor decode(String cursor) {
+        try {
+            String position =
+                    new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = position.indexOf('|');
+            return new QuizCursor(
+                    LocalDateTime.parse(position.substring(0, separator)),
+                    Long.parseLong(position.substring(separator + 1)));
+        } catch (DateTimeParseException | IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor, e);
+        }
+    }
+}
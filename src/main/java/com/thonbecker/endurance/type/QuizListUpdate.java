@@ -0,0 +1,29 @@
+package com.thonbecker.endurance.type;
+
+/**
+ * A change to the list of open quizzes.
+ *
+ * @param type whether the quiz was added to, updated in or removed from the list
+ * @param quizId the quiz
+ * @param quiz the quiz as it is now, or {@code null} if it was removed
+ */
+public record QuizListUpdate(Type type, Long quizId, QuizSummary quiz) {
+
+    public enum Type {
+        ADDED,
+        UPDATED,
+        REMOVED
+    }
+
+    public static QuizListUpdate added(QuizSummary quiz) {
+        return new QuizListUpdate(Type.ADDED, quiz.id(), quiz);
+    }
+
+    public static QuizListUpdate updated(QuizSummary quiz) {
+        return new QuizListUpdate(Type.UPDATED, quiz.id(), quiz);
+    }
+
+    public static QuizListUpdate removed(Long quizId) {
+        return new QuizListUpdate(Type.REMOVED, quizId, null);
+    }
+}
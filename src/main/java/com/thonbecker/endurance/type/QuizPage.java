@@ -0,0 +1,11 @@
+package com.thonbecker.endurance.type;
+
+import java.util.List;
+
+/**
+ * One page of quizzes, newest first.
+ *
+ * @param quizzes the quizzes on this page
+ * @param nextCursor where the next page starts, or null if this is the last page
+ */
+public record QuizPage(List<QuizSummary> quizzes, String nextCursor) {}
@@ -0,0 +1,21 @@
+package com.thonbecker.endurance.type;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Changes to a quiz's state since the previous message of its stream.
+ *
+ * @param changedScores new scores of the players whose score changed or who joined
+ * @param removedPlayers players who left the quiz
+ * @param answeredCount number of players that answered the current question
+ */
+public record QuizStateDelta(
+        Long quizId,
+        long sequence,
+        QuizStatus status,
+        int currentQuestionIndex,
+        Map<String, Integer> changedScores,
+        List<String> removedPlayers,
+        int answeredCount)
+        implements QuizStateMessage {}
@@ -0,0 +1,28 @@
+package com.thonbecker.endurance.type;
+
+import com.fasterxml.jackson.annotation.JsonSubTypes;
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+
+/**
+ * Message on a quiz's state stream, {@code /topic/quiz/state/{quizId}}.
+ *
+ * <p>Every message carries a sequence number that grows by one per message of the quiz. A client
+ * applies a {@link QuizStateDelta} only on top of the message with the preceding sequence number;
+ * on a gap it subscribes to {@code /app/quiz/state/{quizId}} to get a fresh
+ * {@link QuizStateSnapshot} and drops buffered messages it already covers.
+ */
+@JsonTypeInfo(use = JsonTypeInfo.Id.NAME, property = "type")
+@JsonSubTypes({
+    @JsonSubTypes.Type(value = QuizStateSnapshot.class, name = "snapshot"),
+    @JsonSubTypes.Type(value = QuizStateDelta.class, name = "delta")
+})
+public sealed interface QuizStateMessage permits QuizStateSnapshot, QuizStateDelta {
+
+    Long quizId();
+
+    long sequence();
+
+    QuizStatus status();
+
+    int currentQuestionIndex();
+}
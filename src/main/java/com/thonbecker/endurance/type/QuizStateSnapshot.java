@@ -0,0 +1,18 @@
+package com.thonbecker.endurance.type;
+
+import java.util.Map;
+
+/**
+ * Complete state of a quiz. Sent when a question starts or ends and to clients that
+ * (re)subscribe.
+ */
+public record QuizStateSnapshot(
+        Long quizId,
+        long sequence,
+        QuizStatus status,
+        Question currentQuestion,
+        int currentQuestionIndex,
+        Map<String, Integer> playerScores,
+        int answeredCount,
+        long questionStartTime)
+        implements QuizStateMessage {}
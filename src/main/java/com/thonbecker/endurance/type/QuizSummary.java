@@ -0,0 +1,18 @@
+package com.thonbecker.endurance.type;
+
+import java.time.LocalDateTime;
+
+/**
+ * What the lobby and quiz browsing show of a quiz.
+ *
+ * @param questionCount number of questions in the quiz
+ * @param playerCount number of players that joined the quiz
+ * @param createdAt when the quiz was created
+ */
+public record QuizSummary(
+        Long id,
+        String title,
+        QuizStatus status,
+        long questionCount,
+        long playerCount,
+        LocalDateTime createdAt) {}
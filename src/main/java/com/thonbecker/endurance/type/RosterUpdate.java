@@ -0,0 +1,30 @@
+package com.thonbecker.endurance.type;
+
+/**
+ * A change to the players of a quiz.
+ *
+ * @param type whether the player joined, left or changed readiness
+ * @param quizId the quiz
+ * @param playerId the player
+ * @param player the player as they are now, or {@code null} if they left
+ */
+public record RosterUpdate(Type type, Long quizId, String playerId, Player player) {
+
+    public enum Type {
+        JOINED,
+        LEFT,
+        READY
+    }
+
+    public static RosterUpdate joined(Long quizId, Player player) {
+        return new RosterUpdate(Type.JOINED, quizId, player.id(), player);
+    }
+
+    public static RosterUpdate ready(Long quizId, Player player) {
+        return new RosterUpdate(Type.READY, quizId, player.id(), player);
+    }
+
+    public static RosterUpdate left(Long quizId, String playerId) {
+        return new RosterUpdate(Type.LEFT, quizId, playerId, null);
+    }
+}
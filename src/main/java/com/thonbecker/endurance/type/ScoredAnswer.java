@@ -0,0 +1,3 @@
+package com.thonbecker.endurance.type;
+
+public record ScoredAnswer(AnswerSubmission submission, int points) {}
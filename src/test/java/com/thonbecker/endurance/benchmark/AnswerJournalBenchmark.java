@@ -0,0 +1,109 @@
+package com.thonbecker.endurance.benchmark;
+
+import com.thonbecker.endurance.config.AnswerPersistenceProperties;
+import com.thonbecker.endurance.config.AnswerPersistenceProperties.DurabilityMode;
+import com.thonbecker.endurance.repository.AnswerSubmissionJdbcRepository;
+import com.thonbecker.endurance.service.AnswerSubmissionWriter;
+import com.thonbecker.endurance.type.AnswerSubmission;
+import com.thonbecker.endurance.type.ScoredAnswer;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Answer throughput of one quiz in {@link DurabilityMode#JOURNAL} mode. All answers of a quiz
+ * are written from its mailbox, one at a time, so a single thread drives the writer: waiting for
+ * the sync after every answer, or once for a burst of answers as a coalesced delta does.
+ *
+ * <p>Run with {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.thonbecker.endurance.benchmark.AnswerJournalBenchmark}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(1)
+public class AnswerJournalBenchmark {
+    private static final long QUIZ_ID = 7_000_000_000L;
+    private static final int BURST = 64;
+    private static final AnswerSubmission SUBMISSION =
+            new AnswerSubmission("player-123", QUIZ_ID, 7_000_000_123L, 2, 1_700_000_000_000L);
+
+    private Path directory;
+    private AnswerSubmissionWriter writer;
+
+    @Setup(Level.Iteration)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("answer-journal");
+        // Shipping is not measured; the database takes every batch at once
+        AnswerSubmissionJdbcRepository repository = new AnswerSubmissionJdbcRepository(null) {
+            @Override
+            public int insertIfAbsent(List<ScoredAnswer> answers) {
+                return answers.size();
+            }
+        };
+        writer = new AnswerSubmissionWriter(
+                repository,
+                new AnswerPersistenceProperties(
+                        DurabilityMode.JOURNAL,
+                        10_000,
+                        500,
+                        Duration.ofMillis(50),
+                        Duration.ofSeconds(2),
+                        3,
+                        Duration.ofMillis(100),
+                        new AnswerPersistenceProperties.Journal(
+                                directory.toString(), DataSize.ofMegabytes(64), Duration.ZERO)),
+                new SimpleMeterRegistry());
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() throws IOException, InterruptedException {
+        writer.shutdown();
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path path : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    /** Every answer waits for its own sync before the next one is taken. */
+    @Benchmark
+    public void answerAndSyncEach() {
+        writer.write(SUBMISSION, 100);
+        writer.awaitJournaled(QUIZ_ID);
+    }
+
+    /** A burst of answers is appended, then the quiz waits once before its delta goes out. */
+    @Benchmark
+    @OperationsPerInvocation(BURST)
+    public void answerBurstAndSyncOnce() {
+        for (int i = 0; i < BURST; i++) {
+            writer.write(SUBMISSION, 100);
+        }
+        writer.awaitJournaled(QUIZ_ID);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                        .include(AnswerJournalBenchmark.class.getSimpleName())
+                        .build())
+                .run();
+    }
+}
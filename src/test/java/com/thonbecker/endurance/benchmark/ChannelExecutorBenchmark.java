@@ -0,0 +1,97 @@
+package com.thonbecker.endurance.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Time to handle a burst of 100 inbound messages whose handlers block, as handlers waiting on
+ * JDBC or Bedrock do, on the platform pool from {@code spring.task.execution.pool} (core 8, max
+ * 16, queue 100) and on a virtual thread per message.
+ *
+ * <p>Run with {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.thonbecker.endurance.benchmark.ChannelExecutorBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ChannelExecutorBenchmark {
+    private static final int BURST = 100;
+
+    @Param({"1", "10"})
+    public int blockMillis;
+
+    private ThreadPoolTaskExecutor platformPool;
+    private ExecutorSubscribableChannel platformChannel;
+    private ExecutorSubscribableChannel virtualChannel;
+    private final AtomicReference<CountDownLatch> handled = new AtomicReference<>();
+
+    @Setup
+    public void setUp() {
+        platformPool = new ThreadPoolTaskExecutor();
+        platformPool.setCorePoolSize(8);
+        platformPool.setMaxPoolSize(16);
+        platformPool.setQueueCapacity(100);
+        platformPool.setThreadNamePrefix("websocket-task-");
+        platformPool.initialize();
+
+        platformChannel = new ExecutorSubscribableChannel(platformPool);
+        platformChannel.subscribe(message -> handle());
+        virtualChannel =
+                new ExecutorSubscribableChannel(new VirtualThreadTaskExecutor("ws-inbound-"));
+        virtualChannel.subscribe(message -> handle());
+    }
+
+    @TearDown
+    public void tearDown() {
+        platformPool.shutdown();
+    }
+
+    @Benchmark
+    public void platformThreads() throws InterruptedException {
+        burst(platformChannel);
+    }
+
+    @Benchmark
+    public void virtualThreads() throws InterruptedException {
+        burst(virtualChannel);
+    }
+
+    private void burst(ExecutorSubscribableChannel channel) throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(BURST);
+        handled.set(latch);
+        for (int i = 0; i < BURST; i++) {
+            channel.send(MessageBuilder.withPayload(i).build());
+        }
+        latch.await();
+    }
+
+    // Stands in for a handler waiting on the database
+    private void handle() {
+        try {
+            Thread.sleep(blockMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        handled.get().countDown();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                        .include(ChannelExecutorBenchmark.class.getSimpleName())
+                        .build())
+                .run();
+    }
+}
@@ -0,0 +1,145 @@
+package com.thonbecker.endurance.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.thonbecker.endurance.service.BroadcastSender;
+import com.thonbecker.endurance.type.Question;
+import com.thonbecker.endurance.type.QuizStateSnapshot;
+import com.thonbecker.endurance.type.QuizStatus;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.broker.SimpleBrokerMessageHandler;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompEncoder;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+import org.springframework.messaging.support.MessageBuilder;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares broadcasting a quiz snapshot through {@link SimpMessagingTemplate#convertAndSend}
+ * with sending it pre-serialized through {@link BroadcastSender}, on a simple broker with 10, 100
+ * and 1000 subscribers. Each delivery is STOMP-encoded, as the WebSocket session would.
+ *
+ * <p>Run with {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.thonbecker.endurance.benchmark.StateFanOutBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StateFanOutBenchmark {
+    private static final String DESTINATION = "/topic/quiz/state/1";
+
+    @Param({"10", "100", "1000"})
+    public int subscribers;
+
+    private SimpleBrokerMessageHandler broker;
+    private SimpMessagingTemplate messagingTemplate;
+    private BroadcastSender broadcastSender;
+    private QuizStateSnapshot snapshot;
+    private long version;
+    private long deliveredBytes;
+
+    @Setup
+    public void setUp() {
+        ExecutorSubscribableChannel clientInbound = new ExecutorSubscribableChannel();
+        ExecutorSubscribableChannel clientOutbound = new ExecutorSubscribableChannel();
+        ExecutorSubscribableChannel brokerChannel = new ExecutorSubscribableChannel();
+
+        StompEncoder encoder = new StompEncoder();
+        clientOutbound.subscribe(message -> {
+            StompHeaderAccessor frame = StompHeaderAccessor.create(StompCommand.MESSAGE);
+            frame.setDestination(SimpMessageHeaderAccessor.getDestination(message.getHeaders()));
+            frame.setSubscriptionId(
+                    SimpMessageHeaderAccessor.getSubscriptionId(message.getHeaders()));
+            frame.setMessageId(String.valueOf(message.getHeaders().getId()));
+            deliveredBytes +=
+                    encoder.encode(frame.getMessageHeaders(), (byte[]) message.getPayload()).length;
+        });
+
+        broker = new SimpleBrokerMessageHandler(
+                clientInbound, clientOutbound, brokerChannel, List.of("/topic"));
+        // Subscribes itself to the inbound and broker channels
+        broker.start();
+        for (int i = 0; i < subscribers; i++) {
+            SimpMessageHeaderAccessor subscribe =
+                    SimpMessageHeaderAccessor.create(SimpMessageType.SUBSCRIBE);
+            subscribe.setSessionId("session-" + i);
+            subscribe.setSubscriptionId("sub-0");
+            subscribe.setDestination(DESTINATION);
+            broker.handleMessage(
+                    MessageBuilder.createMessage(new byte[0], subscribe.getMessageHeaders()));
+        }
+
+        ObjectMapper objectMapper = new ObjectMapper();
+        MappingJackson2MessageConverter converter = new MappingJackson2MessageConverter();
+        converter.setObjectMapper(objectMapper);
+        messagingTemplate = new SimpMessagingTemplate(brokerChannel);
+        messagingTemplate.setMessageConverter(converter);
+        broadcastSender = new BroadcastSender(
+                messagingTemplate, objectMapper, Optional.empty(), new SimpleMeterRegistry());
+
+        // A 500 player room
+        Map<String, Integer> scores = new LinkedHashMap<>();
+        for (int i = 0; i < 500; i++) {
+            scores.put("player-" + i, i * 10);
+        }
+        Question question = new Question(
+                1L,
+                "Which sauce is Gordon Ramsay's signature?",
+                List.of("A", "B", "C", "D"),
+                2,
+                10);
+        snapshot =
+                new QuizStateSnapshot(1L, 1L, QuizStatus.IN_PROGRESS, question, 0, scores, 250, 0L);
+    }
+
+    @TearDown
+    public void tearDown() {
+        broker.stop();
+    }
+
+    /** Current path: every send runs Jackson. */
+    @Benchmark
+    public long convertAndSend() {
+        messagingTemplate.convertAndSend(DESTINATION, snapshot);
+        return deliveredBytes;
+    }
+
+    /** Pre-serialized, with a new version every time: one serialization per send. */
+    @Benchmark
+    public long preSerializedNewVersion() {
+        broadcastSender.send(DESTINATION, snapshot, ++version);
+        return deliveredBytes;
+    }
+
+    /** Pre-serialized, repeating the same version: no serialization at all. */
+    @Benchmark
+    public long preSerializedSameVersion() {
+        broadcastSender.send(DESTINATION, snapshot, 0L);
+        return deliveredBytes;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                        .include(StateFanOutBenchmark.class.getSimpleName())
+                        .build())
+                .run();
+    }
+}
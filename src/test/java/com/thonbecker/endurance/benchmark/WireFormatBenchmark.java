@@ -0,0 +1,108 @@
+package com.thonbecker.endurance.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.thonbecker.endurance.type.AnswerSubmission;
+import com.thonbecker.endurance.type.Question;
+import com.thonbecker.endurance.type.QuizStateSnapshot;
+import com.thonbecker.endurance.type.QuizStatus;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encode and decode throughput of JSON and CBOR for a quiz snapshot with 10 and 500 players and
+ * for an answer submission. Payload sizes are printed by {@code
+ * WireFormatInterceptorTest.cborIsSmallerThanJsonForTypicalPayloads}.
+ *
+ * <p>Run with {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.thonbecker.endurance.benchmark.WireFormatBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WireFormatBenchmark {
+
+    @Param({"10", "500"})
+    public int players;
+
+    private final ObjectMapper jsonMapper = new ObjectMapper();
+    private final CBORMapper cborMapper = new CBORMapper();
+
+    private QuizStateSnapshot snapshot;
+    private AnswerSubmission submission;
+    private byte[] snapshotJson;
+    private byte[] snapshotCbor;
+    private byte[] submissionJson;
+    private byte[] submissionCbor;
+
+    @Setup
+    public void setUp() throws IOException {
+        Map<String, Integer> scores = new LinkedHashMap<>();
+        for (int i = 0; i < players; i++) {
+            scores.put("player-" + i, i * 10);
+        }
+        Question question = new Question(
+                1L,
+                "Which sauce is Gordon Ramsay's signature?",
+                List.of("A", "B", "C", "D"),
+                2,
+                10);
+        snapshot = new QuizStateSnapshot(
+                1L, 7L, QuizStatus.IN_PROGRESS, question, 0, scores, players / 2, 1623456789000L);
+        submission = new AnswerSubmission("3f2b8c1e-5d7a-4e8b-9c1d-2a6f0e4b7d93", 1L, 2L, 3, 1234L);
+
+        snapshotJson = jsonMapper.writeValueAsBytes(snapshot);
+        snapshotCbor = cborMapper.writeValueAsBytes(snapshot);
+        submissionJson = jsonMapper.writeValueAsBytes(submission);
+        submissionCbor = cborMapper.writeValueAsBytes(submission);
+    }
+
+    @Benchmark
+    public byte[] encodeSnapshotJson() throws IOException {
+        return jsonMapper.writeValueAsBytes(snapshot);
+    }
+
+    @Benchmark
+    public byte[] encodeSnapshotCbor() throws IOException {
+        return cborMapper.writeValueAsBytes(snapshot);
+    }
+
+    @Benchmark
+    public QuizStateSnapshot decodeSnapshotJson() throws IOException {
+        return jsonMapper.readValue(snapshotJson, QuizStateSnapshot.class);
+    }
+
+    @Benchmark
+    public QuizStateSnapshot decodeSnapshotCbor() throws IOException {
+        return cborMapper.readValue(snapshotCbor, QuizStateSnapshot.class);
+    }
+
+    @Benchmark
+    public AnswerSubmission decodeSubmissionJson() throws IOException {
+        return jsonMapper.readValue(submissionJson, AnswerSubmission.class);
+    }
+
+    @Benchmark
+    public AnswerSubmission decodeSubmissionCbor() throws IOException {
+        return cborMapper.readValue(submissionCbor, AnswerSubmission.class);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                        .include(WireFormatBenchmark.class.getSimpleName())
+                        .build())
+                .run();
+    }
+}
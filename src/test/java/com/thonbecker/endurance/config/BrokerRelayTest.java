@@ -0,0 +1,148 @@
+package com.thonbecker.endurance.config;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.thonbecker.endurance.service.BroadcastSender;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import org.apache.activemq.artemis.core.server.embedded.EmbeddedActiveMQ;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.stomp.StompBrokerRelayMessageHandler;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+import org.springframework.messaging.support.MessageBuilder;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/** Two relay nodes sharing the embedded broker, as two instances behind a load balancer would. */
+public class BrokerRelayTest {
+
+    private EmbeddedActiveMQ broker;
+    private Node publisher;
+    private Node subscriber;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        BrokerProperties properties = new BrokerProperties(
+                BrokerProperties.BrokerMode.EMBEDDED,
+                "localhost",
+                freePort(),
+                null,
+                "guest",
+                "guest",
+                "guest",
+                "guest",
+                Duration.ofSeconds(10));
+        broker = new EmbeddedBrokerConfig().embeddedBroker(properties);
+        publisher = new Node(properties);
+        subscriber = new Node(properties);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        publisher.stop();
+        subscriber.stop();
+        broker.stop();
+    }
+
+    @Test
+    void stateBroadcastOnOneNodeReachesSubscribersOfAnother() throws Exception {
+        // Arrange
+        subscriber.connect("session-1");
+        subscriber.subscribe("session-1", "/topic/quiz/state/1");
+        BroadcastSender sender = new BroadcastSender(
+                new SimpMessagingTemplate(publisher.brokerChannel),
+                new ObjectMapper(),
+                Optional.empty(),
+                new SimpleMeterRegistry());
+
+        // Act
+        sender.send("/topic/quiz/state/1", List.of("player1"), 1L);
+
+        // Assert
+        Message<?> message = subscriber.await(StompCommand.MESSAGE);
+        assertEquals(
+                "[\"player1\"]", new String((byte[]) message.getPayload(), StandardCharsets.UTF_8));
+        assertEquals("session-1", StompHeaderAccessor.wrap(message).getSessionId());
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static final class Node {
+        private final ExecutorSubscribableChannel brokerChannel = new ExecutorSubscribableChannel();
+        private final BlockingQueue<Message<?>> delivered = new LinkedBlockingQueue<>();
+        private final StompBrokerRelayMessageHandler relay;
+
+        private Node(BrokerProperties properties) throws InterruptedException {
+            ExecutorSubscribableChannel clientInbound = new ExecutorSubscribableChannel();
+            ExecutorSubscribableChannel clientOutbound = new ExecutorSubscribableChannel();
+            clientOutbound.subscribe(delivered::add);
+            relay = new StompBrokerRelayMessageHandler(
+                    clientInbound, clientOutbound, brokerChannel, List.of("/topic"));
+            relay.setRelayHost(properties.relayHost());
+            relay.setRelayPort(properties.relayPort());
+            relay.start();
+
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (!relay.isBrokerAvailable() && System.nanoTime() < deadline) {
+                Thread.sleep(20);
+            }
+            assertTrue(relay.isBrokerAvailable(), "relay did not connect to the broker");
+        }
+
+        private void connect(String sessionId) throws InterruptedException {
+            StompHeaderAccessor connect = StompHeaderAccessor.create(StompCommand.CONNECT);
+            connect.setSessionId(sessionId);
+            connect.setAcceptVersion("1.2");
+            connect.setHeartbeat(0, 0);
+            relay.handleMessage(
+                    MessageBuilder.createMessage(new byte[0], connect.getMessageHeaders()));
+            await(StompCommand.CONNECTED);
+        }
+
+        private void subscribe(String sessionId, String destination) throws InterruptedException {
+            StompHeaderAccessor subscribe = StompHeaderAccessor.create(StompCommand.SUBSCRIBE);
+            subscribe.setSessionId(sessionId);
+            subscribe.setSubscriptionId("sub-0");
+            subscribe.setDestination(destination);
+            subscribe.setReceipt("subscribed");
+            relay.handleMessage(
+                    MessageBuilder.createMessage(new byte[0], subscribe.getMessageHeaders()));
+            await(StompCommand.RECEIPT);
+        }
+
+        private Message<?> await(StompCommand command) throws InterruptedException {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (System.nanoTime() < deadline) {
+                Message<?> message = delivered.poll(100, TimeUnit.MILLISECONDS);
+                if (message != null && StompHeaderAccessor.wrap(message).getCommand() == command) {
+                    return message;
+                }
+            }
+            return fail("no " + command + " frame received");
+        }
+
+        private void stop() {
+            relay.stop();
+        }
+    }
+}
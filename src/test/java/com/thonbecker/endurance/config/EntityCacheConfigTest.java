@@ -0,0 +1,113 @@
+package com.thonbecker.endurance.config;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.thonbecker.endurance.entity.QuestionEntity;
+import com.thonbecker.endurance.entity.QuestionOptionEntity;
+import com.thonbecker.endurance.entity.QuizEntity;
+import com.thonbecker.endurance.repository.QuestionRepository;
+import com.thonbecker.endurance.repository.QuizRepository;
+import com.thonbecker.endurance.type.QuizStatus;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import jakarta.persistence.EntityManagerFactory;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+@DataJpaTest(
+        properties = {
+            "spring.liquibase.enabled=false",
+            "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+            "spring.jpa.hibernate.ddl-auto=create-drop",
+            "spring.jpa.properties.hibernate.hbm2ddl.create_namespaces=true",
+            "spring.jpa.properties.hibernate.generate_statistics=true"
+        })
+@Import(EntityCacheConfigTest.CacheTestConfig.class)
+// The cache is filled on commit, so every step runs in its own transaction
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class EntityCacheConfigTest {
+
+    @TestConfiguration
+    @Import(EntityCacheConfig.class)
+    @EnableConfigurationProperties(EntityCacheProperties.class)
+    static class CacheTestConfig {
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+
+    @Autowired
+    private QuizRepository quizRepository;
+
+    @Autowired
+    private QuestionRepository questionRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    void questionOptions_ComeFromCacheOnceLoaded() {
+        // Arrange
+        QuizEntity quiz = new QuizEntity(7L, "Cached Quiz", 30, QuizStatus.CREATED);
+        QuestionEntity question = new QuestionEntity(null, "Question", 0, 10, 0);
+        for (String option : List.of("A", "B", "C")) {
+            question.addOption(
+                    new QuestionOptionEntity(option, question.getOptions().size()));
+        }
+        quiz.addQuestion(question);
+        transactionTemplate.executeWithoutResult(status -> quizRepository.save(quiz));
+        // The first start of the quiz loads the options and caches them
+        transactionTemplate.executeWithoutResult(status -> loadOptions(7L));
+
+        Statistics statistics =
+                entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        // Act
+        List<String> options = transactionTemplate.execute(status -> loadOptions(7L));
+
+        // Assert
+        assertEquals(List.of("A", "B", "C"), options);
+        // The quiz and its questions; options and their entities are cache hits
+        assertEquals(2, statistics.getPrepareStatementCount());
+        FunctionCounter hits = meterRegistry
+                .get("cache.gets")
+                .tag("cache", QuestionEntity.class.getName() + ".options")
+                .tag("result", "hit")
+                .functionCounter();
+        assertTrue(hits.count() >= 1);
+    }
+
+    // Reads the options the way startQuiz does
+    private List<String> loadOptions(Long quizId) {
+        QuizEntity quiz = quizRepository.findById(quizId).orElseThrow();
+        return questionRepository
+                .findByQuizOrderByQuestionOrderAsc(quiz)
+                .getFirst()
+                .toDomainModel()
+                .options();
+    }
+}
@@ -0,0 +1,78 @@
+package com.thonbecker.endurance.config;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import com.thonbecker.endurance.controller.InternalQuizController;
+import com.thonbecker.endurance.controller.QuizController;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.time.Duration;
+
+public class InternalApiConfigTest {
+
+    private final QuizController quizController = mock(QuizController.class);
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        InternalApiConfig config = new InternalApiConfig(properties("shared-secret"));
+        mockMvc = MockMvcBuilders.standaloneSetup(new InternalQuizController(quizController))
+                .addMappedInterceptors(new String[] {"/internal/**"}, config.secretInterceptor())
+                .build();
+    }
+
+    @Test
+    void forwardedCommandWithSecretIsAccepted() throws Exception {
+        // Act & Assert
+        mockMvc.perform(post("/internal/quiz/start")
+                        .header(OwnershipProperties.SECRET_HEADER, "shared-secret")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("42"))
+                .andExpect(status().isAccepted());
+        verify(quizController).startQuiz(42L);
+    }
+
+    @Test
+    void commandWithoutSecretIsRefused() throws Exception {
+        // Act & Assert
+        mockMvc.perform(post("/internal/quiz/start")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("42"))
+                .andExpect(status().isForbidden());
+        verifyNoInteractions(quizController);
+    }
+
+    @Test
+    void commandWithWrongSecretIsRefused() throws Exception {
+        // Act & Assert
+        mockMvc.perform(post("/internal/quiz/end")
+                        .header(OwnershipProperties.SECRET_HEADER, "guessed")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("42"))
+                .andExpect(status().isForbidden());
+        verifyNoInteractions(quizController);
+    }
+
+    @Test
+    void ownershipWithoutSecretDoesNotStart() {
+        // Act & Assert
+        assertThrows(IllegalStateException.class, () -> new InternalApiConfig(properties(" ")));
+    }
+
+    private static OwnershipProperties properties(String secret) {
+        return new OwnershipProperties(
+                true,
+                "http://localhost:8080",
+                Duration.ofSeconds(5),
+                Duration.ofSeconds(5),
+                secret);
+    }
+}
@@ -0,0 +1,114 @@
+package com.thonbecker.endurance.config;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.SessionLimitExceededException;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+public class LatestWinsSessionDecoratorTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final Counter evicted = meterRegistry.counter("endurance.outbound.evicted");
+    private final Counter dropped = meterRegistry.counter("endurance.outbound.dropped");
+    private final ExecutorService drainExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final List<String> sent = new CopyOnWriteArrayList<>();
+    private final CountDownLatch firstSendStarted = new CountDownLatch(1);
+    private final CountDownLatch network = new CountDownLatch(1);
+    private WebSocketSession session;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        // A client whose first frame hangs until the network is released
+        session = mock(WebSocketSession.class);
+        when(session.getId()).thenReturn("session-1");
+        doAnswer(invocation -> {
+                    firstSendStarted.countDown();
+                    network.await(5, TimeUnit.SECONDS);
+                    sent.add(invocation
+                            .getArgument(0, WebSocketMessage.class)
+                            .getPayload()
+                            .toString());
+                    return null;
+                })
+                .when(session)
+                .sendMessage(any());
+    }
+
+    @AfterEach
+    void tearDown() {
+        drainExecutor.shutdownNow();
+    }
+
+    @Test
+    void snapshotReplacesEverythingQueuedForItsSubscription() throws Exception {
+        // Arrange
+        LatestWinsSessionDecorator decorated = decorator(1_000_000);
+        decorated.sendMessage(frame("sub-0", true, "snapshot-1"));
+        assertTrue(firstSendStarted.await(5, TimeUnit.SECONDS));
+
+        // Act
+        decorated.sendMessage(frame("sub-0", false, "delta-2"));
+        decorated.sendMessage(frame("sub-1", false, "roster-1"));
+        decorated.sendMessage(frame("sub-0", false, "delta-3"));
+        decorated.sendMessage(frame("sub-0", true, "snapshot-4"));
+        decorated.sendMessage(frame("sub-0", false, "delta-5"));
+        network.countDown();
+
+        // Assert
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (sent.size() < 4 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(
+                List.of("snapshot-1", "roster-1", "snapshot-4", "delta-5"),
+                sent.stream()
+                        .map(frame ->
+                                frame.substring(frame.indexOf("\n\n") + 2, frame.indexOf('\0')))
+                        .toList());
+        assertEquals(2, evicted.count());
+    }
+
+    @Test
+    void sessionThatFallsBehindIsDropped() throws Exception {
+        // Arrange
+        LatestWinsSessionDecorator decorated = decorator(150);
+        decorated.sendMessage(frame("sub-0", false, "delta-1"));
+        assertTrue(firstSendStarted.await(5, TimeUnit.SECONDS));
+        decorated.sendMessage(frame("sub-0", false, "delta-2"));
+
+        // Act & Assert
+        assertThrows(
+                SessionLimitExceededException.class,
+                () -> decorated.sendMessage(frame("sub-0", false, "delta-3")));
+        assertEquals(1, dropped.count());
+        network.countDown();
+    }
+
+    private LatestWinsSessionDecorator decorator(int bufferSizeLimit) {
+        return new LatestWinsSessionDecorator(
+                session, 10_000, bufferSizeLimit, drainExecutor, evicted, dropped);
+    }
+
+    private static TextMessage frame(String subscription, boolean latestWins, String body) {
+        return new TextMessage("MESSAGE\ndestination:/topic/quiz/state/1\nsubscription:"
+                + subscription + "\nmessage-id:1\n" + (latestWins ? "latest-wins:true\n" : "")
+                + "content-length:" + body.length() + "\n\n" + body + "\0");
+    }
+}
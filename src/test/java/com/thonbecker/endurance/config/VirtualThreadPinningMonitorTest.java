@@ -0,0 +1,38 @@
+package com.thonbecker.endurance.config;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+public class VirtualThreadPinningMonitorTest {
+
+    @Test
+    void isJpa_MatchesFramesFromTheJdbcAndJpaStack() {
+        // Arrange
+        List<String> jdbc = List.of(
+                "java.lang.Object.wait0",
+                "org.postgresql.core.v3.QueryExecutorImpl.execute",
+                "com.thonbecker.endurance.service.QuizService.startQuiz");
+        List<String> hibernate = List.of(
+                "org.hibernate.internal.SessionImpl.find",
+                "com.thonbecker.endurance.service.QuizService.addPlayer");
+
+        // Act & Assert
+        assertTrue(VirtualThreadPinningMonitor.isJpa(jdbc));
+        assertTrue(VirtualThreadPinningMonitor.isJpa(hibernate));
+    }
+
+    @Test
+    void isJpa_IgnoresOtherFrames() {
+        // Arrange
+        List<String> frames = List.of(
+                "java.lang.Thread.sleep",
+                "com.thonbecker.endurance.service.TriviaQuestionGenerator.generateRamseyTrivia");
+
+        // Act & Assert
+        assertFalse(VirtualThreadPinningMonitor.isJpa(frames));
+        assertFalse(VirtualThreadPinningMonitor.isJpa(List.of()));
+    }
+}
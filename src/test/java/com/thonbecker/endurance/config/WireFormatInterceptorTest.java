@@ -0,0 +1,144 @@
+package com.thonbecker.endurance.config;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.thonbecker.endurance.type.AnswerSubmission;
+import com.thonbecker.endurance.type.Question;
+import com.thonbecker.endurance.type.QuizStateSnapshot;
+import com.thonbecker.endurance.type.QuizStatus;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.MimeTypeUtils;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class WireFormatInterceptorTest {
+
+    private final ObjectMapper jsonMapper = new ObjectMapper();
+    private final WireFormatInterceptor interceptor =
+            new WireFormatInterceptor(jsonMapper, new SimpleMeterRegistry());
+
+    @Test
+    void broadcastIsTranscodedOnceForAllCborSessions() throws Exception {
+        // Arrange
+        connect("session-1", true, true);
+        connect("session-2", true, true);
+        byte[] json = jsonMapper.writeValueAsBytes(snapshot(10));
+
+        // Act
+        Message<?> first = interceptor.preSend(broadcast("session-1", json), null);
+        Message<?> second = interceptor.preSend(broadcast("session-2", json), null);
+
+        // Assert
+        assertSame(first.getPayload(), second.getPayload());
+        assertEquals(
+                jsonMapper.readTree(json), new CBORMapper().readTree((byte[]) first.getPayload()));
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(first);
+        assertEquals(MimeTypeUtils.APPLICATION_OCTET_STREAM, accessor.getContentType());
+        assertEquals(
+                "cbor", accessor.getFirstNativeHeader(WireFormatInterceptor.PAYLOAD_FORMAT_HEADER));
+    }
+
+    @Test
+    void sessionsWithoutBinaryFramesKeepJson() throws Exception {
+        // Arrange
+        connect("sockjs-session", true, false);
+        connect("json-session", false, true);
+        byte[] json = jsonMapper.writeValueAsBytes(snapshot(10));
+
+        // Act & Assert
+        assertSame(
+                json,
+                interceptor.preSend(broadcast("sockjs-session", json), null).getPayload());
+        assertSame(
+                json, interceptor.preSend(broadcast("json-session", json), null).getPayload());
+    }
+
+    @Test
+    void cborConverterReadsInboundAnswers() throws Exception {
+        // Arrange
+        AnswerSubmission submission = new AnswerSubmission("player1", 1L, 2L, 3, 1234L);
+        Map<String, Object> headers = new HashMap<>();
+        headers.put(MessageHeaders.CONTENT_TYPE, CborMessageConverter.APPLICATION_CBOR);
+        Message<byte[]> message = MessageBuilder.createMessage(
+                new CBORMapper().writeValueAsBytes(submission), new MessageHeaders(headers));
+
+        // Act
+        Object result = new CborMessageConverter().fromMessage(message, AnswerSubmission.class);
+
+        // Assert
+        assertEquals(submission, result);
+    }
+
+    @Test
+    void cborIsSmallerThanJsonForTypicalPayloads() throws Exception {
+        CBORMapper cborMapper = new CBORMapper();
+        for (Object payload : List.of(
+                snapshot(10),
+                snapshot(500),
+                new AnswerSubmission("3f2b8c1e-5d7a-4e8b-9c1d-2a6f0e4b7d93", 1L, 2L, 3, 1234L))) {
+            int json = jsonMapper.writeValueAsBytes(payload).length;
+            int cbor = cborMapper.writeValueAsBytes(payload).length;
+            System.out.printf(
+                    "%s: json=%d bytes, cbor=%d bytes (%.0f%%)%n",
+                    payload.getClass().getSimpleName(), json, cbor, 100.0 * cbor / json);
+            assertTrue(cbor < json);
+        }
+    }
+
+    private void connect(String sessionId, boolean wantsCbor, boolean binaryCapable) {
+        StompHeaderAccessor connect = StompHeaderAccessor.create(StompCommand.CONNECT);
+        connect.setSessionId(sessionId);
+        if (wantsCbor) {
+            connect.setNativeHeader(WireFormatInterceptor.ACCEPT_HEADER, "application/cbor");
+        }
+        Map<String, Object> attributes = new HashMap<>();
+        if (binaryCapable) {
+            attributes.put(WireFormatInterceptor.BINARY_CAPABLE, true);
+        }
+        connect.setSessionAttributes(attributes);
+        interceptor
+                .inbound()
+                .preSend(
+                        MessageBuilder.createMessage(new byte[0], connect.getMessageHeaders()),
+                        null);
+    }
+
+    private static Message<byte[]> broadcast(String sessionId, byte[] payload) {
+        SimpMessageHeaderAccessor accessor =
+                SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setSessionId(sessionId);
+        accessor.setDestination("/topic/quiz/state/1");
+        accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        return MessageBuilder.createMessage(payload, accessor.getMessageHeaders());
+    }
+
+    private static QuizStateSnapshot snapshot(int players) {
+        Map<String, Integer> scores = new LinkedHashMap<>();
+        for (int i = 0; i < players; i++) {
+            scores.put("player-" + i, i * 10);
+        }
+        Question question = new Question(
+                1L,
+                "Which sauce is Gordon Ramsay's signature?",
+                List.of("A", "B", "C", "D"),
+                2,
+                10);
+        return new QuizStateSnapshot(
+                1L, 7L, QuizStatus.IN_PROGRESS, question, 0, scores, players / 2, 1623456789000L);
+    }
+}
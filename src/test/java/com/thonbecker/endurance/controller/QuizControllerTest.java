@@ -3,7 +3,15 @@ package com.thonbecker.endurance.controller;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
+import com.thonbecker.endurance.exception.OwnerUnavailableException;
+import com.thonbecker.endurance.exception.QuizOwnedElsewhereException;
+import com.thonbecker.endurance.service.BroadcastSender;
+import com.thonbecker.endurance.service.QuizForwarder;
+import com.thonbecker.endurance.service.QuizListProjection;
+import com.thonbecker.endurance.service.QuizMailboxExecutor;
+import com.thonbecker.endurance.service.QuizOwnership;
 import com.thonbecker.endurance.service.QuizService;
+import com.thonbecker.endurance.service.QuizStateBroadcaster;
 import com.thonbecker.endurance.type.*;
 
 import org.junit.jupiter.api.BeforeEach;
@@ -12,9 +20,11 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 
+import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
 
 @ExtendWith(MockitoExtension.class)
 public class QuizControllerTest {
@@ -23,13 +33,28 @@ public class QuizControllerTest {
     private QuizService quizService;
 
     @Mock
-    private SimpMessagingTemplate messagingTemplate;
+    private QuizMailboxExecutor quizExecutor;
+
+    @Mock
+    private QuizStateBroadcaster stateBroadcaster;
+
+    @Mock
+    private BroadcastSender broadcastSender;
+
+    @Mock
+    private QuizListProjection quizListProjection;
+
+    @Mock
+    private QuizOwnership quizOwnership;
+
+    @Mock
+    private QuizForwarder quizForwarder;
 
     @InjectMocks
     private QuizController quizController;
 
     private Quiz quiz;
-    private QuizState quizState;
+    private QuizStateSnapshot quizState;
     private Player player;
     private AnswerSubmission answerSubmission;
 
@@ -43,11 +68,35 @@ public class QuizControllerTest {
 
         Map<String, Integer> playerScores = new HashMap<>();
         playerScores.put("player1", 0);
-        quizState = new QuizState(1L, question, 0, playerScores, System.currentTimeMillis());
+        quizState = new QuizStateSnapshot(
+                1L,
+                1L,
+                QuizStatus.IN_PROGRESS,
+                question,
+                0,
+                playerScores,
+                0,
+                System.currentTimeMillis());
 
         player = new Player("player1", "Test Player", 0, true);
 
         answerSubmission = new AnswerSubmission("player1", 1L, 1L, 0, System.currentTimeMillis());
+
+        // A single instance runs every quiz
+        lenient().when(quizOwnership.isLocal(anyLong())).thenReturn(true);
+        lenient().when(quizOwnership.owns(anyLong())).thenReturn(true);
+
+        // Run mailbox commands inline
+        lenient()
+                .when(quizExecutor.execute(anyLong(), any(Runnable.class)))
+                .thenAnswer(invocation -> {
+                    invocation.getArgument(1, Runnable.class).run();
+                    return CompletableFuture.completedFuture(null);
+                });
+        lenient()
+                .when(quizExecutor.submit(anyLong(), any(Callable.class)))
+                .thenAnswer(invocation -> CompletableFuture.completedFuture(
+                        invocation.getArgument(1, Callable.class).call()));
     }
 
     @Test
@@ -74,7 +123,7 @@ public class QuizControllerTest {
 
         // Assert
         verify(quizService).startQuiz(1L);
-        verify(messagingTemplate).convertAndSend("/topic/quiz/state/1", quizState);
+        verify(stateBroadcaster).publish(quizState);
     }
 
     @Test
@@ -87,7 +136,7 @@ public class QuizControllerTest {
 
         // Assert
         verify(quizService).pauseQuiz(1L);
-        verify(messagingTemplate).convertAndSend("/topic/quiz/state/1", quizState);
+        verify(stateBroadcaster).publish(quizState);
     }
 
     @Test
@@ -100,20 +149,190 @@ public class QuizControllerTest {
 
         // Assert
         verify(quizService).endQuiz(1L);
-        verify(messagingTemplate).convertAndSend("/topic/quiz/state/1", quizState);
+        verify(stateBroadcaster).publish(quizState);
     }
 
     @Test
     void submitAnswer_Success() {
         // Arrange
-        when(quizService.processAnswer(answerSubmission)).thenReturn(quizState);
+        when(quizService.processAnswer(answerSubmission)).thenReturn(Optional.of(quizState));
+
+        // Act
+        quizController.submitAnswer(answerSubmission);
+
+        // Assert
+        verify(quizService).processAnswer(answerSubmission);
+        verify(stateBroadcaster).publish(quizState);
+    }
+
+    @Test
+    void submitAnswer_CoalescesChangesWithinQuestion() {
+        // Arrange
+        when(quizService.processAnswer(answerSubmission)).thenReturn(Optional.empty());
+
+        // Act
+        quizController.submitAnswer(answerSubmission);
+
+        // Assert
+        verify(stateBroadcaster).publishChanges(answerSubmission.quizId());
+        verify(stateBroadcaster, never()).publish(any());
+    }
+
+    @Test
+    void submitAnswer_ForwardsToOwningInstance() {
+        // Arrange
+        when(quizOwnership.isLocal(1L)).thenReturn(false);
 
         // Act
         quizController.submitAnswer(answerSubmission);
 
         // Assert
+        verify(quizExecutor).execute(eq(1L), any(Runnable.class));
+        verify(quizForwarder).forward(1L, "submit", answerSubmission);
+        verifyNoInteractions(quizService, stateBroadcaster);
+    }
+
+    @Test
+    void submitAnswer_RunsLocallyWhenUnreachableOwnerIsGone() {
+        // Arrange
+        when(quizOwnership.isLocal(1L)).thenReturn(false, true);
+        doThrow(new OwnerUnavailableException(1L, "Connection refused"))
+                .when(quizForwarder)
+                .forward(1L, "submit", answerSubmission);
+        when(quizService.processAnswer(answerSubmission)).thenReturn(Optional.empty());
+
+        // Act
+        quizController.submitAnswer(answerSubmission);
+
+        // Assert
+        verify(quizForwarder).forward(1L, "submit", answerSubmission);
         verify(quizService).processAnswer(answerSubmission);
-        verify(messagingTemplate)
-                .convertAndSend("/topic/quiz/state/" + answerSubmission.quizId(), quizState);
+    }
+
+    @Test
+    void submitAnswer_ForwardsOnceMoreWhenOwnerIsUnreachable() {
+        // Arrange
+        when(quizOwnership.isLocal(1L)).thenReturn(false);
+        doThrow(new OwnerUnavailableException(1L, "Connection refused"))
+                .doNothing()
+                .when(quizForwarder)
+                .forward(1L, "submit", answerSubmission);
+
+        // Act
+        quizController.submitAnswer(answerSubmission);
+
+        // Assert
+        verify(quizForwarder, times(2)).forward(1L, "submit", answerSubmission);
+        verifyNoInteractions(quizService);
+    }
+
+    @Test
+    void submitAnswer_ForwardsWhenQuizWasTakenElsewhereAfterLookup() {
+        // Arrange
+        when(quizOwnership.isLocal(1L)).thenReturn(true, false);
+        when(quizService.processAnswer(answerSubmission))
+                .thenThrow(new QuizOwnedElsewhereException(1L));
+
+        // Act
+        quizController.submitAnswer(answerSubmission);
+
+        // Assert
+        verify(quizForwarder).forward(1L, "submit", answerSubmission);
+    }
+
+    @Test
+    void submitAnswer_LooksUpOwnerInQuizMailbox() {
+        // Arrange
+        when(quizExecutor.execute(anyLong(), any(Runnable.class)))
+                .thenReturn(CompletableFuture.completedFuture(null));
+
+        // Act
+        quizController.submitAnswer(answerSubmission);
+
+        // Assert
+        verify(quizExecutor).execute(eq(1L), any(Runnable.class));
+        verifyNoInteractions(quizOwnership, quizForwarder, quizService);
+    }
+
+    @Test
+    void getQuizState_ReturnsSnapshot() {
+        // Arrange
+        when(quizService.getSnapshot(1L)).thenReturn(quizState);
+
+        // Act
+        QuizStateSnapshot result = quizController.getQuizState(1L);
+
+        // Assert
+        assertEquals(quizState, result);
+        verifyNoInteractions(quizExecutor);
+    }
+
+    @Test
+    void getAvailableQuizzes_ReturnsCachedSummaries() {
+        // Arrange
+        List<QuizSummary> summaries = List.of(
+                new QuizSummary(1L, "Test Quiz", QuizStatus.CREATED, 1, 0, LocalDateTime.now()));
+        when(quizListProjection.getOpenQuizzes()).thenReturn(summaries);
+
+        // Act
+        List<QuizSummary> result = quizController.getAvailableQuizzes();
+
+        // Assert
+        assertEquals(summaries, result);
+        verifyNoInteractions(quizService);
+    }
+
+    @Test
+    void browseQuizzes_ReturnsPageFromService() {
+        // Arrange
+        QuizPage page = new QuizPage(List.of(), null);
+        when(quizService.browseQuizzes(QuizStatus.FINISHED, "cursor", 20)).thenReturn(page);
+
+        // Act
+        QuizPage result = quizController.browseQuizzes(QuizStatus.FINISHED, "cursor", 20);
+
+        // Assert
+        assertEquals(page, result);
+        verifyNoInteractions(quizExecutor);
+    }
+
+    @Test
+    void joinQuiz_RunsInQuizMailbox() {
+        // Arrange
+        RosterUpdate joined = RosterUpdate.joined(1L, player);
+        when(quizService.addPlayer(player, 1L)).thenReturn(Optional.of(joined));
+
+        // Act
+        quizController.joinQuiz(new JoinQuizRequest(player, 1L));
+
+        // Assert
+        verify(quizExecutor).execute(eq(1L), any(Runnable.class));
+        verify(broadcastSender).send("/topic/quiz/1/players", joined);
+        verify(stateBroadcaster).publishChanges(1L);
+    }
+
+    @Test
+    void leaveQuiz_SendsNothingForPlayerNotInQuiz() {
+        // Arrange
+        when(quizService.removePlayer("player2", 1L)).thenReturn(Optional.empty());
+
+        // Act
+        quizController.leaveQuiz(new LeaveQuizRequest("player2", 1L));
+
+        // Assert
+        verifyNoInteractions(broadcastSender);
+    }
+
+    @Test
+    void getRoster_ReturnsFullRoster() {
+        // Arrange
+        when(quizService.getRoster(1L)).thenReturn(List.of(player));
+
+        // Act
+        List<Player> result = quizController.getRoster(1L);
+
+        // Assert
+        assertEquals(List.of(player), result);
+        verifyNoInteractions(broadcastSender);
     }
 }
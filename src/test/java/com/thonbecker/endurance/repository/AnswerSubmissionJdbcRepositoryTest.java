@@ -0,0 +1,214 @@
+package com.thonbecker.endurance.repository;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.thonbecker.endurance.type.AnswerSubmission;
+import com.thonbecker.endurance.type.ScoredAnswer;
+
+import liquibase.integration.spring.SpringLiquibase;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.w3c.dom.Document;
+
+import java.io.InputStream;
+import java.sql.Connection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+/**
+ * Runs against the Postgres from docker-compose, or the one in {@code DB_URL}, and is skipped
+ * when there is none.
+ */
+public class AnswerSubmissionJdbcRepositoryTest {
+    private static final String PLAYER_ID = "answer-repository-test";
+
+    private static DriverManagerDataSource dataSource;
+
+    private JdbcTemplate jdbcTemplate;
+    private AnswerSubmissionJdbcRepository repository;
+    private long quizId;
+    private long firstQuestionId;
+    private long secondQuestionId;
+
+    @BeforeAll
+    static void migrate() throws Exception {
+        dataSource = new DriverManagerDataSource(
+                Optional.ofNullable(System.getenv("DB_URL"))
+                        .orElse("jdbc:postgresql://localhost:5432/dbmaster"),
+                Optional.ofNullable(System.getenv("DB_USERNAME")).orElse("dbmasteruser"),
+                Optional.ofNullable(System.getenv("DB_PASSWORD")).orElse(""));
+        try (Connection connection = dataSource.getConnection()) {
+            Assumptions.assumeTrue(connection.isValid(1));
+        } catch (Exception e) {
+            Assumptions.abort("No Postgres available: " + e.getMessage());
+        }
+
+        SpringLiquibase liquibase = new SpringLiquibase();
+        liquibase.setDataSource(dataSource);
+        liquibase.setChangeLog("classpath:db/changelog/db.changelog-master.xml");
+        liquibase.setDatabaseChangeLogTable("endurance_changelog");
+        liquibase.setDatabaseChangeLogLockTable("endurance_changelog_lock");
+        liquibase.setResourceLoader(new DefaultResourceLoader());
+        liquibase.afterPropertiesSet();
+    }
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        repository = new AnswerSubmissionJdbcRepository(jdbcTemplate);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        quizId = random.nextLong(1L << 40, 1L << 50);
+        firstQuestionId = random.nextLong(1L << 40, 1L << 50);
+        secondQuestionId = firstQuestionId + 1;
+
+        jdbcTemplate.update(
+                "INSERT INTO endurance.quiz (id, title, time_per_question_in_seconds, status)"
+                        + " VALUES (?, 'Answers', 30, 'IN_PROGRESS')",
+                quizId);
+        for (long questionId : List.of(firstQuestionId, secondQuestionId)) {
+            jdbcTemplate.update(
+                    "INSERT INTO endurance.question"
+                            + " (id, quiz_id, question_text, correct_option_index, points,"
+                            + " question_order) VALUES (?, ?, 'Question', 0, 10, ?)",
+                    questionId,
+                    quizId,
+                    (int) (questionId - firstQuestionId));
+        }
+        jdbcTemplate.update(
+                "INSERT INTO endurance.player (id, name) VALUES (?, 'Ada') ON CONFLICT DO NOTHING",
+                PLAYER_ID);
+        jdbcTemplate.update(
+                "INSERT INTO endurance.quiz_player (quiz_id, player_id) VALUES (?, ?)",
+                quizId,
+                PLAYER_ID);
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("DELETE FROM endurance.answer_submission WHERE quiz_id = ?", quizId);
+        jdbcTemplate.update("DELETE FROM endurance.quiz_player WHERE quiz_id = ?", quizId);
+        jdbcTemplate.update("DELETE FROM endurance.question WHERE quiz_id = ?", quizId);
+        jdbcTemplate.update("DELETE FROM endurance.quiz WHERE id = ?", quizId);
+    }
+
+    @Test
+    void sameAnswerTwiceInOneBatchIsRecordedAndScoredOnce() {
+        // Arrange
+        ScoredAnswer answer = answer(firstQuestionId, 10);
+
+        // Act
+        int inserted = repository.insertIfAbsent(List.of(answer, answer));
+
+        // Assert
+        assertEquals(1, inserted);
+        assertEquals(1, answerRows());
+        assertEquals(10, score());
+    }
+
+    @Test
+    void sameAnswerInALaterBatchIsNotScoredAgain() {
+        // Arrange
+        ScoredAnswer answer = answer(firstQuestionId, 10);
+        repository.insertIfAbsent(List.of(answer));
+
+        // Act
+        int inserted = repository.insertIfAbsent(List.of(answer));
+
+        // Assert
+        assertEquals(0, inserted);
+        assertEquals(1, answerRows());
+        assertEquals(10, score());
+    }
+
+    @Test
+    void onlyNewAnswersOfAReplayedBatchAreScored() {
+        // Arrange
+        ScoredAnswer first = answer(firstQuestionId, 10);
+        repository.insertIfAbsent(List.of(first));
+
+        // Act
+        int inserted = repository.insertIfAbsent(List.of(first, answer(secondQuestionId, 5)));
+
+        // Assert
+        assertEquals(1, inserted);
+        assertEquals(2, answerRows());
+        assertEquals(15, score());
+    }
+
+    @Test
+    void migrationKeepsFirstOfDuplicateAnswers() throws Exception {
+        // Arrange
+        String dedupe = changeSetSql("db/changelog/changes/002-answer-submission-unique.xml");
+        TransactionTemplate transaction =
+                new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+
+        // Act & Assert: the answers from before the constraint existed, undone afterwards
+        transaction.executeWithoutResult(status -> {
+            jdbcTemplate.execute("ALTER TABLE endurance.answer_submission"
+                    + " DROP CONSTRAINT uk_answer_quiz_question_player");
+            for (int option = 0; option < 3; option++) {
+                jdbcTemplate.update(
+                        "INSERT INTO endurance.answer_submission"
+                                + " (player_id, quiz_id, question_id, selected_option,"
+                                + " submission_time) VALUES (?, ?, ?, ?, 1000)",
+                        PLAYER_ID,
+                        quizId,
+                        firstQuestionId,
+                        option);
+            }
+
+            jdbcTemplate.execute(dedupe);
+
+            assertEquals(
+                    List.of(0),
+                    jdbcTemplate.queryForList(
+                            "SELECT selected_option FROM endurance.answer_submission"
+                                    + " WHERE quiz_id = ?",
+                            Integer.class,
+                            quizId));
+            status.setRollbackOnly();
+        });
+    }
+
+    private ScoredAnswer answer(long questionId, int points) {
+        return new ScoredAnswer(
+                new AnswerSubmission(PLAYER_ID, quizId, questionId, 0, 1_000L), points);
+    }
+
+    private int answerRows() {
+        return jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM endurance.answer_submission WHERE quiz_id = ?",
+                Integer.class,
+                quizId);
+    }
+
+    private int score() {
+        return jdbcTemplate.queryForObject(
+                "SELECT score FROM endurance.quiz_player WHERE quiz_id = ? AND player_id = ?",
+                Integer.class,
+                quizId,
+                PLAYER_ID);
+    }
+
+    // The SQL of a changeset as Liquibase runs it
+    private static String changeSetSql(String path) throws Exception {
+        try (InputStream in = new ClassPathResource(path).getInputStream()) {
+            Document changelog =
+                    DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(in);
+            return changelog.getElementsByTagName("sql").item(0).getTextContent();
+        }
+    }
+}
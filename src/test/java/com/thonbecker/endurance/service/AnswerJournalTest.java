@@ -0,0 +1,135 @@
+package com.thonbecker.endurance.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.thonbecker.endurance.type.AnswerSubmission;
+import com.thonbecker.endurance.type.ScoredAnswer;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+public class AnswerJournalTest {
+    private static final int RECORDS_PER_SEGMENT = 4;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void answersAreReadBackAfterReopening() {
+        // Arrange
+        List<ScoredAnswer> answers = answers(6);
+        try (AnswerJournal journal = open()) {
+            answers.forEach(answer -> journal.awaitSynced(journal.append(answer)));
+        }
+
+        // Act
+        try (AnswerJournal reopened = open()) {
+            List<ScoredAnswer> read = reopened.read(1, 100);
+            long next = reopened.append(answer(7));
+
+            // Assert
+            assertEquals(answers, read);
+            assertEquals(7, next);
+        }
+    }
+
+    @Test
+    void tornRecordEndsTheJournal() throws IOException {
+        // Arrange
+        try (AnswerJournal journal = open()) {
+            answers(3).forEach(answer -> journal.awaitSynced(journal.append(answer)));
+        }
+        // A crash left the last record half written
+        try (FileChannel segment =
+                FileChannel.open(segments().getFirst(), StandardOpenOption.WRITE)) {
+            segment.write(ByteBuffer.wrap(new byte[] {42}), 2L * AnswerJournal.RECORD_SIZE + 50);
+        }
+
+        // Act
+        try (AnswerJournal reopened = open()) {
+            List<ScoredAnswer> read = reopened.read(1, 100);
+            long next = reopened.append(answer(4));
+
+            // Assert
+            assertEquals(answers(2), read);
+            assertEquals(3, next);
+        }
+    }
+
+    @Test
+    void shippedSegmentsAreDeleted() throws IOException {
+        // Arrange
+        try (AnswerJournal journal = open()) {
+            answers(10).forEach(answer -> journal.awaitSynced(journal.append(answer)));
+            assertEquals(3, segments().size());
+
+            // Act
+            journal.markShipped(6);
+            int deleted = journal.deleteShipped(Duration.ZERO);
+
+            // Assert
+            assertEquals(1, deleted);
+            assertEquals(2, segments().size());
+            assertEquals(4, journal.backlog());
+            assertEquals(answers(10).subList(6, 10), journal.read(7, 100));
+        }
+    }
+
+    @Test
+    void shippedMarkBehindDeletedSegmentsIsMovedUpOnOpen() throws IOException {
+        // Arrange
+        try (AnswerJournal journal = open()) {
+            answers(10).forEach(answer -> journal.awaitSynced(journal.append(answer)));
+            journal.markShipped(6);
+            journal.deleteShipped(Duration.ZERO);
+        }
+        // A crash lost the mark, but not the deletion of the first segment
+        try (FileChannel mark =
+                FileChannel.open(directory.resolve("shipped"), StandardOpenOption.WRITE)) {
+            mark.write(ByteBuffer.allocate(Long.BYTES), 0);
+        }
+
+        // Act
+        try (AnswerJournal reopened = open()) {
+            List<ScoredAnswer> read = reopened.read(reopened.shipped() + 1, 100);
+
+            // Assert
+            assertEquals(4, reopened.shipped());
+            assertEquals(answers(10).subList(4, 10), read);
+        }
+    }
+
+    private AnswerJournal open() {
+        return AnswerJournal.open(directory, RECORDS_PER_SEGMENT * AnswerJournal.RECORD_SIZE);
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.toString().endsWith(".journal"))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private static List<ScoredAnswer> answers(int count) {
+        return IntStream.rangeClosed(1, count)
+                .mapToObj(AnswerJournalTest::answer)
+                .toList();
+    }
+
+    private static ScoredAnswer answer(int i) {
+        return new ScoredAnswer(
+                new AnswerSubmission("player" + i, 1L, 10L + i, i % 4, 1_000L * i), i * 10);
+    }
+}
@@ -0,0 +1,256 @@
+package com.thonbecker.endurance.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import com.thonbecker.endurance.config.AnswerPersistenceProperties;
+import com.thonbecker.endurance.config.AnswerPersistenceProperties.DurabilityMode;
+import com.thonbecker.endurance.repository.AnswerSubmissionJdbcRepository;
+import com.thonbecker.endurance.type.AnswerSubmission;
+import com.thonbecker.endurance.type.ScoredAnswer;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+public class AnswerSubmissionWriterTest {
+
+    @TempDir
+    Path directory;
+
+    private final AnswerSubmissionJdbcRepository repository =
+            mock(AnswerSubmissionJdbcRepository.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private AnswerSubmissionWriter writer;
+
+    @AfterEach
+    void tearDown() throws Exception {
+        if (writer != null) {
+            writer.shutdown();
+        }
+    }
+
+    @Test
+    void batchedMode_WritesFullBatchWithoutWaitingForInterval() {
+        // Arrange
+        writer = batchedWriter(100, 3, Duration.ofHours(1));
+        List<ScoredAnswer> answers =
+                List.of(answer("player1", 10), answer("player2", 0), answer("player3", 10));
+
+        // Act
+        answers.forEach(answer -> writer.write(answer.submission(), answer.points()));
+
+        // Assert
+        verify(repository, timeout(2_000)).insertIfAbsent(answers);
+    }
+
+    @Test
+    void batchedMode_WritesPartialBatchAfterInterval() {
+        // Arrange
+        writer = batchedWriter(100, 500, Duration.ofMillis(20));
+        List<ScoredAnswer> answers = List.of(answer("player1", 10), answer("player2", 0));
+
+        // Act
+        answers.forEach(answer -> writer.write(answer.submission(), answer.points()));
+
+        // Assert
+        verify(repository, timeout(2_000)).insertIfAbsent(answers);
+    }
+
+    @Test
+    void batchedMode_WritesInCallerWhenQueueIsFull() throws Exception {
+        // Arrange: the flusher is stuck writing the first answer, the second fills the queue
+        writer = batchedWriter(1, 1, Duration.ofHours(1));
+        ScoredAnswer first = answer("player1", 10);
+        CountDownLatch release = new CountDownLatch(1);
+        when(repository.insertIfAbsent(anyList())).thenAnswer(invocation -> {
+            if (invocation.getArgument(0, List.class).contains(first)) {
+                release.await();
+            }
+            return invocation.getArgument(0, List.class).size();
+        });
+        writer.write(first.submission(), first.points());
+        verify(repository, timeout(2_000)).insertIfAbsent(List.of(first));
+        ScoredAnswer queued = answer("player2", 0);
+        writer.write(queued.submission(), queued.points());
+
+        // Act
+        ScoredAnswer overflowing = answer("player3", 10);
+        writer.write(overflowing.submission(), overflowing.points());
+
+        // Assert
+        verify(repository).insertIfAbsent(List.of(overflowing));
+        assertEquals(1, meterRegistry.counter("endurance.answers.overflow").count());
+        release.countDown();
+        verify(repository, timeout(2_000)).insertIfAbsent(List.of(queued));
+    }
+
+    @Test
+    void batchedMode_AwaitWrittenOnlyWaitsForItsQuestion() {
+        // Arrange
+        writer = batchedWriter(100, 500, Duration.ofHours(1));
+        ScoredAnswer answer = answer("player1", 10);
+        writer.write(answer.submission(), answer.points());
+
+        // Act & Assert: nothing pending for the next question, so nothing is flushed for it
+        writer.awaitWritten(1L, 3L);
+        verifyNoInteractions(repository);
+
+        // The current question's batch goes out at once, without waiting for the interval
+        writer.awaitWritten(1L, 2L);
+        verify(repository).insertIfAbsent(List.of(answer));
+    }
+
+    @Test
+    void batchedMode_RetriesFailedBatch() {
+        // Arrange
+        writer = batchedWriter(100, 500, Duration.ofMillis(10));
+        ScoredAnswer answer = answer("player1", 10);
+        when(repository.insertIfAbsent(List.of(answer)))
+                .thenThrow(new DataAccessResourceFailureException("Connection reset"))
+                .thenReturn(1);
+
+        // Act
+        writer.write(answer.submission(), answer.points());
+
+        // Assert
+        verify(repository, timeout(2_000).times(2)).insertIfAbsent(List.of(answer));
+    }
+
+    @Test
+    void batchedMode_CallerWritesBatchOnceRetriesAreUsedUp() {
+        // Arrange: the flusher cannot reach the database, the caller can
+        writer = batchedWriter(100, 500, Duration.ofHours(1));
+        ScoredAnswer answer = answer("player1", 10);
+        when(repository.insertIfAbsent(List.of(answer))).thenAnswer(invocation -> {
+            if (Thread.currentThread().getName().equals("answer-writer")) {
+                throw new DataAccessResourceFailureException("Connection reset");
+            }
+            return 1;
+        });
+        writer.write(answer.submission(), answer.points());
+
+        // Act
+        writer.awaitWritten(1L, 2L);
+
+        // Assert
+        assertEquals(1, meterRegistry.counter("endurance.answers.written").count());
+        assertTrue(meterRegistry.counter("endurance.answers.failed").count() >= 2);
+    }
+
+    @Test
+    void batchedMode_ShutdownWritesQueuedAnswers() throws Exception {
+        // Arrange
+        writer = batchedWriter(100, 500, Duration.ofHours(1));
+        List<ScoredAnswer> answers = List.of(answer("player1", 10), answer("player2", 0));
+        answers.forEach(answer -> writer.write(answer.submission(), answer.points()));
+
+        // Act
+        writer.shutdown();
+        writer = null;
+
+        // Assert
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<ScoredAnswer>> written = ArgumentCaptor.forClass(List.class);
+        verify(repository, atLeastOnce()).insertIfAbsent(written.capture());
+        assertEquals(
+                answers, written.getAllValues().stream().flatMap(List::stream).toList());
+    }
+
+    @Test
+    void journalMode_ShipsAnswersInBackground() {
+        // Arrange
+        writer = journalWriter();
+        List<ScoredAnswer> answers = List.of(answer("player1", 10), answer("player2", 0));
+
+        // Act
+        answers.forEach(answer -> writer.write(answer.submission(), answer.points()));
+
+        // Assert
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<ScoredAnswer>> shipped = ArgumentCaptor.forClass(List.class);
+        verify(repository, timeout(2_000).atLeastOnce()).insertIfAbsent(shipped.capture());
+        assertEquals(
+                answers, shipped.getAllValues().stream().flatMap(List::stream).toList());
+    }
+
+    @Test
+    void journalMode_ReplaysUnshippedAnswersOnStart() {
+        // Arrange
+        List<ScoredAnswer> answers = List.of(answer("player1", 10), answer("player2", 5));
+        try (AnswerJournal journal =
+                AnswerJournal.open(directory, DataSize.ofKilobytes(64).toBytes())) {
+            answers.forEach(answer -> journal.awaitSynced(journal.append(answer)));
+        }
+
+        // Act
+        writer = journalWriter();
+
+        // Assert
+        verify(repository).insertIfAbsent(answers);
+    }
+
+    @Test
+    void journalMode_AnswersOfQuizShareOneWaitForTheSync() {
+        // Arrange: the shipper stays asleep
+        writer = journalWriter(Duration.ofHours(1));
+        List<ScoredAnswer> answers =
+                List.of(answer("player1", 10), answer("player2", 0), answer("player3", 10));
+        answers.forEach(answer -> writer.write(answer.submission(), answer.points()));
+
+        // Act
+        writer.awaitJournaled(1L);
+        writer.awaitWritten(1L, 2L);
+
+        // Assert
+        assertEquals(3, meterRegistry.counter("endurance.answers.journaled").count());
+        assertEquals(1, meterRegistry.timer("endurance.answers.journal.sync").count());
+    }
+
+    private AnswerSubmissionWriter batchedWriter(
+            int queueCapacity, int batchSize, Duration flushInterval) {
+        AnswerPersistenceProperties properties = new AnswerPersistenceProperties(
+                DurabilityMode.BATCHED,
+                queueCapacity,
+                batchSize,
+                flushInterval,
+                Duration.ofSeconds(2),
+                1,
+                Duration.ofMillis(10),
+                new AnswerPersistenceProperties.Journal(
+                        directory.toString(), DataSize.ofKilobytes(64), Duration.ofHours(1)));
+        return new AnswerSubmissionWriter(repository, properties, meterRegistry);
+    }
+
+    private AnswerSubmissionWriter journalWriter() {
+        return journalWriter(Duration.ofMillis(10));
+    }
+
+    private AnswerSubmissionWriter journalWriter(Duration flushInterval) {
+        AnswerPersistenceProperties properties = new AnswerPersistenceProperties(
+                DurabilityMode.JOURNAL,
+                100,
+                500,
+                flushInterval,
+                Duration.ofSeconds(1),
+                3,
+                Duration.ofMillis(10),
+                new AnswerPersistenceProperties.Journal(
+                        directory.toString(), DataSize.ofKilobytes(64), Duration.ofHours(1)));
+        return new AnswerSubmissionWriter(repository, properties, meterRegistry);
+    }
+
+    private static ScoredAnswer answer(String playerId, int points) {
+        return new ScoredAnswer(new AnswerSubmission(playerId, 1L, 2L, 0, 1_000L), points);
+    }
+}
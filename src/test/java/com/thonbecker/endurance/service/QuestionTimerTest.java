@@ -0,0 +1,80 @@
+package com.thonbecker.endurance.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import com.thonbecker.endurance.config.TimerProperties;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class QuestionTimerTest {
+
+    private ApplicationEventPublisher eventPublisher;
+    private QuestionTimer timer;
+
+    @BeforeEach
+    void setUp() {
+        eventPublisher = mock(ApplicationEventPublisher.class);
+        // A small wheel so that deadlines wrap around it several times
+        timer = new QuestionTimer(
+                eventPublisher,
+                new TimerProperties(Duration.ofMillis(10), 4),
+                new SimpleMeterRegistry());
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        timer.shutdown();
+    }
+
+    @Test
+    void scheduleTimeout_PublishesEventWhenDeadlinePasses() {
+        // Act
+        QuestionTimer.Timeout timeout = timer.scheduleTimeout(1L, 2, 100);
+
+        // Assert
+        verify(eventPublisher, timeout(2000)).publishEvent(new QuestionTimeoutEvent(1L, 2));
+        assertTrue(timeout.isExpired());
+        assertEquals(0, timer.getPendingCount());
+    }
+
+    @Test
+    void schedule_DoesNotFireBeforeDeadline() throws InterruptedException {
+        // Arrange
+        CountDownLatch fired = new CountDownLatch(1);
+        long start = System.nanoTime();
+
+        // Act
+        timer.schedule(150, TimeUnit.MILLISECONDS, fired::countDown);
+
+        // Assert
+        assertTrue(fired.await(2, TimeUnit.SECONDS));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(150));
+    }
+
+    @Test
+    void cancel_PreventsExpiry() throws InterruptedException {
+        // Arrange
+        QuestionTimer.Timeout timeout = timer.scheduleTimeout(1L, 0, 50);
+
+        // Act
+        boolean cancelled = timeout.cancel();
+        Thread.sleep(200);
+
+        // Assert
+        assertTrue(cancelled);
+        assertTrue(timeout.isCancelled());
+        assertFalse(timeout.cancel());
+        verifyNoInteractions(eventPublisher);
+        assertEquals(0, timer.getPendingCount());
+    }
+}
@@ -0,0 +1,153 @@
+package com.thonbecker.endurance.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.thonbecker.endurance.config.EventBusProperties;
+import com.thonbecker.endurance.config.IdProperties;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import liquibase.integration.spring.SpringLiquibase;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+public class QuizEventBusTest {
+
+    private final List<QuizEventBus> buses = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() throws Exception {
+        for (QuizEventBus bus : buses) {
+            bus.shutdown();
+        }
+    }
+
+    @Test
+    void toBatches_FillsEachBatchUpToLimit() {
+        // Arrange
+        String event = "x".repeat(30);
+
+        // Act
+        List<String> batches = QuizEventBus.toBatches(List.of(event, event, event, event), 70);
+
+        // Assert
+        assertEquals(
+                List.of("[" + event + "," + event + "]", "[" + event + "," + event + "]"), batches);
+        assertTrue(batches.stream().allMatch(batch -> batch.length() <= 70));
+    }
+
+    @Test
+    void toBatches_GivesOversizedEventItsOwnBatch() {
+        // Act
+        List<String> batches =
+                QuizEventBus.toBatches(List.of("small", "x".repeat(100), "small"), 50);
+
+        // Assert
+        assertEquals(List.of("[small]", "[" + "x".repeat(100) + "]", "[small]"), batches);
+    }
+
+    @Test
+    void broadcastOnOneInstanceReachesTheOther() throws Exception {
+        // Arrange
+        DriverManagerDataSource dataSource = migratedDataSource();
+        SimpMessagingTemplate remoteTemplate = mock(SimpMessagingTemplate.class);
+        ApplicationEventPublisher remoteEvents = mock(ApplicationEventPublisher.class);
+        QuizEventBus local = bus(
+                dataSource,
+                30,
+                mock(SimpMessagingTemplate.class),
+                mock(ApplicationEventPublisher.class));
+        QuizEventBus remote = bus(dataSource, 31, remoteTemplate, remoteEvents);
+        local.start();
+        remote.start();
+        // Let the listener subscribe before anything is sent
+        Thread.sleep(500);
+        String large = "\"" + "y".repeat(10_000) + "\"";
+
+        // Act
+        local.publish(
+                "/topic/quiz/state/7", "{\"sequence\":1}".getBytes(StandardCharsets.UTF_8), true);
+        local.publish("/topic/quiz/7/players", large.getBytes(StandardCharsets.UTF_8), false);
+        local.onQuizChanged(new QuizChangedEvent(7L));
+
+        // Assert
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Message<byte[]>> messages = ArgumentCaptor.forClass(Message.class);
+        verify(remoteTemplate, timeout(5_000).times(2)).send(anyString(), messages.capture());
+        verify(remoteEvents, timeout(5_000)).publishEvent(new RemoteQuizChangedEvent(7L));
+        Message<byte[]> state = messages.getAllValues().get(0);
+        assertEquals("{\"sequence\":1}", new String(state.getPayload(), StandardCharsets.UTF_8));
+        assertEquals(
+                "true",
+                SimpMessageHeaderAccessor.wrap(state)
+                        .getFirstNativeHeader(BroadcastSender.LATEST_WINS_HEADER));
+        assertEquals(
+                large,
+                new String(messages.getAllValues().get(1).getPayload(), StandardCharsets.UTF_8));
+    }
+
+    private QuizEventBus bus(
+            DriverManagerDataSource dataSource,
+            int nodeId,
+            SimpMessagingTemplate messagingTemplate,
+            ApplicationEventPublisher eventPublisher) {
+        QuizEventBus bus = new QuizEventBus(
+                new EventBusProperties(
+                        "endurance_quiz_events_test",
+                        Duration.ofMillis(5),
+                        1_000,
+                        Duration.ofMinutes(1),
+                        Duration.ofMillis(100)),
+                new IdProperties(nodeId),
+                dataSource,
+                new JdbcTemplate(dataSource),
+                messagingTemplate,
+                eventPublisher,
+                new ObjectMapper(),
+                new SimpleMeterRegistry());
+        buses.add(bus);
+        return bus;
+    }
+
+    // The Postgres from docker-compose, or the one in DB_URL; the test is skipped without one
+    private static DriverManagerDataSource migratedDataSource() throws Exception {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                Optional.ofNullable(System.getenv("DB_URL"))
+                        .orElse("jdbc:postgresql://localhost:5432/dbmaster"),
+                Optional.ofNullable(System.getenv("DB_USERNAME")).orElse("dbmasteruser"),
+                Optional.ofNullable(System.getenv("DB_PASSWORD")).orElse(""));
+        try (Connection connection = dataSource.getConnection()) {
+            Assumptions.assumeTrue(connection.isValid(1));
+        } catch (Exception e) {
+            Assumptions.abort("No Postgres available: " + e.getMessage());
+        }
+
+        SpringLiquibase liquibase = new SpringLiquibase();
+        liquibase.setDataSource(dataSource);
+        liquibase.setChangeLog("classpath:db/changelog/db.changelog-master.xml");
+        liquibase.setDatabaseChangeLogTable("endurance_changelog");
+        liquibase.setDatabaseChangeLogLockTable("endurance_changelog_lock");
+        liquibase.setResourceLoader(new DefaultResourceLoader());
+        liquibase.afterPropertiesSet();
+        return dataSource;
+    }
+}
@@ -0,0 +1,84 @@
+package com.thonbecker.endurance.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.thonbecker.endurance.config.IdProperties;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class QuizIdGeneratorTest {
+
+    @Test
+    void nextId_IsUniqueAcrossThreads() throws InterruptedException {
+        // Arrange
+        int threads = 8;
+        int idsPerThread = 500_000;
+        QuizIdGenerator generator = new QuizIdGenerator(new IdProperties(3));
+        long[][] ids = new long[threads][idsPerThread];
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            long[] own = ids[t];
+            workers[t] = Thread.ofPlatform().start(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                for (int i = 0; i < own.length; i++) {
+                    own[i] = generator.nextId();
+                }
+            });
+        }
+
+        // Act
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        // Assert
+        long[] all = Arrays.stream(ids).flatMapToLong(Arrays::stream).sorted().toArray();
+        assertEquals(threads * idsPerThread, all.length);
+        for (int i = 1; i < all.length; i++) {
+            assertNotEquals(all[i - 1], all[i], "Duplicate ID " + all[i]);
+        }
+        assertTrue(all[all.length - 1] < 1L << 53, "IDs must stay exact in JavaScript");
+        assertTrue(Arrays.stream(all)
+                .allMatch(id ->
+                        (id >>> QuizIdGenerator.SEQUENCE_BITS & QuizIdGenerator.MAX_NODE_ID) == 3));
+    }
+
+    @Test
+    void nextId_KeepsIncreasingWhenClockMovesBackwards() {
+        // Arrange
+        AtomicLong clock = new AtomicLong(QuizIdGenerator.EPOCH + 10_000);
+        QuizIdGenerator generator = new QuizIdGenerator(new IdProperties(0), clock::get);
+        long before = generator.nextId();
+
+        // Act
+        clock.addAndGet(-5_000);
+        long during = generator.nextId();
+        clock.addAndGet(10_000);
+        long after = generator.nextId();
+
+        // Assert
+        assertTrue(during > before);
+        assertTrue(after > during);
+        // Back on the wall clock once it passed the last timestamp
+        assertEquals(
+                15_000L, after >>> (QuizIdGenerator.NODE_BITS + QuizIdGenerator.SEQUENCE_BITS));
+    }
+
+    @Test
+    void constructor_RejectsNodeIdOutOfRange() {
+        // Act & Assert
+        assertThrows(
+                IllegalArgumentException.class, () -> new QuizIdGenerator(new IdProperties(32)));
+    }
+}
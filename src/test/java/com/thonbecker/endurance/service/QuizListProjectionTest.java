@@ -0,0 +1,113 @@
+package com.thonbecker.endurance.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import com.thonbecker.endurance.repository.QuizRepository;
+import com.thonbecker.endurance.type.QuizListUpdate;
+import com.thonbecker.endurance.type.QuizStatus;
+import com.thonbecker.endurance.type.QuizSummary;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@ExtendWith(MockitoExtension.class)
+public class QuizListProjectionTest {
+    private static final LocalDateTime CREATED_AT = LocalDateTime.of(2026, 1, 1, 12, 0);
+
+    @Mock
+    private QuizRepository quizRepository;
+
+    @Mock
+    private BroadcastSender broadcastSender;
+
+    private QuizListProjection projection;
+    private QuizSummary first;
+    private QuizSummary second;
+
+    @BeforeEach
+    void setUp() {
+        projection =
+                new QuizListProjection(quizRepository, broadcastSender, new SimpleMeterRegistry());
+        first = new QuizSummary(1L, "First Quiz", QuizStatus.CREATED, 10, 0, CREATED_AT);
+        second = new QuizSummary(2L, "Second Quiz", QuizStatus.WAITING, 5, 3, CREATED_AT);
+        when(quizRepository.findSummariesByStatusIn(
+                        List.of(QuizStatus.CREATED, QuizStatus.WAITING)))
+                .thenReturn(List.of(second, first));
+    }
+
+    @Test
+    void getOpenQuizzes_LoadsListOnce() {
+        // Act
+        List<QuizSummary> firstRead = projection.getOpenQuizzes();
+        List<QuizSummary> secondRead = projection.getOpenQuizzes();
+
+        // Assert
+        assertEquals(List.of(first, second), firstRead);
+        assertEquals(firstRead, secondRead);
+        verify(quizRepository, times(1)).findSummariesByStatusIn(anyList());
+    }
+
+    @Test
+    void onQuizChanged_BroadcastsAddUpdateAndRemove() {
+        // Arrange
+        projection.getOpenQuizzes();
+        QuizSummary created =
+                new QuizSummary(3L, "New Quiz", QuizStatus.CREATED, 10, 0, CREATED_AT);
+        QuizSummary joined = new QuizSummary(3L, "New Quiz", QuizStatus.CREATED, 10, 1, CREATED_AT);
+        QuizSummary started =
+                new QuizSummary(3L, "New Quiz", QuizStatus.IN_PROGRESS, 10, 1, CREATED_AT);
+        when(quizRepository.findSummaryById(3L))
+                .thenReturn(Optional.of(created), Optional.of(joined), Optional.of(started));
+
+        // Act
+        projection.onQuizChanged(new QuizChangedEvent(3L));
+        projection.onQuizChanged(new QuizChangedEvent(3L));
+        projection.onQuizChanged(new QuizChangedEvent(3L));
+
+        // Assert
+        var inOrder = inOrder(broadcastSender);
+        inOrder.verify(broadcastSender).send("/topic/quiz/list", QuizListUpdate.added(created));
+        inOrder.verify(broadcastSender).send("/topic/quiz/list", QuizListUpdate.updated(joined));
+        inOrder.verify(broadcastSender).send("/topic/quiz/list", QuizListUpdate.removed(3L));
+        assertEquals(List.of(first, second), projection.getOpenQuizzes());
+    }
+
+    @Test
+    void onQuizChanged_SendsNothingWhenSummaryIsUnchanged() {
+        // Arrange
+        projection.getOpenQuizzes();
+        when(quizRepository.findSummaryById(1L)).thenReturn(Optional.of(first));
+
+        // Act
+        projection.onQuizChanged(new QuizChangedEvent(1L));
+
+        // Assert
+        verifyNoInteractions(broadcastSender);
+    }
+
+    @Test
+    void onRemoteQuizChanged_UpdatesListWithoutBroadcasting() {
+        // Arrange
+        projection.getOpenQuizzes();
+        QuizSummary created =
+                new QuizSummary(3L, "Remote Quiz", QuizStatus.CREATED, 10, 0, CREATED_AT);
+        when(quizRepository.findSummaryById(3L)).thenReturn(Optional.of(created));
+
+        // Act
+        projection.onRemoteQuizChanged(new RemoteQuizChangedEvent(3L));
+
+        // Assert
+        assertEquals(List.of(first, second, created), projection.getOpenQuizzes());
+        verifyNoInteractions(broadcastSender);
+    }
+}
@@ -0,0 +1,96 @@
+package com.thonbecker.endurance.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.thonbecker.endurance.config.MailboxProperties;
+import com.thonbecker.endurance.exception.MailboxFullException;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class QuizMailboxExecutorTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private QuizMailboxExecutor executor =
+            new QuizMailboxExecutor(new MailboxProperties(100_000), meterRegistry);
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdown();
+    }
+
+    @Test
+    void commandsForOneQuizRunInOrderAndNeverOverlap() throws Exception {
+        // Arrange
+        int producers = 8;
+        int commandsPerProducer = 2_000;
+        AtomicInteger running = new AtomicInteger();
+        List<String> executed = Collections.synchronizedList(new ArrayList<>());
+        List<CompletableFuture<Void>> futures = new CopyOnWriteArrayList<>();
+        ExecutorService pool = Executors.newFixedThreadPool(producers);
+
+        // Act
+        for (int p = 0; p < producers; p++) {
+            int producer = p;
+            pool.execute(() -> {
+                for (int i = 0; i < commandsPerProducer; i++) {
+                    int command = i;
+                    futures.add(executor.execute(1L, () -> {
+                        assertEquals(1, running.incrementAndGet());
+                        executed.add(producer + ":" + command);
+                        running.decrementAndGet();
+                    }));
+                }
+            });
+        }
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+        CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new))
+                .get(10, TimeUnit.SECONDS);
+
+        // Assert
+        assertEquals(producers * commandsPerProducer, executed.size());
+        int[] lastSeen = new int[producers];
+        java.util.Arrays.fill(lastSeen, -1);
+        for (String entry : executed) {
+            String[] parts = entry.split(":");
+            int producer = Integer.parseInt(parts[0]);
+            int command = Integer.parseInt(parts[1]);
+            assertTrue(command > lastSeen[producer], "commands of a producer ran out of order");
+            lastSeen[producer] = command;
+        }
+        assertEquals(0, executor.getDepth(1L));
+    }
+
+    @Test
+    void fullMailboxRejectsCommands() throws Exception {
+        // Arrange
+        executor.shutdown();
+        executor = new QuizMailboxExecutor(new MailboxProperties(1), meterRegistry);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        executor.execute(1L, () -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        executor.execute(1L, () -> {});
+
+        // Act & Assert
+        assertThrows(MailboxFullException.class, () -> executor.execute(1L, () -> {}));
+        executor.execute(2L, () -> {}).get(5, TimeUnit.SECONDS);
+        release.countDown();
+    }
+}
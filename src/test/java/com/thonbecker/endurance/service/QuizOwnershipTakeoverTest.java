@@ -0,0 +1,194 @@
+package com.thonbecker.endurance.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.thonbecker.endurance.EnduranceApplication;
+import com.thonbecker.endurance.controller.QuizController;
+import com.thonbecker.endurance.type.AnswerSubmission;
+import com.thonbecker.endurance.type.JoinQuizRequest;
+import com.thonbecker.endurance.type.Player;
+import com.thonbecker.endurance.type.Question;
+import com.thonbecker.endurance.type.Quiz;
+import com.thonbecker.endurance.type.QuizStateSnapshot;
+import com.thonbecker.endurance.type.QuizStatus;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.sql.Connection;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Runs two whole instances, each on its own port, against the Postgres from docker-compose or the
+ * one in {@code DB_URL}, and is skipped when there is none.
+ */
+public class QuizOwnershipTakeoverTest {
+    private static final String URL = Optional.ofNullable(System.getenv("DB_URL"))
+            .orElse("jdbc:postgresql://localhost:5432/dbmaster");
+    private static final String USERNAME =
+            Optional.ofNullable(System.getenv("DB_USERNAME")).orElse("dbmasteruser");
+    private static final String PASSWORD =
+            Optional.ofNullable(System.getenv("DB_PASSWORD")).orElse("");
+    private static final Duration TIMEOUT = Duration.ofSeconds(15);
+
+    private static JdbcTemplate jdbcTemplate;
+
+    private ConfigurableApplicationContext nodeA;
+    private ConfigurableApplicationContext nodeB;
+
+    @BeforeAll
+    static void checkDatabase() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(URL, USERNAME, PASSWORD);
+        try (Connection connection = dataSource.getConnection()) {
+            Assumptions.assumeTrue(connection.isValid(1));
+        } catch (Exception e) {
+            Assumptions.abort("No Postgres available: " + e.getMessage());
+        }
+        jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    // The owner only beats once, at startup, so it never reconnects on its own: like an instance
+    // whose host stopped responding, it neither gives up its quizzes nor takes them back
+    @BeforeEach
+    void setUp() throws IOException {
+        nodeA = start(28, Duration.ofHours(1));
+        nodeB = start(29, Duration.ofMillis(500));
+    }
+
+    @AfterEach
+    void tearDown() {
+        nodeA.close();
+        nodeB.close();
+        jdbcTemplate.update("DELETE FROM endurance.quiz_node WHERE node_id IN (28, 29)");
+    }
+
+    @Test
+    void runningQuizResumesOnOtherInstanceWhenItsOwnerStops() throws InterruptedException {
+        // Arrange
+        Quiz quiz = nodeA.getBean(QuizService.class)
+                .createQuiz(new Quiz(
+                        null,
+                        "Takeover",
+                        List.of(
+                                new Question(null, "First?", List.of("Yes", "No"), 0, 10),
+                                new Question(null, "Second?", List.of("Yes", "No"), 0, 10)),
+                        60,
+                        QuizStatus.CREATED));
+        Long quizId = quiz.id();
+        Player player = new Player(UUID.randomUUID().toString(), "Ada", 0, true);
+        QuizController controllerA = nodeA.getBean(QuizController.class);
+        controllerA.joinQuiz(new JoinQuizRequest(player, quizId));
+        controllerA.startQuiz(quizId);
+        awaitTrue(() -> nodeA.getBean(QuizOwnership.class).owns(quizId));
+
+        // Sent to the instance that does not own the quiz, which forwards it
+        nodeB.getBean(QuizController.class)
+                .submitAnswer(new AnswerSubmission(
+                        player.id(),
+                        quizId,
+                        quiz.questions().get(0).id(),
+                        0,
+                        System.currentTimeMillis()));
+        awaitTrue(() -> checkpointedQuestion(quizId) == 1);
+
+        // Act
+        nodeA.close();
+
+        // Assert
+        QuizOwnership ownershipB = nodeB.getBean(QuizOwnership.class);
+        awaitTrue(() -> ownershipB.owns(quizId));
+        QuizStateSnapshot snapshot = nodeB.getBean(QuizService.class).getSnapshot(quizId);
+        assertEquals(QuizStatus.IN_PROGRESS, snapshot.status());
+        assertEquals(1, snapshot.currentQuestionIndex());
+        assertEquals(10, snapshot.playerScores().get(player.id()));
+
+        nodeB.getBean(QuizService.class).endQuiz(quizId);
+    }
+
+    @Test
+    void runningQuizMovesOnWhenOwnersLockConnectionDies() throws InterruptedException {
+        // Arrange
+        Quiz quiz = nodeA.getBean(QuizService.class)
+                .createQuiz(new Quiz(
+                        null,
+                        "Lost connection",
+                        List.of(new Question(null, "First?", List.of("Yes", "No"), 0, 10)),
+                        60,
+                        QuizStatus.CREATED));
+        Long quizId = quiz.id();
+        QuizOwnership ownershipA = nodeA.getBean(QuizOwnership.class);
+        nodeA.getBean(QuizController.class).startQuiz(quizId);
+        awaitTrue(() -> ownershipA.owns(quizId));
+
+        // Act: the server drops the owner's session without the owner closing it, as it does
+        // once its keepalives to a dead host go unanswered
+        jdbcTemplate.queryForList(
+                "SELECT pg_terminate_backend(backend_pid) FROM endurance.quiz_node"
+                        + " WHERE node_id = 28");
+
+        // Assert
+        QuizOwnership ownershipB = nodeB.getBean(QuizOwnership.class);
+        awaitTrue(() -> ownershipB.owns(quizId));
+        assertEquals(
+                QuizStatus.IN_PROGRESS,
+                nodeB.getBean(QuizService.class).getSnapshot(quizId).status());
+
+        nodeB.getBean(QuizService.class).endQuiz(quizId);
+    }
+
+    private ConfigurableApplicationContext start(int nodeId, Duration heartbeat)
+            throws IOException {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        return new SpringApplicationBuilder(EnduranceApplication.class)
+                .properties(
+                        "server.port=" + port,
+                        "spring.datasource.url=" + URL,
+                        "spring.datasource.username=" + USERNAME,
+                        "spring.datasource.password=" + PASSWORD,
+                        "spring.liquibase.user=" + USERNAME,
+                        "spring.liquibase.password=" + PASSWORD,
+                        "spring.docker.compose.enabled=false",
+                        // Never called; the chat model only has to be built
+                        "spring.ai.bedrock.aws.access-key=unused",
+                        "spring.ai.bedrock.aws.secret-key=unused",
+                        "endurance.ids.node-id=" + nodeId,
+                        "endurance.ownership.enabled=true",
+                        "endurance.ownership.address=http://localhost:" + port,
+                        "endurance.ownership.secret=takeover-test",
+                        "endurance.ownership.heartbeat-interval=" + heartbeat.toMillis() + "ms",
+                        "endurance.recovery.checkpoint-interval=200ms")
+                .run();
+    }
+
+    private static int checkpointedQuestion(Long quizId) {
+        List<Integer> indexes = jdbcTemplate.queryForList(
+                "SELECT current_question_index FROM endurance.quiz_checkpoint WHERE quiz_id = ?",
+                Integer.class,
+                quizId);
+        return indexes.isEmpty() ? -1 : indexes.get(0);
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TIMEOUT.toNanos();
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "Timed out");
+            Thread.sleep(50);
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package com.thonbecker.endurance.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import com.thonbecker.endurance.config.IdProperties;
+import com.thonbecker.endurance.config.OwnershipProperties;
+import com.thonbecker.endurance.config.SessionStoreProperties;
+import com.thonbecker.endurance.repository.QuizCheckpointJdbcRepository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import liquibase.integration.spring.SpringLiquibase;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.sql.Connection;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Runs two instances against the Postgres from docker-compose, or the one in {@code DB_URL}, and
+ * is skipped when there is none.
+ */
+public class QuizOwnershipTest {
+    private static final String NODE_A = "http://node-a:8080";
+    private static final String NODE_B = "http://node-b:8080";
+    private static final Duration HEARTBEAT = Duration.ofMillis(50);
+
+    private static DriverManagerDataSource dataSource;
+
+    private final ApplicationEventPublisher eventPublisher = mock(ApplicationEventPublisher.class);
+    private final QuizMailboxExecutor quizExecutor = mock(QuizMailboxExecutor.class);
+    private JdbcTemplate jdbcTemplate;
+    private QuizOwnership nodeA;
+    private QuizOwnership nodeB;
+    private long quizId;
+
+    @BeforeAll
+    static void migrate() throws Exception {
+        dataSource = new DriverManagerDataSource(
+                Optional.ofNullable(System.getenv("DB_URL"))
+                        .orElse("jdbc:postgresql://localhost:5432/dbmaster"),
+                Optional.ofNullable(System.getenv("DB_USERNAME")).orElse("dbmasteruser"),
+                Optional.ofNullable(System.getenv("DB_PASSWORD")).orElse(""));
+        try (Connection connection = dataSource.getConnection()) {
+            Assumptions.assumeTrue(connection.isValid(1));
+        } catch (Exception e) {
+            Assumptions.abort("No Postgres available: " + e.getMessage());
+        }
+
+        SpringLiquibase liquibase = new SpringLiquibase();
+        liquibase.setDataSource(dataSource);
+        liquibase.setChangeLog("classpath:db/changelog/db.changelog-master.xml");
+        liquibase.setDatabaseChangeLogTable("endurance_changelog");
+        liquibase.setDatabaseChangeLogLockTable("endurance_changelog_lock");
+        liquibase.setResourceLoader(new DefaultResourceLoader());
+        liquibase.afterPropertiesSet();
+    }
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        quizId = ThreadLocalRandom.current().nextLong(1L << 40, 1L << 50);
+        jdbcTemplate.update(
+                "INSERT INTO endurance.quiz (id, title, time_per_question_in_seconds, status)"
+                        + " VALUES (?, 'Ownership', 30, 'IN_PROGRESS')",
+                quizId);
+        nodeA = node(30, NODE_A);
+        nodeB = node(31, NODE_B);
+    }
+
+    @AfterEach
+    void tearDown() {
+        nodeA.shutdown();
+        nodeB.shutdown();
+        jdbcTemplate.update("DELETE FROM endurance.quiz WHERE id = ?", quizId);
+        jdbcTemplate.update("DELETE FROM endurance.quiz_node WHERE node_id IN (30, 31)");
+    }
+
+    @Test
+    void firstInstanceToClaimRunsTheQuiz() {
+        // Act
+        boolean claimedByA = nodeA.claim(quizId);
+        boolean claimedByB = nodeB.claim(quizId);
+
+        // Assert
+        assertTrue(claimedByA);
+        assertFalse(claimedByB);
+        assertTrue(nodeA.isLocal(quizId));
+        assertFalse(nodeB.isLocal(quizId));
+        assertEquals(Optional.of(NODE_A), nodeB.findOwnerAddress(quizId));
+    }
+
+    @Test
+    void askingWhereQuizRunsDoesNotTakeIt() {
+        // Act
+        boolean localOnA = nodeA.isLocal(quizId);
+        boolean localOnB = nodeB.isLocal(quizId);
+
+        // Assert
+        assertTrue(localOnA);
+        assertTrue(localOnB);
+        assertFalse(nodeA.owns(quizId));
+        assertFalse(nodeB.owns(quizId));
+    }
+
+    @Test
+    void quizWithoutOwnerIsNotLookedUpAgainForAWhile() throws InterruptedException {
+        // Arrange
+        assertTrue(nodeB.isLocal(quizId));
+        assertTrue(nodeA.claim(quizId));
+
+        // Act
+        boolean localRightAway = nodeB.isLocal(quizId);
+        Thread.sleep(1_100);
+        boolean localLater = nodeB.isLocal(quizId);
+
+        // Assert
+        assertTrue(localRightAway);
+        assertFalse(localLater);
+    }
+
+    @Test
+    void failedClaimForgetsThatQuizHadNoOwner() {
+        // Arrange
+        assertTrue(nodeB.isLocal(quizId));
+        assertTrue(nodeA.claim(quizId));
+
+        // Act
+        boolean claimed = nodeB.claim(quizId);
+
+        // Assert
+        assertFalse(claimed);
+        assertFalse(nodeB.isLocal(quizId));
+    }
+
+    @Test
+    void quizIsKeptWhileItsMailboxHasWork() throws InterruptedException {
+        // Arrange
+        assertTrue(nodeA.claim(quizId));
+        when(quizExecutor.getDepth(quizId)).thenReturn(1);
+        Thread.sleep(HEARTBEAT.toMillis() * 2);
+
+        // Act
+        nodeA.beat();
+
+        // Assert
+        assertTrue(nodeA.owns(quizId));
+        when(quizExecutor.getDepth(quizId)).thenReturn(0);
+        nodeA.beat();
+        assertFalse(nodeA.owns(quizId));
+        assertTrue(nodeB.claim(quizId));
+    }
+
+    @Test
+    void quizOfStoppedInstanceIsTakenOver() {
+        // Arrange
+        assertTrue(nodeA.claim(quizId));
+        assertFalse(nodeB.isLocal(quizId));
+        nodeB.forgetOwner(quizId);
+
+        // Act
+        nodeA.shutdown();
+        nodeB.beat();
+
+        // Assert
+        assertTrue(nodeB.owns(quizId));
+        verify(eventPublisher).publishEvent((Object) new QuizzesClaimedEvent(List.of(quizId)));
+    }
+
+    private QuizOwnership node(int nodeId, String address) {
+        QuizSessionStore sessionStore = new QuizSessionStore(
+                new SessionStoreProperties(1_000, Duration.ofMinutes(5), Duration.ofHours(2)),
+                mock(QuizCheckpointJdbcRepository.class),
+                mock(BroadcastSender.class),
+                new SimpleMeterRegistry());
+        return new QuizOwnership(
+                new OwnershipProperties(true, address, HEARTBEAT, Duration.ofSeconds(5), "secret"),
+                new IdProperties(nodeId),
+                dataSource,
+                jdbcTemplate,
+                sessionStore,
+                quizExecutor,
+                eventPublisher,
+                new SimpleMeterRegistry());
+    }
+}
@@ -0,0 +1,147 @@
+package com.thonbecker.endurance.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import com.thonbecker.endurance.entity.QuestionEntity;
+import com.thonbecker.endurance.entity.QuestionOptionEntity;
+import com.thonbecker.endurance.entity.QuizEntity;
+import com.thonbecker.endurance.exception.ValidationException;
+import com.thonbecker.endurance.repository.AnswerSubmissionJdbcRepository;
+import com.thonbecker.endurance.repository.QuestionRepository;
+import com.thonbecker.endurance.repository.QuizCheckpointJdbcRepository;
+import com.thonbecker.endurance.repository.QuizPlayerRepository;
+import com.thonbecker.endurance.repository.QuizRepository;
+import com.thonbecker.endurance.type.AnswerSubmission;
+import com.thonbecker.endurance.type.Player;
+import com.thonbecker.endurance.type.QuizCheckpoint;
+import com.thonbecker.endurance.type.QuizStatus;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+public class QuizRecoveryTest {
+    private static final long NOW = 1_800_000_000_000L;
+
+    private final QuizRepository quizRepository = mock(QuizRepository.class);
+    private final QuestionRepository questionRepository = mock(QuestionRepository.class);
+    private final QuizPlayerRepository quizPlayerRepository = mock(QuizPlayerRepository.class);
+    private final AnswerSubmissionJdbcRepository answerRepository =
+            mock(AnswerSubmissionJdbcRepository.class);
+    private final QuizCheckpointJdbcRepository checkpointRepository =
+            mock(QuizCheckpointJdbcRepository.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final QuizRecovery recovery = new QuizRecovery(
+            quizRepository,
+            questionRepository,
+            quizPlayerRepository,
+            answerRepository,
+            checkpointRepository,
+            meterRegistry);
+
+    private QuizEntity quiz;
+
+    @BeforeEach
+    void setUp() {
+        // A running quiz of two 30 second questions with two players
+        quiz = new QuizEntity(1L, "Test Quiz", 30, QuizStatus.IN_PROGRESS);
+        when(quizRepository.findById(1L)).thenReturn(Optional.of(quiz));
+        when(questionRepository.findByQuizOrderByQuestionOrderAsc(quiz))
+                .thenReturn(List.of(question(11L, 0), question(12L, 1)));
+        when(quizPlayerRepository.findRoster(1L))
+                .thenReturn(List.of(
+                        new Player("player1", "One", 20, true),
+                        new Player("player2", "Two", 10, true)));
+    }
+
+    @Test
+    void answersAfterTheCheckpointMoveTheQuizOn() {
+        // Arrange
+        when(checkpointRepository.findById(1L))
+                .thenReturn(Optional.of(
+                        new QuizCheckpoint(1L, QuizStatus.IN_PROGRESS, 0, NOW - 40_000, 0, 5)));
+        when(answerRepository.findAnswered(1L))
+                .thenReturn(Map.of(11L, Set.of("player1", "player2"), 12L, Set.of("player1")));
+
+        // Act
+        QuizSession session = recovery.load(1L, NOW).orElseThrow();
+
+        // Assert
+        assertEquals(QuizStatus.IN_PROGRESS, session.getStatus());
+        assertEquals(1, session.getCurrentQuestionIndex());
+        assertEquals(30_000, session.getRemainingMillis(NOW));
+        assertEquals(5, session.checkpoint().sequence());
+        assertEquals(Map.of("player1", 20, "player2", 10), session.toState().playerScores());
+        assertThrows(
+                ValidationException.class,
+                () -> session.submit(new AnswerSubmission("player1", 1L, 12L, 0, NOW), NOW));
+        assertTrue(session.submit(new AnswerSubmission("player2", 1L, 12L, 0, NOW), NOW)
+                .questionComplete());
+        assertEquals(1, meterRegistry.counter("endurance.quiz.recovered").count());
+    }
+
+    @Test
+    void quizResumedAfterTheCheckpointKeepsTheTimeItHadLeft() {
+        // Arrange
+        when(checkpointRepository.findById(1L))
+                .thenReturn(Optional.of(new QuizCheckpoint(
+                        1L, QuizStatus.WAITING, 0, NOW - 60_000, NOW - 50_000, 3)));
+        when(answerRepository.findAnswered(1L)).thenReturn(Map.of());
+
+        // Act
+        QuizSession session = recovery.load(1L, NOW).orElseThrow();
+
+        // Assert
+        assertEquals(QuizStatus.IN_PROGRESS, session.getStatus());
+        assertEquals(0, session.getCurrentQuestionIndex());
+        assertEquals(20_000, session.getRemainingMillis(NOW));
+    }
+
+    @Test
+    void finishedQuizIsReloadedWithItsFinalScores() {
+        // Arrange
+        quiz.setStatus(QuizStatus.FINISHED);
+        when(answerRepository.findAnswered(1L)).thenReturn(Map.of());
+
+        // Act
+        QuizSession session = recovery.load(1L, NOW).orElseThrow();
+
+        // Assert
+        assertEquals(QuizStatus.FINISHED, session.getStatus());
+        assertEquals(1, session.getCurrentQuestionIndex());
+        assertEquals(Map.of("player1", 20, "player2", 10), session.snapshot().playerScores());
+        verifyNoInteractions(checkpointRepository);
+    }
+
+    @Test
+    void quizThatNeverStartedIsNotRecovered() {
+        // Arrange
+        quiz.setStatus(QuizStatus.CREATED);
+
+        // Act & Assert
+        assertTrue(recovery.load(1L, NOW).isEmpty());
+        verifyNoInteractions(checkpointRepository, answerRepository);
+    }
+
+    private QuestionEntity question(Long id, int order) {
+        QuestionEntity question = new QuestionEntity();
+        question.setId(id);
+        question.setQuestionText("Question " + id);
+        question.setCorrectOptionIndex(0);
+        question.setPoints(10);
+        question.setQuestionOrder(order);
+        question.setQuiz(quiz);
+        for (int i = 0; i < 2; i++) {
+            question.addOption(new QuestionOptionEntity("Option " + i, i));
+        }
+        return question;
+    }
+}
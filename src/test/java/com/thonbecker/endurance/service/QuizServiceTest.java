@@ -3,19 +3,31 @@ package com.thonbecker.endurance.service;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
+import com.thonbecker.endurance.config.SessionStoreProperties;
 import com.thonbecker.endurance.entity.*;
 import com.thonbecker.endurance.exception.InvalidStateException;
+import com.thonbecker.endurance.exception.QuizOwnedElsewhereException;
 import com.thonbecker.endurance.exception.ResourceNotFoundException;
+import com.thonbecker.endurance.exception.ValidationException;
 import com.thonbecker.endurance.repository.*;
 import com.thonbecker.endurance.type.*;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
 
+import java.time.Duration;
 import java.util.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -30,9 +42,6 @@ public class QuizServiceTest {
     @Mock
     private QuestionRepository questionRepository;
 
-    @Mock
-    private QuestionOptionRepository questionOptionRepository;
-
     @Mock
     private PlayerRepository playerRepository;
 
@@ -40,7 +49,29 @@ public class QuizServiceTest {
     private QuizPlayerRepository quizPlayerRepository;
 
     @Mock
-    private AnswerSubmissionRepository answerSubmissionRepository;
+    private AnswerSubmissionWriter answerSubmissionWriter;
+
+    @Mock
+    private QuizIdGenerator quizIdGenerator;
+
+    @Mock
+    private QuestionTimer questionTimer;
+
+    @Mock
+    private QuizRecovery quizRecovery;
+
+    @Mock
+    private QuizOwnership quizOwnership;
+
+    @Spy
+    private QuizSessionStore sessionStore = new QuizSessionStore(
+            new SessionStoreProperties(1_000, Duration.ofMinutes(5), Duration.ofHours(2)),
+            mock(QuizCheckpointJdbcRepository.class),
+            mock(BroadcastSender.class),
+            new SimpleMeterRegistry());
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
 
     @InjectMocks
     private QuizService quizService;
@@ -80,6 +111,9 @@ public class QuizServiceTest {
         quizPlayerEntity = new QuizPlayerEntity(quizEntity, playerEntity);
         quizPlayerEntity.setScore(0);
         quizPlayerEntity.setReady(true);
+
+        // A single instance runs every quiz
+        lenient().when(quizOwnership.claim(anyLong())).thenReturn(true);
     }
 
     @Test
@@ -88,15 +122,16 @@ public class QuizServiceTest {
         when(quizRepository.findById(1L)).thenReturn(Optional.of(quizEntity));
         when(questionRepository.findByQuizOrderByQuestionOrderAsc(quizEntity))
                 .thenReturn(Collections.singletonList(questionEntity));
-        when(quizPlayerRepository.findByQuiz(quizEntity))
-                .thenReturn(Collections.singletonList(quizPlayerEntity));
+        when(quizPlayerRepository.findRoster(1L))
+                .thenReturn(List.of(new Player("player1", "Test Player", 0, true)));
 
         // Act
-        QuizState result = quizService.startQuiz(1L);
+        QuizStateSnapshot result =
+                assertInstanceOf(QuizStateSnapshot.class, quizService.startQuiz(1L));
 
         // Assert
-        assertNotNull(result);
         assertEquals(1L, result.quizId());
+        assertEquals(1L, result.sequence());
         assertEquals(0, result.currentQuestionIndex());
         assertEquals(1, result.playerScores().size());
         verify(quizRepository).save(quizEntity);
@@ -122,39 +157,36 @@ public class QuizServiceTest {
         assertThrows(InvalidStateException.class, () -> quizService.startQuiz(1L));
     }
 
+    @Test
+    void startQuiz_RejectsQuizRunByAnotherInstance() {
+        // Arrange
+        when(quizRepository.findById(1L)).thenReturn(Optional.of(quizEntity));
+        when(quizOwnership.claim(1L)).thenReturn(false);
+
+        // Act & Assert
+        assertThrows(QuizOwnedElsewhereException.class, () -> quizService.startQuiz(1L));
+        assertEquals(QuizStatus.CREATED, quizEntity.getStatus());
+        verify(quizRepository, never()).save(any());
+    }
+
     @Test
     void pauseQuiz_Success() {
         // Arrange
         quizEntity.setStatus(QuizStatus.IN_PROGRESS);
         when(quizRepository.findById(1L)).thenReturn(Optional.of(quizEntity));
 
-        // Set up quiz state in the service
-        Map<Long, QuizState> quizStates = new HashMap<>();
-        QuizState state = new QuizState(
-                1L,
-                questionEntity.toDomainModel(),
-                0,
-                Map.of("player1", 0),
-                System.currentTimeMillis());
-        quizStates.put(1L, state);
-
-        // Use reflection to set the private field
-        try {
-            java.lang.reflect.Field field = QuizService.class.getDeclaredField("quizStates");
-            field.setAccessible(true);
-            field.set(quizService, quizStates);
-        } catch (Exception e) {
-            fail("Failed to set up test: " + e.getMessage());
-        }
+        // Set up quiz session in the service
+        setUpSession();
 
         // Act
-        QuizState result = quizService.pauseQuiz(1L);
+        QuizStateMessage result = quizService.pauseQuiz(1L);
 
         // Assert
         assertNotNull(result);
         assertEquals(1L, result.quizId());
         verify(quizRepository).save(quizEntity);
         assertEquals(QuizStatus.WAITING, quizEntity.getStatus());
+        verify(eventPublisher).publishEvent(new QuizChangedEvent(1L));
     }
 
     @Test
@@ -162,30 +194,12 @@ public class QuizServiceTest {
         // Arrange
         quizEntity.setStatus(QuizStatus.IN_PROGRESS);
         when(quizRepository.findById(1L)).thenReturn(Optional.of(quizEntity));
-        when(quizPlayerRepository.findByQuiz(quizEntity))
-                .thenReturn(Collections.singletonList(quizPlayerEntity));
-
-        // Set up quiz state in the service
-        Map<Long, QuizState> quizStates = new HashMap<>();
-        QuizState state = new QuizState(
-                1L,
-                questionEntity.toDomainModel(),
-                0,
-                Map.of("player1", 0),
-                System.currentTimeMillis());
-        quizStates.put(1L, state);
 
-        // Use reflection to set the private field
-        try {
-            java.lang.reflect.Field field = QuizService.class.getDeclaredField("quizStates");
-            field.setAccessible(true);
-            field.set(quizService, quizStates);
-        } catch (Exception e) {
-            fail("Failed to set up test: " + e.getMessage());
-        }
+        // Set up quiz session in the service
+        setUpSession();
 
         // Act
-        QuizState result = quizService.endQuiz(1L);
+        QuizStateMessage result = quizService.endQuiz(1L);
 
         // Assert
         assertNotNull(result);
@@ -193,4 +207,323 @@ public class QuizServiceTest {
         verify(quizRepository).save(quizEntity);
         assertEquals(QuizStatus.FINISHED, quizEntity.getStatus());
     }
+
+    @Test
+    void processAnswer_CorrectAnswerFinishesSingleQuestionQuiz() {
+        // Arrange
+        setUpSession();
+
+        // Act
+        Optional<QuizStateSnapshot> result = quizService.processAnswer(
+                new AnswerSubmission("player1", 1L, 1L, 0, System.currentTimeMillis()));
+
+        // Assert
+        QuizStateSnapshot snapshot = result.orElseThrow();
+        assertEquals(QuizStatus.FINISHED, snapshot.status());
+        assertEquals(10, snapshot.playerScores().get("player1"));
+        verify(answerSubmissionWriter).write(any(AnswerSubmission.class), eq(10));
+        verify(answerSubmissionWriter).awaitWritten(1L, 1L);
+        verify(quizRepository).updateStatus(1L, QuizStatus.FINISHED);
+    }
+
+    @Test
+    void takeDelta_HoldsOnlyChangesSincePreviousMessage() {
+        // Arrange
+        setUpSession(Map.of("player1", 0, "player2", 0, "player3", 0));
+        quizService.processAnswer(
+                new AnswerSubmission("player1", 1L, 1L, 0, System.currentTimeMillis()));
+
+        // Act
+        QuizStateDelta first = quizService.takeDelta(1L).orElseThrow();
+        quizService.processAnswer(
+                new AnswerSubmission("player2", 1L, 1L, 1, System.currentTimeMillis()));
+        QuizStateDelta second = quizService.takeDelta(1L).orElseThrow();
+
+        // Assert
+        assertEquals(Map.of("player1", 10), first.changedScores());
+        assertEquals(1, first.answeredCount());
+        assertEquals(first.sequence() + 1, second.sequence());
+        assertTrue(second.changedScores().isEmpty());
+        assertEquals(2, second.answeredCount());
+        assertEquals(second.sequence(), quizService.getSnapshot(1L).sequence());
+        assertTrue(quizService.takeDelta(1L).isEmpty());
+    }
+
+    @Test
+    void processAnswer_DuplicateAnswerRejected() {
+        // Arrange
+        setUpSession(Map.of("player1", 0, "player2", 0));
+        AnswerSubmission submission =
+                new AnswerSubmission("player1", 1L, 1L, 1, System.currentTimeMillis());
+        quizService.processAnswer(submission);
+
+        // Act & Assert
+        assertThrows(ValidationException.class, () -> quizService.processAnswer(submission));
+        verify(answerSubmissionWriter, times(1)).write(submission, 0);
+    }
+
+    @Test
+    void startQuiz_SchedulesQuestionDeadline() {
+        // Arrange
+        when(quizRepository.findById(1L)).thenReturn(Optional.of(quizEntity));
+        when(questionRepository.findByQuizOrderByQuestionOrderAsc(quizEntity))
+                .thenReturn(Collections.singletonList(questionEntity));
+        when(quizPlayerRepository.findRoster(1L))
+                .thenReturn(List.of(new Player("player1", "Test Player", 0, true)));
+
+        // Act
+        quizService.startQuiz(1L);
+
+        // Assert
+        verify(questionTimer).scheduleTimeout(1L, 0, 30_000L);
+    }
+
+    @Test
+    void expireQuestion_FinishesQuizWhenTimeIsUp() {
+        // Arrange
+        setUpSession(Map.of("player1", 0, "player2", 0));
+
+        // Act
+        Optional<QuizStateMessage> result = quizService.expireQuestion(1L, 0);
+
+        // Assert
+        assertTrue(result.isPresent());
+        verify(answerSubmissionWriter).awaitWritten(1L, 1L);
+        verify(quizRepository).updateStatus(1L, QuizStatus.FINISHED);
+    }
+
+    @Test
+    void expireQuestion_IgnoresStaleDeadline() {
+        // Arrange
+        setUpSession();
+
+        // Act
+        Optional<QuizStateMessage> result = quizService.expireQuestion(1L, 3);
+
+        // Assert
+        assertTrue(result.isEmpty());
+        verifyNoInteractions(answerSubmissionWriter);
+    }
+
+    @Test
+    void processAnswer_FailedWriteLeavesAnswerOpenForRetry() {
+        // Arrange
+        setUpSession(Map.of("player1", 0, "player2", 0));
+        AnswerSubmission submission =
+                new AnswerSubmission("player1", 1L, 1L, 0, System.currentTimeMillis());
+        doThrow(new DataAccessResourceFailureException("database down"))
+                .doReturn(true)
+                .when(answerSubmissionWriter)
+                .write(submission, 10);
+
+        // Act
+        assertThrows(
+                DataAccessResourceFailureException.class,
+                () -> quizService.processAnswer(submission));
+        int scoreAfterFailure = quizService.getSnapshot(1L).playerScores().get("player1");
+        quizService.processAnswer(submission);
+
+        // Assert
+        assertEquals(0, scoreAfterFailure);
+        assertEquals(10, quizService.getSnapshot(1L).playerScores().get("player1"));
+        verify(answerSubmissionWriter, times(2)).write(submission, 10);
+    }
+
+    @Test
+    void processAnswer_RolledBackAnswerIsOpenForRetry() {
+        // Arrange
+        setUpTwoQuestionSession(System.currentTimeMillis());
+        AnswerSubmission submission =
+                new AnswerSubmission("player1", 1L, 1L, 0, System.currentTimeMillis());
+        when(answerSubmissionWriter.write(submission, 10)).thenReturn(true);
+        doThrow(new DataAccessResourceFailureException("database down"))
+                .doNothing()
+                .when(answerSubmissionWriter)
+                .awaitWritten(1L, 1L);
+
+        // Act: the answer was written with the transaction that then rolls back
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            assertThrows(
+                    DataAccessResourceFailureException.class,
+                    () -> quizService.processAnswer(submission));
+            TransactionSynchronizationUtils.invokeAfterCompletion(
+                    TransactionSynchronizationManager.getSynchronizations(),
+                    TransactionSynchronization.STATUS_ROLLED_BACK);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        int scoreAfterRollback = quizService.getSnapshot(1L).playerScores().get("player1");
+        Optional<QuizStateSnapshot> retried = quizService.processAnswer(submission);
+
+        // Assert
+        assertEquals(0, scoreAfterRollback);
+        assertEquals(1, retried.orElseThrow().currentQuestionIndex());
+        assertEquals(10, retried.orElseThrow().playerScores().get("player1"));
+    }
+
+    @Test
+    void processAnswer_QueuedAnswerIsKeptWhenTransactionRollsBack() {
+        // Arrange
+        setUpSession(Map.of("player1", 0, "player2", 0));
+        AnswerSubmission submission =
+                new AnswerSubmission("player1", 1L, 1L, 0, System.currentTimeMillis());
+
+        // Act: the writer only queued the answer, so the rollback does not undo it
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            quizService.processAnswer(submission);
+            TransactionSynchronizationUtils.invokeAfterCompletion(
+                    TransactionSynchronizationManager.getSynchronizations(),
+                    TransactionSynchronization.STATUS_ROLLED_BACK);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        // Assert
+        assertEquals(10, quizService.getSnapshot(1L).playerScores().get("player1"));
+    }
+
+    @Test
+    void processAnswer_RejectsAnswerToClosedQuestion() {
+        // Arrange
+        setUpTwoQuestionSession(System.currentTimeMillis());
+        quizService.expireQuestion(1L, 0);
+
+        // Act & Assert
+        assertThrows(
+                ValidationException.class,
+                () -> quizService.processAnswer(
+                        new AnswerSubmission("player1", 1L, 1L, 0, System.currentTimeMillis())));
+        verify(answerSubmissionWriter, never()).write(any(AnswerSubmission.class), anyInt());
+    }
+
+    @Test
+    void processAnswer_RejectsAnswerToUpcomingQuestion() {
+        // Arrange
+        setUpTwoQuestionSession(System.currentTimeMillis());
+
+        // Act & Assert
+        assertThrows(
+                ValidationException.class,
+                () -> quizService.processAnswer(
+                        new AnswerSubmission("player1", 1L, 2L, 0, System.currentTimeMillis())));
+        assertEquals(0, quizService.getSnapshot(1L).playerScores().get("player1"));
+        verifyNoInteractions(answerSubmissionWriter);
+    }
+
+    @Test
+    void processAnswer_RejectsAnswerAfterTimeIsUp() {
+        // Arrange
+        setUpTwoQuestionSession(System.currentTimeMillis() - 31_000L);
+
+        // Act & Assert
+        assertThrows(
+                ValidationException.class,
+                () -> quizService.processAnswer(
+                        new AnswerSubmission("player1", 1L, 1L, 0, System.currentTimeMillis())));
+        verifyNoInteractions(answerSubmissionWriter);
+    }
+
+    @Test
+    void addPlayer_ReturnsJoinedThenReadyThenNothing() {
+        // Arrange
+        when(playerRepository.findById("player1")).thenReturn(Optional.of(playerEntity));
+        when(quizRepository.findById(1L)).thenReturn(Optional.of(quizEntity));
+        when(quizPlayerRepository.findByQuizAndPlayer(quizEntity, playerEntity))
+                .thenReturn(Optional.empty(), Optional.of(quizPlayerEntity));
+        quizPlayerEntity.setReady(false);
+
+        // Act
+        Optional<RosterUpdate> joined =
+                quizService.addPlayer(new Player("player1", "Test Player", 0, false), 1L);
+        Optional<RosterUpdate> ready =
+                quizService.addPlayer(new Player("player1", "Test Player", 0, true), 1L);
+        Optional<RosterUpdate> unchanged =
+                quizService.addPlayer(new Player("player1", "Test Player", 0, true), 1L);
+
+        // Assert
+        assertEquals(RosterUpdate.Type.JOINED, joined.orElseThrow().type());
+        assertEquals("player1", joined.orElseThrow().playerId());
+        assertEquals(RosterUpdate.Type.READY, ready.orElseThrow().type());
+        assertTrue(ready.orElseThrow().player().isReady());
+        assertTrue(unchanged.isEmpty());
+    }
+
+    @Test
+    void removePlayer_ReturnsLeft() {
+        // Arrange
+        when(quizRepository.findById(1L)).thenReturn(Optional.of(quizEntity));
+        when(playerRepository.findById("player1")).thenReturn(Optional.of(playerEntity));
+        when(quizPlayerRepository.findByQuizAndPlayer(quizEntity, playerEntity))
+                .thenReturn(Optional.of(quizPlayerEntity));
+
+        // Act
+        Optional<RosterUpdate> result = quizService.removePlayer("player1", 1L);
+
+        // Assert
+        assertEquals(RosterUpdate.left(1L, "player1"), result.orElseThrow());
+        verify(quizPlayerRepository).delete(quizPlayerEntity);
+    }
+
+    @Test
+    void processAnswer_NoSession() {
+        // Act & Assert
+        assertThrows(
+                ResourceNotFoundException.class,
+                () -> quizService.processAnswer(
+                        new AnswerSubmission("player1", 1L, 1L, 0, System.currentTimeMillis())));
+    }
+
+    @Test
+    void processAnswer_RecoversSessionAfterRestart() {
+        // Arrange
+        long now = System.currentTimeMillis();
+        QuizSession recovered = QuizSession.restore(
+                new QuizCheckpoint(1L, QuizStatus.IN_PROGRESS, 0, now, 0, 7),
+                List.of(questionEntity.toDomainModel()),
+                Map.of("player1", 0, "player2", 0),
+                30_000L,
+                Map.of(),
+                now);
+        when(quizRecovery.load(eq(1L), anyLong())).thenReturn(Optional.of(recovered));
+        AnswerSubmission submission = new AnswerSubmission("player1", 1L, 1L, 0, now);
+
+        // Act
+        Optional<QuizStateSnapshot> result = quizService.processAnswer(submission);
+
+        // Assert
+        assertTrue(result.isEmpty());
+        assertEquals(8, quizService.takeDelta(1L).orElseThrow().sequence());
+        assertThrows(ValidationException.class, () -> quizService.processAnswer(submission));
+        verify(quizRecovery, times(1)).load(eq(1L), anyLong());
+        verify(questionTimer).scheduleTimeout(eq(1L), eq(0), anyLong());
+    }
+
+    @Test
+    void searchQuizzes_RejectsTextTooShortForTheTitleIndex() {
+        // Act & Assert
+        assertThrows(ValidationException.class, () -> quizService.searchQuizzes(" ab ", null, 10));
+        verifyNoInteractions(quizRepository);
+    }
+
+    private void setUpSession() {
+        setUpSession(Map.of("player1", 0));
+    }
+
+    private void setUpTwoQuestionSession(long questionStartTime) {
+        Question first = questionEntity.toDomainModel();
+        Question second = new Question(2L, "Second Question", first.options(), 1, first.points());
+        sessionStore.put(new QuizSession(
+                1L, List.of(first, second), Map.of("player1", 0), 30_000L, questionStartTime));
+    }
+
+    private void setUpSession(Map<String, Integer> playerScores) {
+        sessionStore.put(new QuizSession(
+                1L,
+                List.of(questionEntity.toDomainModel()),
+                playerScores,
+                30_000L,
+                System.currentTimeMillis()));
+    }
 }
@@ -0,0 +1,148 @@
+package com.thonbecker.endurance.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import com.thonbecker.endurance.config.SessionStoreProperties;
+import com.thonbecker.endurance.repository.QuizCheckpointJdbcRepository;
+import com.thonbecker.endurance.type.Question;
+import com.thonbecker.endurance.type.QuizCheckpoint;
+import com.thonbecker.endurance.type.QuizStatus;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class QuizSessionStoreTest {
+
+    private final AtomicLong ticker = new AtomicLong();
+    private final QuizCheckpointJdbcRepository checkpointRepository =
+            mock(QuizCheckpointJdbcRepository.class);
+    private final BroadcastSender broadcastSender = mock(BroadcastSender.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void finishedQuizzesLeaveMemoryBeforeRunningOnes() {
+        // Arrange
+        QuizSessionStore store = store(1_000);
+        store.put(session(1L));
+        QuizSession finished = session(2L);
+        store.put(finished);
+        finished.finish();
+        store.put(finished);
+
+        // Act
+        ticker.addAndGet(TimeUnit.MINUTES.toNanos(6));
+
+        // Assert
+        assertNotNull(store.get(1L));
+        assertNull(store.get(2L));
+        verifyNoInteractions(checkpointRepository);
+    }
+
+    @Test
+    void evictedPausedQuizWritesItsCheckpoint() {
+        // Arrange: every session weighs one question plus two players
+        QuizSessionStore store = store(9);
+
+        // Act
+        for (long quizId = 1; quizId <= 5; quizId++) {
+            QuizSession session = session(quizId);
+            session.pause(0);
+            store.put(session);
+        }
+
+        // Assert
+        assertTrue(store.size() <= 3);
+        verify(checkpointRepository, atLeast(2))
+                .saveAll(argThat((List<QuizCheckpoint> checkpoints) ->
+                        checkpoints.getFirst().status() == QuizStatus.WAITING));
+        assertTrue(meterRegistry.get("cache.evictions").functionCounter().count() >= 2);
+    }
+
+    @Test
+    void runningQuizzesAreNotEvictedForWeight() {
+        // Arrange
+        QuizSessionStore store = store(9);
+
+        // Act
+        for (long quizId = 1; quizId <= 5; quizId++) {
+            store.put(session(quizId));
+        }
+
+        // Assert
+        assertEquals(5, store.size());
+        verifyNoInteractions(checkpointRepository);
+    }
+
+    @Test
+    void abandonedRunningQuizHasItsDeadlineCancelled() {
+        // Arrange
+        QuizSessionStore store = store(1_000);
+        QuizSession session = session(1L);
+        QuestionTimer.Timeout deadline = mock(QuestionTimer.Timeout.class);
+        session.replaceDeadline(deadline);
+        store.put(session);
+
+        // Act
+        ticker.addAndGet(TimeUnit.HOURS.toNanos(3));
+
+        // Assert
+        assertNull(store.get(1L));
+        verify(deadline).cancel();
+        verify(checkpointRepository).saveAll(List.of(session.checkpoint()));
+    }
+
+    @Test
+    void droppedSessionHasItsKeptBroadcastForgotten() {
+        // Arrange
+        QuizSessionStore store = store(1_000);
+        store.put(session(1L));
+
+        // Act
+        store.invalidate(1L);
+
+        // Assert
+        verify(broadcastSender).evict("/topic/quiz/state/1");
+    }
+
+    @Test
+    void evictedSessionHasItsKeptBroadcastForgotten() {
+        // Arrange
+        QuizSessionStore store = store(1_000);
+        QuizSession session = session(1L);
+        session.pause(0);
+        store.put(session);
+
+        // Act
+        ticker.addAndGet(TimeUnit.HOURS.toNanos(3));
+
+        // Assert
+        assertNull(store.get(1L));
+        verify(broadcastSender).evict("/topic/quiz/state/1");
+    }
+
+    private QuizSessionStore store(long maximumWeight) {
+        return new QuizSessionStore(
+                new SessionStoreProperties(
+                        maximumWeight, Duration.ofMinutes(5), Duration.ofHours(2)),
+                checkpointRepository,
+                broadcastSender,
+                meterRegistry,
+                ticker::get,
+                Runnable::run);
+    }
+
+    private static QuizSession session(Long quizId) {
+        Question question = new Question(quizId * 10, "Question", List.of("A", "B"), 0, 10);
+        return new QuizSession(
+                quizId, List.of(question), Map.of("player1", 0, "player2", 0), 30_000L, 0);
+    }
+}
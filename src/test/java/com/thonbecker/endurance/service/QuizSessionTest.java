@@ -0,0 +1,196 @@
+package com.thonbecker.endurance.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.thonbecker.endurance.exception.InvalidStateException;
+import com.thonbecker.endurance.exception.ValidationException;
+import com.thonbecker.endurance.type.AnswerSubmission;
+import com.thonbecker.endurance.type.Question;
+import com.thonbecker.endurance.type.QuizCheckpoint;
+import com.thonbecker.endurance.type.QuizStateSnapshot;
+import com.thonbecker.endurance.type.QuizStatus;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class QuizSessionTest {
+    private static final long NOW = 1_800_000_000_000L;
+    private static final Question FIRST = new Question(1L, "First?", List.of("Yes", "No"), 0, 10);
+    private static final Question SECOND = new Question(2L, "Second?", List.of("Yes", "No"), 1, 5);
+
+    @Test
+    void correctAnswerScoresAndCompletesQuestionOnceEveryoneAnswered() {
+        // Arrange
+        QuizSession session = session();
+
+        // Act
+        QuizSession.AnswerOutcome first = session.submit(answer("ada", 1L, 0), NOW);
+        QuizSession.AnswerOutcome second = session.submit(answer("bob", 1L, 1), NOW);
+
+        // Assert
+        assertTrue(first.correct());
+        assertEquals(10, first.points());
+        assertEquals(10, first.score());
+        assertFalse(first.questionComplete());
+        assertFalse(second.correct());
+        assertEquals(0, second.points());
+        assertTrue(second.questionComplete());
+        assertEquals(Map.of("ada", 10, "bob", 0), session.snapshot().playerScores());
+    }
+
+    @Test
+    void secondAnswerOfPlayerIsRejected() {
+        // Arrange
+        QuizSession session = session();
+        session.submit(answer("ada", 1L, 1), NOW);
+
+        // Act & Assert
+        assertThrows(ValidationException.class, () -> session.submit(answer("ada", 1L, 0), NOW));
+        assertEquals(0, session.snapshot().playerScores().get("ada"));
+    }
+
+    @Test
+    void answerToAnotherQuestionIsRejected() {
+        // Arrange
+        QuizSession session = session();
+
+        // Act & Assert
+        assertThrows(ValidationException.class, () -> session.submit(answer("ada", 2L, 1), NOW));
+        assertThrows(ValidationException.class, () -> session.submit(answer("ada", 3L, 0), NOW));
+        assertEquals(0, session.snapshot().answeredCount());
+    }
+
+    @Test
+    void answerAfterTimeIsUpIsRejected() {
+        // Arrange
+        QuizSession session = session();
+
+        // Act & Assert
+        assertThrows(
+                ValidationException.class,
+                () -> session.submit(answer("ada", 1L, 0), NOW + 30_000L));
+    }
+
+    @Test
+    void withdrawnAnswerCanBeSubmittedAgain() {
+        // Arrange
+        QuizSession session = session();
+        AnswerSubmission submission = answer("ada", 1L, 0);
+        QuizSession.AnswerOutcome outcome = session.submit(submission, NOW);
+
+        // Act
+        session.withdraw(submission, outcome);
+
+        // Assert
+        QuizStateSnapshot withdrawn = session.snapshot();
+        assertEquals(0, withdrawn.playerScores().get("ada"));
+        assertEquals(0, withdrawn.answeredCount());
+        assertEquals(10, session.submit(submission, NOW).score());
+    }
+
+    @Test
+    void withdrawingTwiceTakesThePointsBackOnce() {
+        // Arrange
+        QuizSession session = session();
+        AnswerSubmission submission = answer("ada", 1L, 0);
+        QuizSession.AnswerOutcome outcome = session.submit(submission, NOW);
+
+        // Act
+        session.withdraw(submission, outcome);
+        session.withdraw(submission, outcome);
+
+        // Assert
+        assertEquals(0, session.snapshot().playerScores().get("ada"));
+    }
+
+    @Test
+    void advanceMovesThroughQuestionsAndFinishesAfterTheLast() {
+        // Arrange
+        QuizSession session = session();
+
+        // Act
+        boolean movedOn = session.advance(NOW + 1_000L);
+        boolean movedPastLast = session.advance(NOW + 2_000L);
+
+        // Assert
+        assertTrue(movedOn);
+        assertFalse(movedPastLast);
+        assertEquals(QuizStatus.FINISHED, session.getStatus());
+        assertEquals(SECOND, session.getCurrentQuestion());
+        assertThrows(InvalidStateException.class, () -> session.submit(answer("ada", 2L, 1), NOW));
+    }
+
+    @Test
+    void advanceStartsTheClockOfTheNextQuestion() {
+        // Arrange
+        QuizSession session = session();
+
+        // Act
+        session.advance(NOW + 40_000L);
+
+        // Assert
+        assertEquals(NOW + 40_000L, session.snapshot().questionStartTime());
+        assertEquals(5, session.submit(answer("ada", 2L, 1), NOW + 45_000L).points());
+    }
+
+    @Test
+    void restoredSessionContinuesWhereCheckpointStood() {
+        // Arrange
+        QuizCheckpoint checkpoint = new QuizCheckpoint(7L, QuizStatus.IN_PROGRESS, 0, NOW, 0L, 4L);
+
+        // Act
+        QuizSession session = QuizSession.restore(
+                checkpoint,
+                List.of(FIRST, SECOND),
+                Map.of("ada", 10, "bob", 0),
+                30_000L,
+                Map.of(1L, Set.of("ada")),
+                NOW + 1_000L);
+
+        // Assert
+        QuizStateSnapshot snapshot = session.snapshot();
+        assertEquals(4L, snapshot.sequence());
+        assertEquals(0, snapshot.currentQuestionIndex());
+        assertEquals(NOW, snapshot.questionStartTime());
+        assertEquals(1, snapshot.answeredCount());
+        assertThrows(ValidationException.class, () -> session.submit(answer("ada", 1L, 0), NOW));
+        assertTrue(session.submit(answer("bob", 1L, 0), NOW).questionComplete());
+        assertEquals(5L, session.nextSnapshot().sequence());
+    }
+
+    @Test
+    void restoredSessionMovesOnToQuestionAnsweredAfterCheckpoint() {
+        // Arrange
+        QuizCheckpoint checkpoint = new QuizCheckpoint(7L, QuizStatus.IN_PROGRESS, 0, NOW, 0L, 4L);
+
+        // Act
+        QuizSession session = QuizSession.restore(
+                checkpoint,
+                List.of(FIRST, SECOND),
+                Map.of("ada", 15, "bob", 0),
+                30_000L,
+                Map.of(1L, Set.of("ada", "bob"), 2L, Set.of("ada")),
+                NOW + 1_000L);
+
+        // Assert
+        QuizStateSnapshot snapshot = session.snapshot();
+        assertEquals(1, snapshot.currentQuestionIndex());
+        assertEquals(NOW + 1_000L, snapshot.questionStartTime());
+        assertEquals(Map.of("ada", 15, "bob", 0), snapshot.playerScores());
+        assertThrows(
+                ValidationException.class,
+                () -> session.submit(answer("ada", 2L, 1), NOW + 2_000L));
+    }
+
+    private static QuizSession session() {
+        return new QuizSession(
+                7L, List.of(FIRST, SECOND), Map.of("ada", 0, "bob", 0), 30_000L, NOW);
+    }
+
+    private static AnswerSubmission answer(String playerId, Long questionId, int selectedOption) {
+        return new AnswerSubmission(playerId, 7L, questionId, selectedOption, NOW);
+    }
+}
@@ -0,0 +1,124 @@
+package com.thonbecker.endurance.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import com.thonbecker.endurance.config.BroadcastProperties;
+import com.thonbecker.endurance.type.QuizStateDelta;
+import com.thonbecker.endurance.type.QuizStatus;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+@ExtendWith(MockitoExtension.class)
+public class QuizStateBroadcasterTest {
+
+    @Mock
+    private QuizService quizService;
+
+    @Mock
+    private QuizMailboxExecutor quizExecutor;
+
+    @Mock
+    private QuestionTimer timer;
+
+    @Mock
+    private BroadcastSender broadcastSender;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private QuizStateDelta delta;
+
+    @BeforeEach
+    void setUp() {
+        delta = new QuizStateDelta(
+                1L, 5L, QuizStatus.IN_PROGRESS, 0, Map.of("player1", 10), List.of(), 3);
+
+        // Run mailbox commands inline
+        lenient()
+                .when(quizExecutor.execute(anyLong(), any(Runnable.class)))
+                .thenAnswer(invocation -> {
+                    invocation.getArgument(1, Runnable.class).run();
+                    return CompletableFuture.completedFuture(null);
+                });
+    }
+
+    @Test
+    void publishChanges_MergesChangesWithinWindowIntoOneDelta() {
+        // Arrange
+        QuizStateBroadcaster broadcaster = broadcaster(Duration.ofMillis(50));
+        when(quizService.takeDelta(1L)).thenReturn(Optional.of(delta));
+
+        // Act
+        broadcaster.publishChanges(1L);
+        broadcaster.publishChanges(1L);
+        broadcaster.publishChanges(1L);
+        ArgumentCaptor<Runnable> closeWindow = ArgumentCaptor.forClass(Runnable.class);
+        verify(timer)
+                .schedule(
+                        eq(Duration.ofMillis(50).toNanos()),
+                        eq(TimeUnit.NANOSECONDS),
+                        closeWindow.capture());
+        closeWindow.getValue().run();
+
+        // Assert
+        verify(quizService, times(1)).takeDelta(1L);
+        verify(broadcastSender).send("/topic/quiz/state/1", delta, 5L, false);
+        assertEquals(2, meterRegistry.counter("endurance.broadcast.coalesced").count());
+        assertEquals(
+                1, meterRegistry.timer("endurance.broadcast.coalesce.delay").count());
+    }
+
+    @Test
+    void publishChanges_SendsNothingWhenSnapshotCoveredChanges() {
+        // Arrange
+        QuizStateBroadcaster broadcaster = broadcaster(Duration.ofMillis(50));
+        when(quizService.takeDelta(1L)).thenReturn(Optional.empty());
+
+        // Act
+        broadcaster.publishChanges(1L);
+        ArgumentCaptor<Runnable> closeWindow = ArgumentCaptor.forClass(Runnable.class);
+        verify(timer).schedule(anyLong(), any(TimeUnit.class), closeWindow.capture());
+        closeWindow.getValue().run();
+
+        // Assert
+        verifyNoInteractions(broadcastSender);
+        assertEquals(1, meterRegistry.counter("endurance.broadcast.coalesced").count());
+    }
+
+    @Test
+    void publishChanges_SendsImmediatelyWithoutWindow() {
+        // Arrange
+        QuizStateBroadcaster broadcaster = broadcaster(Duration.ZERO);
+        when(quizService.takeDelta(1L)).thenReturn(Optional.of(delta));
+
+        // Act
+        broadcaster.publishChanges(1L);
+
+        // Assert
+        verify(broadcastSender).send("/topic/quiz/state/1", delta, 5L, false);
+        verifyNoInteractions(timer);
+    }
+
+    private QuizStateBroadcaster broadcaster(Duration coalesceWindow) {
+        return new QuizStateBroadcaster(
+                quizService,
+                quizExecutor,
+                timer,
+                broadcastSender,
+                new BroadcastProperties(coalesceWindow),
+                meterRegistry);
+    }
+}
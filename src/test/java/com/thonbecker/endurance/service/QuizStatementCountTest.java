@@ -0,0 +1,201 @@
+package com.thonbecker.endurance.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import com.thonbecker.endurance.config.RecoveryProperties;
+import com.thonbecker.endurance.entity.PlayerEntity;
+import com.thonbecker.endurance.entity.QuestionEntity;
+import com.thonbecker.endurance.entity.QuestionOptionEntity;
+import com.thonbecker.endurance.entity.QuizEntity;
+import com.thonbecker.endurance.entity.QuizPlayerEntity;
+import com.thonbecker.endurance.type.Player;
+import com.thonbecker.endurance.type.Question;
+import com.thonbecker.endurance.type.Quiz;
+import com.thonbecker.endurance.type.QuizPage;
+import com.thonbecker.endurance.type.QuizStatus;
+import com.thonbecker.endurance.type.QuizSummary;
+
+import jakarta.persistence.EntityManagerFactory;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Counts the statements behind creating, browsing and reading quizzes and rosters, which must not
+ * grow with the number of quizzes, questions, options or past games of a player.
+ */
+@DataJpaTest(
+        properties = {
+            "spring.liquibase.enabled=false",
+            "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+            "spring.jpa.hibernate.ddl-auto=create-drop",
+            "spring.jpa.properties.hibernate.hbm2ddl.create_namespaces=true",
+            "spring.jpa.properties.hibernate.generate_statistics=true"
+        })
+@Import(QuizService.class)
+public class QuizStatementCountTest {
+    private static final int QUIZZES = 3;
+    private static final int QUESTIONS = 4;
+    private static final int OPTIONS = 3;
+    private static final int PLAYERS = 5;
+    private static final LocalDateTime CREATED_AT = LocalDateTime.of(2026, 1, 1, 12, 0);
+
+    @MockitoBean
+    private TriviaQuestionGenerator questionGenerator;
+
+    @MockitoBean
+    private AnswerSubmissionWriter answerSubmissionWriter;
+
+    @MockitoBean
+    private QuestionTimer questionTimer;
+
+    @MockitoBean
+    private QuizIdGenerator quizIdGenerator;
+
+    @MockitoBean
+    private QuizSessionStore sessionStore;
+
+    @MockitoBean
+    private QuizRecovery quizRecovery;
+
+    @MockitoBean
+    private QuizOwnership quizOwnership;
+
+    @MockitoBean
+    private RecoveryProperties recoveryProperties;
+
+    @Autowired
+    private QuizService quizService;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        List<PlayerEntity> players = new ArrayList<>();
+        for (int i = 0; i < PLAYERS; i++) {
+            players.add(entityManager.persist(new PlayerEntity("player" + i, "Player " + i)));
+        }
+
+        for (long quizId = 1; quizId <= QUIZZES; quizId++) {
+            QuizEntity quiz = new QuizEntity(quizId, "Quiz " + quizId, 30, QuizStatus.CREATED);
+            quiz.setCreatedAt(CREATED_AT.plusMinutes(Math.min(quizId, 2)));
+            // Persisted out of order, so the fetch plan has to restore it
+            for (int order = QUESTIONS - 1; order >= 0; order--) {
+                QuestionEntity question =
+                        new QuestionEntity(null, "Question " + order, 0, 10, order);
+                for (int option = OPTIONS - 1; option >= 0; option--) {
+                    question.addOption(new QuestionOptionEntity("Option " + option, option));
+                }
+                quiz.addQuestion(question);
+            }
+            entityManager.persist(quiz);
+            // Every player has played every quiz
+            for (PlayerEntity player : players) {
+                entityManager.persist(new QuizPlayerEntity(quiz, player));
+            }
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void browseQuizzes_SeeksOnePageAtATime() {
+        // Act
+        QuizPage first = quizService.browseQuizzes(QuizStatus.CREATED, null, 2);
+        QuizPage second = quizService.browseQuizzes(QuizStatus.CREATED, first.nextCursor(), 2);
+
+        // Assert
+        // Quizzes 2 and 3 were created at the same time, so the ID decides between them
+        assertEquals(
+                List.of(3L, 2L), first.quizzes().stream().map(QuizSummary::id).toList());
+        assertEquals(List.of(1L), second.quizzes().stream().map(QuizSummary::id).toList());
+        assertNull(second.nextCursor());
+        assertEquals(QUESTIONS, first.quizzes().getFirst().questionCount());
+        assertEquals(PLAYERS, first.quizzes().getFirst().playerCount());
+        assertEquals(2, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void searchQuizzes_MatchesTitleIgnoringCaseAndWildcards() {
+        // Act
+        QuizPage matches = quizService.searchQuizzes("quiz 2", null, 10);
+        QuizPage wildcard = quizService.searchQuizzes("Quiz_", null, 10);
+
+        // Assert
+        assertEquals(
+                List.of(2L), matches.quizzes().stream().map(QuizSummary::id).toList());
+        assertTrue(wildcard.quizzes().isEmpty());
+        assertEquals(2, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void getQuizById_UsesTwoStatements() {
+        // Act
+        Quiz quiz = quizService.getQuizById(2L).orElseThrow();
+
+        // Assert
+        assertEquals("Quiz 2", quiz.title());
+        assertEquals(QUESTIONS, quiz.questions().size());
+        assertEquals("Question 0", quiz.questions().getFirst().questionText());
+        assertEquals(
+                List.of("Option 0", "Option 1", "Option 2"),
+                quiz.questions().getFirst().options());
+        assertEquals(2, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void getRoster_UsesTwoStatements() {
+        // Act
+        List<Player> roster = quizService.getRoster(3L);
+
+        // Assert
+        assertEquals(PLAYERS, roster.size());
+        assertTrue(roster.contains(new Player("player0", "Player 0", 0, false)));
+        assertEquals(2, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void createQuiz_BatchesInserts() {
+        // Arrange
+        when(quizIdGenerator.nextId()).thenReturn(42L);
+        List<Question> questions = IntStream.range(0, 50)
+                .mapToObj(i ->
+                        new Question(null, "Question " + i, List.of("A", "B", "C", "D"), 1, 10))
+                .toList();
+
+        // Act
+        Quiz created = quizService.createQuiz(
+                new Quiz(null, "Big Quiz", questions, 30, QuizStatus.CREATED));
+        entityManager.flush();
+
+        // Assert
+        assertEquals(42L, created.id());
+        assertEquals(50, created.questions().size());
+        assertTrue(created.questions().stream().allMatch(question -> question.id() != null));
+        assertEquals(List.of("A", "B", "C", "D"), created.questions().getLast().options());
+        // 1 question and 4 option sequence calls, then one batched insert per table
+        assertEquals(8, statistics.getPrepareStatementCount());
+    }
+}
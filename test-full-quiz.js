@@ -7,14 +7,17 @@ const stompClient = Stomp.over(socket);
 
 let quizId = null;
 let playerId = null;
-let currentQuestionIndex = 0;
+let players = {};
+let state = null;
+let answeredQuestionIndex = -1;
 
 stompClient.connect({}, function (frame) {
     console.log('✅ Connected to WebSocket\n');
 
     // Subscribe to quiz created topic
-    stompClient.subscribe('/topic/quiz/created', function (message) {
+    const createdSubscription = stompClient.subscribe('/topic/quiz/created', function (message) {
         const quiz = JSON.parse(message.body);
+        createdSubscription.unsubscribe();
         quizId = quiz.id;
 
         console.log('✅ Quiz Created:');
@@ -30,84 +33,22 @@ stompClient.connect({}, function (frame) {
             });
         }
 
-        // Join the quiz as a player
-        console.log('\n👤 Joining quiz as player...');
-        const player = {
-            name: 'Test Player',
-            email: 'test@example.com'
-        };
-
-        stompClient.subscribe('/topic/quiz/players', function (playersMsg) {
-            const players = JSON.parse(playersMsg.body);
-            if (players && players.length > 0) {
-                playerId = players[0].id;
-                console.log('✅ Player joined successfully:');
-                console.log('   Player ID:', playerId);
-                console.log('   Player Name:', players[0].name);
-
-                // Start the quiz
-                setTimeout(() => {
-                    console.log('\n🚀 Starting quiz...');
-                    stompClient.send("/app/quiz/start", {}, JSON.stringify(quizId));
-                }, 1000);
-            }
-        });
+        subscribeToRoster();
+        subscribeToQuizState();
 
+        // Join the quiz as a player; the server assigns the player ID
+        console.log('\n👤 Joining quiz as player...');
         const joinRequest = {
-            player: player,
+            player: {
+                name: 'Test Player',
+                score: 0,
+                isReady: true
+            },
             quizId: quizId
         };
         stompClient.send("/app/quiz/join", {}, JSON.stringify(joinRequest));
     });
 
-    // Subscribe to quiz state updates
-    let stateSubscription = null;
-
-    function subscribeToQuizState() {
-        if (quizId && !stateSubscription) {
-            stateSubscription = stompClient.subscribe('/topic/quiz/state/' + quizId, function (stateMsg) {
-                const state = JSON.parse(stateMsg.body);
-
-                console.log('\n📊 Quiz State Update:');
-                console.log('   Status:', state.status);
-                console.log('   Current Question Index:', state.currentQuestionIndex);
-
-                if (state.currentQuestion) {
-                    console.log('   Current Question:', state.currentQuestion.questionText);
-                    console.log('   Options:', state.currentQuestion.options);
-
-                    // Submit answer to the current question
-                    setTimeout(() => {
-                        console.log('\n✏️  Submitting answer...');
-                        const submission = {
-                            quizId: quizId,
-                            playerId: playerId,
-                            questionId: state.currentQuestion.id,
-                            answer: state.currentQuestion.options[0], // Submit first option
-                            timestamp: Date.now()
-                        };
-
-                        stompClient.send("/app/quiz/submit", {}, JSON.stringify(submission));
-                    }, 1000);
-                } else if (state.status === 'COMPLETED') {
-                    console.log('\n✅ Quiz Completed!');
-                    if (state.playerScores && state.playerScores.length > 0) {
-                        console.log('\n🏆 Final Scores:');
-                        state.playerScores.forEach(score => {
-                            console.log(`   ${score.playerName}: ${score.score} points (${score.correctAnswers} correct)`);
-                        });
-                    }
-
-                    setTimeout(() => {
-                        stompClient.disconnect();
-                        console.log('\n✅ All tests passed! Quiz functionality is working correctly.');
-                        process.exit(0);
-                    }, 1000);
-                }
-            });
-        }
-    }
-
     // Create a trivia quiz
     console.log('📝 Creating trivia quiz...');
     const request = {
@@ -118,17 +59,141 @@ stompClient.connect({}, function (frame) {
 
     stompClient.send("/app/quiz/create/trivia", {}, JSON.stringify(request));
 
-    // Set up subscription after quiz is created
-    setTimeout(() => {
-        subscribeToQuizState();
-    }, 2000);
-
 }, function(error) {
     console.error('❌ Connection failed:', error);
     process.exit(1);
 });
 
+// The full roster comes once from /app, changes to it on the quiz's players topic
+function subscribeToRoster() {
+    const rosterSubscription = stompClient.subscribe('/app/quiz/' + quizId + '/players', function (message) {
+        rosterSubscription.unsubscribe();
+        JSON.parse(message.body).forEach(player => {
+            players[player.id] = player;
+        });
+        console.log('👥 Players in quiz:', Object.keys(players).length);
+    });
+
+    stompClient.subscribe('/topic/quiz/' + quizId + '/players', function (message) {
+        const update = JSON.parse(message.body);
+        if (update.type === 'LEFT') {
+            delete players[update.playerId];
+            console.log('👋 Player left:', update.playerId);
+            return;
+        }
+        players[update.playerId] = update.player;
+
+        if (update.type === 'JOINED' && playerId === null) {
+            playerId = update.playerId;
+            console.log('✅ Player joined successfully:');
+            console.log('   Player ID:', playerId);
+            console.log('   Player Name:', update.player.name);
+
+            // Start the quiz
+            setTimeout(() => {
+                console.log('\n🚀 Starting quiz...');
+                stompClient.send("/app/quiz/start", {}, JSON.stringify(quizId));
+            }, 1000);
+        }
+    });
+}
+
+// Snapshots replace the state, deltas apply on top of the message before them
+function subscribeToQuizState() {
+    stompClient.subscribe('/topic/quiz/state/' + quizId, function (message) {
+        const update = JSON.parse(message.body);
+        if (update.type === 'snapshot') {
+            applySnapshot(update);
+        } else if (state !== null && update.sequence === state.sequence + 1) {
+            applyDelta(update);
+        } else if (state === null || update.sequence > state.sequence) {
+            // Missed a message, fetch a fresh snapshot
+            console.log('⚠️  Gap in the state stream at', update.sequence, '- resynchronizing');
+            resynchronize();
+        }
+    });
+}
+
+function resynchronize() {
+    const snapshotSubscription = stompClient.subscribe('/app/quiz/state/' + quizId, function (message) {
+        snapshotSubscription.unsubscribe();
+        applySnapshot(JSON.parse(message.body));
+    });
+}
+
+function applySnapshot(snapshot) {
+    if (state !== null && snapshot.sequence <= state.sequence) {
+        return;
+    }
+    state = snapshot;
+
+    console.log('\n📊 Quiz State Snapshot:');
+    console.log('   Sequence:', state.sequence);
+    console.log('   Status:', state.status);
+    console.log('   Current Question Index:', state.currentQuestionIndex);
+
+    if (state.status === 'FINISHED') {
+        finish();
+    } else if (state.status === 'IN_PROGRESS') {
+        answerCurrentQuestion();
+    }
+}
+
+function applyDelta(delta) {
+    state.sequence = delta.sequence;
+    state.status = delta.status;
+    state.currentQuestionIndex = delta.currentQuestionIndex;
+    state.answeredCount = delta.answeredCount;
+    Object.assign(state.playerScores, delta.changedScores);
+    delta.removedPlayers.forEach(id => delete state.playerScores[id]);
+
+    console.log('🔄 Delta', delta.sequence + ':', delta.answeredCount, 'answered, scores', state.playerScores);
+
+    if (state.status === 'FINISHED') {
+        finish();
+    }
+}
+
+function answerCurrentQuestion() {
+    if (answeredQuestionIndex === state.currentQuestionIndex) {
+        return;
+    }
+    answeredQuestionIndex = state.currentQuestionIndex;
+    const question = state.currentQuestion;
+    console.log('   Current Question:', question.questionText);
+    console.log('   Options:', question.options);
+
+    // Submit answer to the current question
+    setTimeout(() => {
+        console.log('\n✏️  Submitting answer...');
+        const submission = {
+            quizId: quizId,
+            playerId: playerId,
+            questionId: question.id,
+            selectedOption: 0, // Submit first option
+            submissionTime: Date.now()
+        };
+
+        stompClient.send("/app/quiz/submit", {}, JSON.stringify(submission));
+    }, 1000);
+}
+
+function finish() {
+    console.log('\n✅ Quiz Completed!');
+    console.log('\n🏆 Final Scores:');
+    Object.entries(state.playerScores).forEach(([id, score]) => {
+        const name = players[id] ? players[id].name : id;
+        console.log(`   ${name}: ${score} points`);
+    });
+
+    setTimeout(() => {
+        stompClient.disconnect();
+        console.log('\n✅ All tests passed! Quiz functionality is working correctly.');
+        process.exit(0);
+    }, 1000);
+}
+
 // Handle disconnection
 socket.onclose = function() {
     console.log('🔌 WebSocket connection closed');
-};
\ No newline at end of file
+};
@@ -25,10 +25,14 @@ stompClient.connect({}, function (frame) {
         console.log('\n📤 Attempting to start quiz...');
         const quizId = quiz.id;
 
-        // Subscribe to quiz state updates
+        // Subscribe to quiz state updates; starting sends a full snapshot, later changes are deltas
         stompClient.subscribe('/topic/quiz/state/' + quizId, function (stateMsg) {
             const state = JSON.parse(stateMsg.body);
+            if (state.type !== 'snapshot') {
+                return;
+            }
             console.log('\n✅ Quiz Started Successfully!');
+            console.log('   Sequence:', state.sequence);
             console.log('   Current Question Index:', state.currentQuestionIndex);
             console.log('   Current Question:', state.currentQuestion.questionText);
             console.log('   Options:', state.currentQuestion.options);